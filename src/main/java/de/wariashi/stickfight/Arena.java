@@ -0,0 +1,47 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.World;
+
+/**
+ * A named play area in which glass panes break and {@link org.bukkit.entity.Player players} get a stick.
+ *
+ * @param id          the position of the arena in the config file, arenas with lower ids take precedence if they overlap
+ * @param name        the name of the arena
+ * @param world       the name of the {@link World} that contains the arena
+ * @param minX        the minimum x coordinate of the arena
+ * @param minY        the minimum y coordinate of the arena
+ * @param minZ        the minimum z coordinate of the arena
+ * @param maxX        the maximum x coordinate of the arena
+ * @param maxY        the maximum y coordinate of the arena
+ * @param maxZ        the maximum z coordinate of the arena
+ * @param unlimited   <code>true</code> if the arena covers its whole {@link World}, <code>false</code> otherwise
+ * @param killLayer   the y coordinate where players will be killed
+ * @param respawnTime the number of ticks after which broken glass panes are restored
+ */
+public record Arena(int id, String name, String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, boolean unlimited,
+					long killLayer, long respawnTime) {
+	/**
+	 * Tests whether a block position is within the arena.
+	 * If the arena is unlimited, this method will always return <code>true</code>.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return <code>true</code> if the position is within the arena, <code>false</code> otherwise
+	 */
+	public boolean contains(int x, int y, int z) {
+		return unlimited || minX <= x && x <= maxX && minY <= y && y <= maxY && minZ <= z && z <= maxZ;
+	}
+
+	/**
+	 * Tests whether a block column is within the horizontal bounds of the arena, regardless of its height.
+	 * If the arena is unlimited, this method will always return <code>true</code>.
+	 *
+	 * @param x the x coordinate of the column
+	 * @param z the z coordinate of the column
+	 * @return <code>true</code> if the column is within the arena, <code>false</code> otherwise
+	 */
+	public boolean containsColumn(int x, int z) {
+		return unlimited || minX <= x && x <= maxX && minZ <= z && z <= maxZ;
+	}
+}
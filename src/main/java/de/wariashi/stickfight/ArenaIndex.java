@@ -0,0 +1,217 @@
+package de.wariashi.stickfight;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Looks up which {@link Arena} a position belongs to in near-constant time, no matter how many arenas exist.
+ * <p>
+ * Every {@link World} has a grid of chunk columns. Each column that overlaps an arena stores the arenas that overlap it,
+ * usually only one, so a lookup is a single hash table probe followed by a few bounds checks. Arenas that span too
+ * many chunks to be stored in the grid and unlimited arenas are checked separately. If arenas overlap, the one with
+ * the lowest id is used, and bounded arenas always take precedence over unlimited ones.
+ * <p>
+ * The index is immutable after it has been created and can be read from any thread.
+ */
+public class ArenaIndex {
+	private static final int CELL_BITS = 4; // one cell per chunk
+	private static final int MAX_CELLS_PER_ARENA = 1 << 16;
+
+	private final List<Arena> arenas;
+	private final Map<String, Grid> grids = new HashMap<>();
+
+	/**
+	 * Creates a new {@link ArenaIndex}.
+	 *
+	 * @param arenas the {@link Arena arenas}, ordered by their ids
+	 */
+	public ArenaIndex(List<Arena> arenas) {
+		this.arenas = List.copyOf(arenas);
+
+		var arenasByWorld = new HashMap<String, List<Arena>>();
+		for (var arena : this.arenas) {
+			arenasByWorld.computeIfAbsent(arena.world(), key -> new ArrayList<>()).add(arena);
+		}
+		for (var entry : arenasByWorld.entrySet()) {
+			grids.put(entry.getKey(), new Grid(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Tests whether a {@link World} contains any {@link Arena}, i.e. whether stickfight is enabled in it.
+	 *
+	 * @param world the {@link World}
+	 * @return <code>true</code> if the world contains an arena, <code>false</code> otherwise
+	 */
+	public boolean contains(World world) {
+		return world != null && grids.containsKey(world.getName());
+	}
+
+	/**
+	 * Looks up the {@link Arena} that contains a {@link Location}.
+	 *
+	 * @param location the {@link Location}
+	 * @return the {@link Arena} or <code>null</code> if the {@link Location} is not within any arena
+	 */
+	public Arena find(Location location) {
+		return find(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+	}
+
+	/**
+	 * Looks up the {@link Arena} that contains a block position.
+	 *
+	 * @param world the {@link World} of the block
+	 * @param x     the x coordinate of the block
+	 * @param y     the y coordinate of the block
+	 * @param z     the z coordinate of the block
+	 * @return the {@link Arena} or <code>null</code> if the block is not within any arena
+	 */
+	public Arena find(World world, int x, int y, int z) {
+		var grid = world == null ? null : grids.get(world.getName());
+		return grid == null ? null : grid.find(x, y, z, false);
+	}
+
+	/**
+	 * Looks up the {@link Arena} whose horizontal bounds contain a block column, regardless of its height.
+	 *
+	 * @param world the {@link World} of the column
+	 * @param x     the x coordinate of the column
+	 * @param z     the z coordinate of the column
+	 * @return the {@link Arena} or <code>null</code> if the column is not within any arena
+	 */
+	public Arena findColumn(World world, int x, int z) {
+		var grid = world == null ? null : grids.get(world.getName());
+		return grid == null ? null : grid.find(x, 0, z, true);
+	}
+
+	/**
+	 * @return all {@link Arena arenas}, ordered by their ids
+	 */
+	public List<Arena> getArenas() {
+		return arenas;
+	}
+
+	/**
+	 * @return the names of all {@link World worlds} that contain at least one {@link Arena}
+	 */
+	public Set<String> getWorlds() {
+		return grids.keySet();
+	}
+
+	/**
+	 * The arenas of a single {@link World}, stored in an open addressing hash table keyed by chunk column.
+	 */
+	private static final class Grid {
+		private final Arena[][] cells;
+		private final long[] keys;
+		private final Arena[] large;
+		private final int mask;
+		private final Arena unlimited;
+
+		/**
+		 * Creates a new {@link Grid}.
+		 *
+		 * @param arenas the {@link Arena arenas} of the {@link World}, ordered by their ids
+		 */
+		private Grid(List<Arena> arenas) {
+			var columns = new HashMap<Long, List<Arena>>();
+			var largeArenas = new ArrayList<Arena>();
+			Arena unlimitedArena = null;
+			for (var arena : arenas) {
+				if (arena.unlimited()) {
+					if (unlimitedArena == null) {
+						unlimitedArena = arena;
+					}
+					continue;
+				}
+
+				var minCellX = arena.minX() >> CELL_BITS;
+				var minCellZ = arena.minZ() >> CELL_BITS;
+				var maxCellX = arena.maxX() >> CELL_BITS;
+				var maxCellZ = arena.maxZ() >> CELL_BITS;
+				if ((long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1) > MAX_CELLS_PER_ARENA) {
+					largeArenas.add(arena);
+					continue;
+				}
+				for (var cellX = minCellX; cellX <= maxCellX; cellX++) {
+					for (var cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+						columns.computeIfAbsent(key(cellX, cellZ), cell -> new ArrayList<>()).add(arena);
+					}
+				}
+			}
+
+			var capacity = Integer.highestOneBit(Math.max(1, columns.size()) * 2 - 1) << 1;
+			cells = new Arena[capacity][];
+			keys = new long[capacity];
+			mask = capacity - 1;
+			for (var entry : columns.entrySet()) {
+				var slot = slot(entry.getKey());
+				while (cells[slot] != null) {
+					slot = slot + 1 & mask;
+				}
+				keys[slot] = entry.getKey();
+				cells[slot] = entry.getValue().toArray(new Arena[0]);
+			}
+			large = largeArenas.toArray(new Arena[0]);
+			unlimited = unlimitedArena;
+		}
+
+		/**
+		 * Looks up the {@link Arena} with the lowest id that contains a block position or column.
+		 *
+		 * @param x      the x coordinate of the block
+		 * @param y      the y coordinate of the block
+		 * @param z      the z coordinate of the block
+		 * @param column <code>true</code> if only the horizontal bounds should be checked, <code>false</code> otherwise
+		 * @return the {@link Arena} or <code>null</code> if the position is not within any arena
+		 */
+		private Arena find(int x, int y, int z, boolean column) {
+			Arena found = null;
+			var key = key(x >> CELL_BITS, z >> CELL_BITS);
+			for (var slot = slot(key); cells[slot] != null; slot = slot + 1 & mask) {
+				if (keys[slot] == key) {
+					for (var arena : cells[slot]) {
+						if (column ? arena.containsColumn(x, z) : arena.contains(x, y, z)) {
+							found = arena;
+							break;
+						}
+					}
+					break;
+				}
+			}
+			for (var arena : large) {
+				if ((found == null || arena.id() < found.id()) && (column ? arena.containsColumn(x, z) : arena.contains(x, y, z))) {
+					found = arena;
+				}
+			}
+			return found != null ? found : unlimited;
+		}
+
+		/**
+		 * Packs the coordinates of a cell into a key.
+		 *
+		 * @param cellX the x coordinate of the cell
+		 * @param cellZ the z coordinate of the cell
+		 * @return the key
+		 */
+		private static long key(int cellX, int cellZ) {
+			return (long) cellX << 32 | cellZ & 0xFFFFFFFFL;
+		}
+
+		/**
+		 * Calculates the preferred slot of a key in the hash table.
+		 *
+		 * @param key the key
+		 * @return the slot
+		 */
+		private int slot(long key) {
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		}
+	}
+}
@@ -0,0 +1,533 @@
+package de.wariashi.stickfight;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * The {@link ArenaResetService} captures {@link Arena arenas} into {@link ArenaSnapshot snapshots} and resets them to
+ * their captured state between rounds.
+ * <p>
+ * Reading the blocks of a {@link World} is only allowed on the main thread, so both operations take a
+ * {@link ChunkSnapshot} of every chunk that overlaps the arena first, which is cheap. Encoding the snapshot, writing
+ * it and comparing it with the live blocks happens on another thread. A reset only changes the blocks that differ
+ * from the snapshot, spread across as many ticks as the {@link Configuration#getResetBudget() reset budget} requires,
+ * so the server does not freeze even if large parts of the arena have changed.
+ * <p>
+ * Chunks are never loaded synchronously. An arena can only be captured or reset while all of its chunks are loaded,
+ * e.g. while it is in use. Blocks of a reset whose chunk has been unloaded in the meantime are deferred until the chunk
+ * is loaded again.
+ * <p>
+ * Only one capture or reset may run per arena at the same time.
+ */
+public class ArenaResetService implements Listener {
+	private static final int CHECK_INTERVAL = 64; // blocks between two checks of the budget
+	private static final long MAX_VOLUME = 16L * 1024 * 1024; // blocks, a reset keeps one bit per block on the heap
+
+	private final LongAdder blocksReset;
+	private final Set<String> busy = new HashSet<>();
+	private final ArrayDeque<Reset> resets = new ArrayDeque<>();
+	private boolean running = false;
+	private final Stickfight stickfight;
+	private TickScheduler.ScheduledTask task;
+	private final List<Reset> waiting = new ArrayList<>();
+
+	/**
+	 * Creates a new {@link ArenaResetService}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public ArenaResetService(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		var metrics = stickfight.getMetrics();
+		blocksReset = metrics.counter("stickfight_arena_blocks_reset_total", "Blocks changed back to their captured state by arena resets.");
+	}
+
+	/**
+	 * Continues the {@link Reset resets} that wait for a chunk that has been loaded.
+	 *
+	 * @param event the {@link Event} that is sent when a chunk has been loaded
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onChunkLoad(ChunkLoadEvent event) {
+		if (waiting.isEmpty()) {
+			return;
+		}
+		var chunk = event.getChunk();
+		var iterator = waiting.iterator();
+		while (iterator.hasNext()) {
+			var reset = iterator.next();
+			if (reset.world.equals(event.getWorld()) && reset.overlaps(chunk.getX(), chunk.getZ())) {
+				iterator.remove();
+				reset.differing.or(reset.deferred);
+				reset.deferred.clear();
+				reset.next = 0;
+				resets.add(reset);
+			}
+		}
+	}
+
+	/**
+	 * Compares an {@link Arena} with its {@link ArenaSnapshot} and changes every block that differs back to its captured
+	 * state. The comparison runs on another thread, and the blocks are changed over the next ticks.
+	 * Must be called on the main thread.
+	 *
+	 * @param arena  the {@link Arena} to reset
+	 * @param sender the {@link CommandSender} that is informed about the progress
+	 */
+	public void reset(Arena arena, CommandSender sender) {
+		var world = getWorld(arena, sender);
+		if (world == null || !acquire(arena, sender)) {
+			return;
+		}
+
+		// read the snapshot and resolve its palette
+		ArenaSnapshot snapshot;
+		BlockData[] palette;
+		try {
+			snapshot = ArenaSnapshot.read(ArenaSnapshot.getPath(stickfight.getDataFolder(), arena));
+			if (!snapshot.matches(arena)) {
+				throw new IOException("The bounds of the arena have changed since the snapshot was captured");
+			}
+			var states = snapshot.getPalette();
+			palette = new BlockData[states.size()];
+			for (var i = 0; i < palette.length; i++) {
+				palette[i] = Bukkit.createBlockData(states.get(i));
+			}
+		} catch (NoSuchFileException exception) {
+			busy.remove(arena.name());
+			sender.sendMessage("There is no snapshot of the arena " + arena.name() + " yet.");
+			return;
+		} catch (IOException | IllegalArgumentException exception) {
+			busy.remove(arena.name());
+			stickfight.getLogger().log(Level.WARNING, "Could not read the snapshot of the arena " + arena.name(), exception);
+			sender.sendMessage("The snapshot of the arena " + arena.name() + " could not be read: " + exception.getMessage());
+			return;
+		}
+
+		// compare off the main thread
+		var chunks = captureChunks(world, arena, sender);
+		if (chunks == null) {
+			return;
+		}
+		Bukkit.getScheduler().runTaskAsynchronously(stickfight, () -> {
+			Reset reset;
+			try {
+				reset = diff(world, arena, snapshot, palette, chunks, sender);
+			} catch (RuntimeException exception) {
+				stickfight.getLogger().log(Level.WARNING, "Could not compare the arena " + arena.name() + " with its snapshot", exception);
+				reset = null;
+			}
+			var result = reset;
+			if (stickfight.isEnabled()) {
+				Bukkit.getScheduler().runTask(stickfight, () -> enqueue(arena, result, sender));
+			}
+		});
+		sender.sendMessage("Resetting the arena " + arena.name() + "...");
+	}
+
+	/**
+	 * Captures the blocks of an {@link Arena} and writes them to its {@link ArenaSnapshot} file, replacing the previous one.
+	 * The blocks are encoded and written on another thread.
+	 * Must be called on the main thread.
+	 *
+	 * @param arena  the {@link Arena} to capture
+	 * @param sender the {@link CommandSender} that is informed about the progress
+	 */
+	public void snapshot(Arena arena, CommandSender sender) {
+		var world = getWorld(arena, sender);
+		if (world == null || !acquire(arena, sender)) {
+			return;
+		}
+
+		var chunks = captureChunks(world, arena, sender);
+		if (chunks == null) {
+			return;
+		}
+		var path = ArenaSnapshot.getPath(stickfight.getDataFolder(), arena);
+		Bukkit.getScheduler().runTaskAsynchronously(stickfight, () -> {
+			String message;
+			try {
+				Files.createDirectories(path.getParent());
+				var blocks = encode(arena, chunks, path);
+				message = "Captured " + blocks + " blocks of the arena " + arena.name() + ".";
+			} catch (IOException exception) {
+				stickfight.getLogger().log(Level.WARNING, "Could not write the snapshot of the arena " + arena.name(), exception);
+				message = "The snapshot of the arena " + arena.name() + " could not be written: " + exception.getMessage();
+			}
+			var result = message;
+			if (stickfight.isEnabled()) {
+				Bukkit.getScheduler().runTask(stickfight, () -> {
+					busy.remove(arena.name());
+					sender.sendMessage(result);
+				});
+			}
+		});
+		sender.sendMessage("Capturing the arena " + arena.name() + "...");
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
+			var tickScheduler = stickfight.getTickScheduler();
+			task = tickScheduler.schedule("ArenaResetService.tick", TickScheduler.Priority.NORMAL, 1, this::tick);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by canceling its task and unregistering it as a {@link Listener}.
+	 * Resets that are in progress are abandoned.
+	 */
+	public void stop() {
+		HandlerList.unregisterAll(this);
+		if (task != null) {
+			task.cancel();
+		}
+		resets.clear();
+		waiting.clear();
+		busy.clear();
+		running = false;
+	}
+
+	/**
+	 * Marks an {@link Arena} as busy unless a capture or reset of it is already in progress.
+	 *
+	 * @param arena  the {@link Arena}
+	 * @param sender the {@link CommandSender} that is informed if the arena is busy
+	 * @return <code>true</code> if the arena has been marked as busy, <code>false</code> otherwise
+	 */
+	private boolean acquire(Arena arena, CommandSender sender) {
+		if (!busy.add(arena.name())) {
+			sender.sendMessage("The arena " + arena.name() + " is already being captured or reset.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Takes a {@link ChunkSnapshot} of every chunk that overlaps an {@link Arena}.
+	 * If some of the chunks are not loaded, nothing is captured and the {@link Arena} is no longer marked as busy,
+	 * because loading the chunks would block the main thread.
+	 *
+	 * @param world  the {@link World} that contains the {@link Arena}
+	 * @param arena  the {@link Arena}
+	 * @param sender the {@link CommandSender} that is informed if some of the chunks are not loaded
+	 * @return the {@link ChunkSnapshot chunk snapshots}, ordered by their x coordinate, then their z coordinate, or
+	 *         <code>null</code> if some of the chunks are not loaded
+	 */
+	private ChunkSnapshot[] captureChunks(World world, Arena arena, CommandSender sender) {
+		var minChunkX = arena.minX() >> 4;
+		var minChunkZ = arena.minZ() >> 4;
+		var sizeX = (arena.maxX() >> 4) - minChunkX + 1;
+		var sizeZ = (arena.maxZ() >> 4) - minChunkZ + 1;
+		var unloaded = 0;
+		for (var x = 0; x < sizeX; x++) {
+			for (var z = 0; z < sizeZ; z++) {
+				if (!world.isChunkLoaded(minChunkX + x, minChunkZ + z)) {
+					unloaded++;
+				}
+			}
+		}
+		if (unloaded > 0) {
+			busy.remove(arena.name());
+			sender.sendMessage(unloaded + " chunks of the arena " + arena.name() + " are not loaded, try again while the arena is in use.");
+			return null;
+		}
+
+		var chunks = new ChunkSnapshot[sizeX * sizeZ];
+		for (var x = 0; x < sizeX; x++) {
+			for (var z = 0; z < sizeZ; z++) {
+				var chunk = world.getChunkAt(minChunkX + x, minChunkZ + z);
+				chunks[x * sizeZ + z] = chunk.getChunkSnapshot(false, false, false);
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Compares the blocks of an {@link Arena} with its {@link ArenaSnapshot}, chunk by chunk.
+	 * Called on another thread.
+	 *
+	 * @param world    the {@link World} that contains the {@link Arena}
+	 * @param arena    the {@link Arena}
+	 * @param snapshot the {@link ArenaSnapshot} of the {@link Arena}
+	 * @param palette  the resolved palette of the {@link ArenaSnapshot}
+	 * @param chunks   the {@link ChunkSnapshot chunk snapshots} of the live blocks
+	 * @param sender   the {@link CommandSender} that requested the reset
+	 * @return the {@link Reset} that changes the differing blocks back
+	 */
+	private Reset diff(World world, Arena arena, ArenaSnapshot snapshot, BlockData[] palette, ChunkSnapshot[] chunks, CommandSender sender) {
+		var reset = new Reset(world, arena, snapshot, palette, sender);
+		for (var chunk : chunks) {
+			var chunkX = chunk.getX() << 4;
+			var chunkZ = chunk.getZ() << 4;
+			var minX = Math.max(arena.minX(), chunkX);
+			var maxX = Math.min(arena.maxX(), chunkX + 15);
+			var minZ = Math.max(arena.minZ(), chunkZ);
+			var maxZ = Math.min(arena.maxZ(), chunkZ + 15);
+			for (var y = arena.minY(); y <= arena.maxY(); y++) {
+				for (var z = minZ; z <= maxZ; z++) {
+					for (var x = minX; x <= maxX; x++) {
+						if (!palette[snapshot.getIndex(x, y, z)].equals(chunk.getBlockData(x - chunkX, y, z - chunkZ))) {
+							reset.add(x, y, z);
+						}
+					}
+				}
+			}
+		}
+		return reset;
+	}
+
+	/**
+	 * Builds the palette of an {@link Arena} from its {@link ChunkSnapshot chunk snapshots} and writes it to a file.
+	 * The palette is collected first, then the blocks are streamed to the file, so no copy of all blocks is kept.
+	 * Called on another thread.
+	 *
+	 * @param arena  the {@link Arena}
+	 * @param chunks the {@link ChunkSnapshot chunk snapshots} of the live blocks
+	 * @param path   the path of the {@link ArenaSnapshot} file
+	 * @return the number of captured blocks
+	 * @throws IOException if the file cannot be written
+	 */
+	private long encode(Arena arena, ChunkSnapshot[] chunks, Path path) throws IOException {
+		var paletteIndexes = new HashMap<BlockData, Integer>();
+		var palette = new ArrayList<String>();
+		for (var chunk : chunks) {
+			var chunkX = chunk.getX() << 4;
+			var chunkZ = chunk.getZ() << 4;
+			var minX = Math.max(arena.minX(), chunkX);
+			var maxX = Math.min(arena.maxX(), chunkX + 15);
+			var minZ = Math.max(arena.minZ(), chunkZ);
+			var maxZ = Math.min(arena.maxZ(), chunkZ + 15);
+			for (var y = arena.minY(); y <= arena.maxY(); y++) {
+				for (var z = minZ; z <= maxZ; z++) {
+					for (var x = minX; x <= maxX; x++) {
+						var data = chunk.getBlockData(x - chunkX, y, z - chunkZ);
+						if (!paletteIndexes.containsKey(data)) {
+							paletteIndexes.put(data, palette.size());
+							palette.add(data.getAsString());
+						}
+					}
+				}
+			}
+		}
+
+		// the chunks are ordered by their x coordinate, then their z coordinate, see captureChunks
+		var minChunkX = arena.minX() >> 4;
+		var minChunkZ = arena.minZ() >> 4;
+		var chunksZ = (arena.maxZ() >> 4) - minChunkZ + 1;
+		ArenaSnapshot.write(path, arena, palette, (x, y, z) -> {
+			var chunk = chunks[((x >> 4) - minChunkX) * chunksZ + (z >> 4) - minChunkZ];
+			return paletteIndexes.get(chunk.getBlockData(x & 15, y, z & 15));
+		});
+		return ArenaSnapshot.getVolume(arena);
+	}
+
+	/**
+	 * Queues a {@link Reset} whose comparison has finished, so that its blocks are changed over the next ticks.
+	 *
+	 * @param arena  the {@link Arena} that was compared
+	 * @param reset  the {@link Reset} or <code>null</code> if the comparison failed
+	 * @param sender the {@link CommandSender} that requested the reset
+	 */
+	private void enqueue(Arena arena, Reset reset, CommandSender sender) {
+		if (!running) {
+			return;
+		}
+		if (reset == null) {
+			busy.remove(arena.name());
+			sender.sendMessage("The arena " + arena.name() + " could not be compared with its snapshot.");
+			return;
+		}
+		resets.add(reset);
+	}
+
+	/**
+	 * Lets a {@link Reset} wait until the chunks of its deferred blocks are loaded again.
+	 *
+	 * @param reset the {@link Reset} whose remaining blocks are deferred
+	 */
+	private void defer(Reset reset) {
+		waiting.add(reset);
+		if (!reset.notified) {
+			reset.notified = true;
+			reset.sender.sendMessage(reset.deferred.cardinality() + " blocks of the arena " + reset.arena.name()
+				+ " are reset once their chunks have been loaded again.");
+		}
+	}
+
+	/**
+	 * Finishes a {@link Reset} whose blocks have all been changed.
+	 * The glass panes are indexed again, because the reset may have added or removed some.
+	 *
+	 * @param reset the {@link Reset}
+	 */
+	private void finish(Reset reset) {
+		busy.remove(reset.arena.name());
+		var glassPaneService = stickfight.getWorldService().getGlassPaneService(reset.world);
+		if (glassPaneService != null) {
+			glassPaneService.reindex();
+		}
+		var message = "Reset " + reset.count + " blocks of the arena " + reset.arena.name() + ".";
+		stickfight.getLogger().info(message);
+		reset.sender.sendMessage(message);
+	}
+
+	/**
+	 * Looks up the {@link World} of an {@link Arena} and makes sure that the arena can be captured.
+	 *
+	 * @param arena  the {@link Arena}
+	 * @param sender the {@link CommandSender} that is informed if the arena cannot be captured
+	 * @return the {@link World} or <code>null</code> if the arena cannot be captured
+	 */
+	private World getWorld(Arena arena, CommandSender sender) {
+		if (arena.unlimited()) {
+			sender.sendMessage("The arena " + arena.name() + " is unlimited and cannot be captured.");
+			return null;
+		}
+		if (ArenaSnapshot.getVolume(arena) > MAX_VOLUME) {
+			sender.sendMessage("The arena " + arena.name() + " is too large to be captured.");
+			return null;
+		}
+		var world = Bukkit.getWorld(arena.world());
+		if (world == null) {
+			sender.sendMessage("The world " + arena.world() + " of the arena " + arena.name() + " is not loaded.");
+		}
+		return world;
+	}
+
+	/**
+	 * Changes the blocks of the queued {@link Reset resets} until the reset budget has been used up.
+	 * Blocks in chunks that are not loaded are deferred instead, because changing them would load the chunk synchronously.
+	 */
+	private void tick() {
+		if (resets.isEmpty()) {
+			return;
+		}
+
+		var start = System.nanoTime();
+		var budget = TimeUnit.MICROSECONDS.toNanos(stickfight.getConfiguration().getResetBudget());
+		var changed = 0;
+		var checked = 0;
+		while (!resets.isEmpty()) {
+			var reset = resets.peek();
+			for (var index = reset.differing.nextSetBit(reset.next); index >= 0; index = reset.differing.nextSetBit(reset.next)) {
+				reset.next = index + 1;
+				var x = reset.arena.minX() + index % reset.sizeX;
+				var z = reset.arena.minZ() + index / reset.sizeX % reset.sizeZ;
+				var y = reset.arena.minY() + index / reset.sizeX / reset.sizeZ;
+				if (reset.world.isChunkLoaded(x >> 4, z >> 4)) {
+					reset.world.getBlockAt(x, y, z).setBlockData(reset.palette[reset.snapshot.getIndex(x, y, z)], false);
+					changed++;
+				} else {
+					reset.deferred.set(index);
+				}
+				reset.differing.clear(index);
+				checked++;
+				if (checked % CHECK_INTERVAL == 0 && System.nanoTime() - start >= budget) {
+					blocksReset.add(changed);
+					return;
+				}
+			}
+			resets.poll();
+			if (reset.deferred.isEmpty()) {
+				finish(reset);
+			} else {
+				defer(reset);
+			}
+		}
+		blocksReset.add(changed);
+	}
+
+	/**
+	 * The blocks of an {@link Arena} that differ from its {@link ArenaSnapshot}.
+	 * They are kept as one bit per block of the arena, ordered like the blocks of the {@link ArenaSnapshot}, and the state
+	 * they are changed back to is read from the {@link ArenaSnapshot} when they are changed. Blocks whose chunk was not
+	 * loaded when they were due are moved to a second set of bits until the chunk is loaded again.
+	 */
+	private static final class Reset {
+		private final Arena arena;
+		private int count;
+		private final BitSet deferred = new BitSet();
+		private final BitSet differing;
+		private int next;
+		private boolean notified;
+		private final BlockData[] palette;
+		private final CommandSender sender;
+		private final int sizeX;
+		private final int sizeZ;
+		private final ArenaSnapshot snapshot;
+		private final World world;
+
+		/**
+		 * Creates a new {@link Reset} without any blocks.
+		 *
+		 * @param world    the {@link World} that contains the {@link Arena}
+		 * @param arena    the {@link Arena}
+		 * @param snapshot the {@link ArenaSnapshot} of the {@link Arena}
+		 * @param palette  the resolved palette of the {@link ArenaSnapshot}
+		 * @param sender   the {@link CommandSender} that requested the reset
+		 */
+		private Reset(World world, Arena arena, ArenaSnapshot snapshot, BlockData[] palette, CommandSender sender) {
+			this.world = world;
+			this.arena = arena;
+			this.snapshot = snapshot;
+			this.palette = palette;
+			this.sender = sender;
+			sizeX = arena.maxX() - arena.minX() + 1;
+			sizeZ = arena.maxZ() - arena.minZ() + 1;
+			differing = new BitSet((int) ArenaSnapshot.getVolume(arena));
+		}
+
+		/**
+		 * Adds a block that differs from the {@link ArenaSnapshot}.
+		 *
+		 * @param x the x coordinate of the block
+		 * @param y the y coordinate of the block
+		 * @param z the z coordinate of the block
+		 */
+		private void add(int x, int y, int z) {
+			differing.set(((y - arena.minY()) * sizeZ + (z - arena.minZ())) * sizeX + (x - arena.minX()));
+			count++;
+		}
+
+		/**
+		 * Tests whether a chunk overlaps the {@link Arena}.
+		 *
+		 * @param chunkX the x coordinate of the chunk
+		 * @param chunkZ the z coordinate of the chunk
+		 * @return <code>true</code> if the chunk overlaps the {@link Arena}, <code>false</code> otherwise
+		 */
+		private boolean overlaps(int chunkX, int chunkZ) {
+			return arena.minX() >> 4 <= chunkX && chunkX <= arena.maxX() >> 4 && arena.minZ() >> 4 <= chunkZ && chunkZ <= arena.maxZ() >> 4;
+		}
+	}
+}
@@ -0,0 +1,312 @@
+package de.wariashi.stickfight;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The blocks of the bounding box of an {@link Arena} at the time it was captured, stored in a compact file.
+ * <p>
+ * Every distinct block state is stored once in a palette, as the string that
+ * {@link org.bukkit.block.data.BlockData#getAsString()} returns. Each block is stored as an index into the palette
+ * with just as many bits as the palette needs, packed into <code>long</code> values without spanning two of them.
+ * Blocks are ordered by y, then z, then x.
+ * <p>
+ * A snapshot that has been {@link #read(Path) read} maps the block indices into memory instead of loading them, so
+ * even large arenas cost no heap. A snapshot is immutable and can be read from any thread.
+ */
+public class ArenaSnapshot {
+	private static final int MAGIC = 0x53464131; // "SFA1"
+
+	private final int bitsPerBlock;
+	private final LongBuffer blocks;
+	private final int blocksPerLong;
+	private final int maxX;
+	private final int maxY;
+	private final int maxZ;
+	private final int minX;
+	private final int minY;
+	private final int minZ;
+	private final List<String> palette;
+
+	/**
+	 * Creates a new {@link ArenaSnapshot}.
+	 *
+	 * @param minX         the minimum x coordinate of the bounding box
+	 * @param minY         the minimum y coordinate of the bounding box
+	 * @param minZ         the minimum z coordinate of the bounding box
+	 * @param maxX         the maximum x coordinate of the bounding box
+	 * @param maxY         the maximum y coordinate of the bounding box
+	 * @param maxZ         the maximum z coordinate of the bounding box
+	 * @param palette      the distinct block states
+	 * @param bitsPerBlock the number of bits per block index
+	 * @param blocks       the packed block indices
+	 */
+	private ArenaSnapshot(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, List<String> palette, int bitsPerBlock, LongBuffer blocks) {
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+		this.palette = List.copyOf(palette);
+		this.bitsPerBlock = bitsPerBlock;
+		this.blocksPerLong = 64 / bitsPerBlock;
+		this.blocks = blocks;
+	}
+
+	/**
+	 * Returns the path of the snapshot file of an {@link Arena}.
+	 *
+	 * @param dataFolder the data folder of the plugin
+	 * @param arena      the {@link Arena}
+	 * @return the path of the file, which may not exist
+	 */
+	public static Path getPath(File dataFolder, Arena arena) {
+		return dataFolder.toPath().resolve("snapshots").resolve(arena.name() + ".snapshot");
+	}
+
+	/**
+	 * Calculates the number of blocks in a bounding box.
+	 *
+	 * @param arena the {@link Arena} whose bounding box is measured
+	 * @return the number of blocks
+	 */
+	public static long getVolume(Arena arena) {
+		return (long) (arena.maxX() - arena.minX() + 1) * (arena.maxY() - arena.minY() + 1) * (arena.maxZ() - arena.minZ() + 1);
+	}
+
+	/**
+	 * Reads a snapshot from a file. The block indices are mapped into memory.
+	 *
+	 * @param path the path of the file
+	 * @return the {@link ArenaSnapshot}
+	 * @throws IOException if the file cannot be read or has an unknown format
+	 */
+	public static ArenaSnapshot read(Path path) throws IOException {
+		try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (mapped.getInt() != MAGIC) {
+				throw new IOException("Unknown file format");
+			}
+			var minX = mapped.getInt();
+			var minY = mapped.getInt();
+			var minZ = mapped.getInt();
+			var maxX = mapped.getInt();
+			var maxY = mapped.getInt();
+			var maxZ = mapped.getInt();
+			var paletteSize = mapped.getInt();
+			var palette = new String[paletteSize];
+			for (var i = 0; i < paletteSize; i++) {
+				var bytes = new byte[mapped.getShort() & 0xFFFF];
+				mapped.get(bytes);
+				palette[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			var bitsPerBlock = mapped.getInt();
+			var longCount = mapped.getInt();
+			mapped.position(align(mapped.position()));
+			var blocks = mapped.slice().limit(longCount * Long.BYTES).asLongBuffer();
+			return new ArenaSnapshot(minX, minY, minZ, maxX, maxY, maxZ, List.of(palette), bitsPerBlock, blocks);
+		}
+	}
+
+	/**
+	 * Writes the blocks of a bounding box to a file.
+	 * The blocks are requested from the {@link BlockSource} in the order in which they are stored and streamed to the
+	 * file in small batches, so the size of the arena does not affect the heap.
+	 * The file is written to a temporary file first and then moved, so an existing snapshot is never left half-written.
+	 *
+	 * @param path    the path of the file
+	 * @param arena   the {@link Arena} whose bounding box was captured
+	 * @param palette the distinct block states
+	 * @param blocks  the {@link BlockSource} that returns the index into the palette of every block
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path path, Arena arena, List<String> palette, BlockSource blocks) throws IOException {
+		var bitsPerBlock = Math.max(1, 32 - Integer.numberOfLeadingZeros(palette.size() - 1));
+		var blocksPerLong = 64 / bitsPerBlock;
+		var longCount = (int) ((getVolume(arena) + blocksPerLong - 1) / blocksPerLong);
+
+		var headerSize = Integer.BYTES * 10;
+		var encodedPalette = new byte[palette.size()][];
+		for (var i = 0; i < palette.size(); i++) {
+			encodedPalette[i] = palette.get(i).getBytes(StandardCharsets.UTF_8);
+			headerSize += Short.BYTES + encodedPalette[i].length;
+		}
+		var header = ByteBuffer.allocate(align(headerSize));
+		header.putInt(MAGIC);
+		header.putInt(arena.minX()).putInt(arena.minY()).putInt(arena.minZ());
+		header.putInt(arena.maxX()).putInt(arena.maxY()).putInt(arena.maxZ());
+		header.putInt(palette.size());
+		for (var bytes : encodedPalette) {
+			header.putShort((short) bytes.length).put(bytes);
+		}
+		header.putInt(bitsPerBlock);
+		header.putInt(longCount);
+		header.position(header.capacity()).flip();
+
+		var data = ByteBuffer.allocate(64 * 1024);
+		var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			var packed = 0L;
+			var packedBlocks = 0;
+			for (var y = arena.minY(); y <= arena.maxY(); y++) {
+				for (var z = arena.minZ(); z <= arena.maxZ(); z++) {
+					for (var x = arena.minX(); x <= arena.maxX(); x++) {
+						packed |= (long) blocks.getIndex(x, y, z) << packedBlocks * bitsPerBlock;
+						if (++packedBlocks == blocksPerLong) {
+							putLong(channel, data, packed);
+							packed = 0;
+							packedBlocks = 0;
+						}
+					}
+				}
+			}
+			if (packedBlocks > 0) {
+				putLong(channel, data, packed);
+			}
+			writeFully(channel, data.flip());
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns the palette index of a block.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the index into the {@link #getPalette() palette}
+	 */
+	public int getIndex(int x, int y, int z) {
+		var index = ((long) (y - minY) * (maxZ - minZ + 1) + (z - minZ)) * (maxX - minX + 1) + (x - minX);
+		var packed = blocks.get((int) (index / blocksPerLong));
+		return (int) (packed >>> (index % blocksPerLong) * bitsPerBlock) & (1 << bitsPerBlock) - 1;
+	}
+
+	/**
+	 * @return the maximum x coordinate of the bounding box
+	 */
+	public int getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * @return the maximum y coordinate of the bounding box
+	 */
+	public int getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * @return the maximum z coordinate of the bounding box
+	 */
+	public int getMaxZ() {
+		return maxZ;
+	}
+
+	/**
+	 * @return the minimum x coordinate of the bounding box
+	 */
+	public int getMinX() {
+		return minX;
+	}
+
+	/**
+	 * @return the minimum y coordinate of the bounding box
+	 */
+	public int getMinY() {
+		return minY;
+	}
+
+	/**
+	 * @return the minimum z coordinate of the bounding box
+	 */
+	public int getMinZ() {
+		return minZ;
+	}
+
+	/**
+	 * @return the distinct block states as returned by {@link org.bukkit.block.data.BlockData#getAsString()}
+	 */
+	public List<String> getPalette() {
+		return palette;
+	}
+
+	/**
+	 * Tests whether the snapshot has been captured from the current bounds of an {@link Arena}.
+	 *
+	 * @param arena the {@link Arena}
+	 * @return <code>true</code> if the bounds match, <code>false</code> otherwise
+	 */
+	public boolean matches(Arena arena) {
+		return minX == arena.minX() && minY == arena.minY() && minZ == arena.minZ() && maxX == arena.maxX() && maxY == arena.maxY() && maxZ == arena.maxZ();
+	}
+
+	/**
+	 * Rounds a file position up to the next multiple of 8, so the block indices are aligned.
+	 *
+	 * @param position the position
+	 * @return the aligned position
+	 */
+	private static int align(int position) {
+		return position + Long.BYTES - 1 & -Long.BYTES;
+	}
+
+	/**
+	 * Adds a <code>long</code> to a buffer, writing the buffer to a channel first if it is full.
+	 *
+	 * @param channel the {@link FileChannel}
+	 * @param buffer  the {@link ByteBuffer}
+	 * @param value   the value
+	 * @throws IOException if the buffer cannot be written
+	 */
+	private static void putLong(FileChannel channel, ByteBuffer buffer, long value) throws IOException {
+		if (!buffer.hasRemaining()) {
+			writeFully(channel, buffer.flip());
+			buffer.clear();
+		}
+		buffer.putLong(value);
+	}
+
+	/**
+	 * Writes a buffer to a channel completely.
+	 *
+	 * @param channel the {@link FileChannel}
+	 * @param buffer  the {@link ByteBuffer}
+	 * @throws IOException if the buffer cannot be written
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Supplies the blocks of a bounding box while a snapshot is {@link ArenaSnapshot#write(Path, Arena, List, BlockSource) written}.
+	 */
+	@FunctionalInterface
+	public interface BlockSource {
+		/**
+		 * Returns the palette index of a block.
+		 *
+		 * @param x the x coordinate of the block
+		 * @param y the y coordinate of the block
+		 * @param z the z coordinate of the block
+		 * @return the index into the palette
+		 */
+		int getIndex(int x, int y, int z);
+	}
+}
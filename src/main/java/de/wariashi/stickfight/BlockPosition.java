@@ -0,0 +1,67 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.block.Block;
+
+/**
+ * Packs block coordinates into a single <code>long</code> so that positions can be stored without allocating objects.
+ * The layout matches the one used by Minecraft: 26 bits for x, 26 bits for z and 12 bits for y.
+ */
+public final class BlockPosition {
+	private static final int X_BITS = 26;
+	private static final int Y_BITS = 12;
+	private static final int Z_BITS = 26;
+	private static final long X_MASK = (1L << X_BITS) - 1;
+	private static final long Y_MASK = (1L << Y_BITS) - 1;
+	private static final long Z_MASK = (1L << Z_BITS) - 1;
+	private static final int X_SHIFT = Y_BITS + Z_BITS;
+	private static final int Z_SHIFT = Y_BITS;
+
+	private BlockPosition() {
+	}
+
+	/**
+	 * Packs the coordinates of a {@link Block}.
+	 *
+	 * @param block the {@link Block} whose coordinates should be packed
+	 * @return the packed position
+	 */
+	public static long pack(Block block) {
+		return pack(block.getX(), block.getY(), block.getZ());
+	}
+
+	/**
+	 * Packs block coordinates.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the packed position
+	 */
+	public static long pack(int x, int y, int z) {
+		return (x & X_MASK) << X_SHIFT | (z & Z_MASK) << Z_SHIFT | (y & Y_MASK);
+	}
+
+	/**
+	 * @param position a packed position
+	 * @return the x coordinate of the packed position
+	 */
+	public static int unpackX(long position) {
+		return (int) (position << (64 - X_SHIFT - X_BITS) >> (64 - X_BITS));
+	}
+
+	/**
+	 * @param position a packed position
+	 * @return the y coordinate of the packed position
+	 */
+	public static int unpackY(long position) {
+		return (int) (position << (64 - Y_BITS) >> (64 - Y_BITS));
+	}
+
+	/**
+	 * @param position a packed position
+	 * @return the z coordinate of the packed position
+	 */
+	public static int unpackZ(long position) {
+		return (int) (position << (64 - Z_SHIFT - Z_BITS) >> (64 - Z_BITS));
+	}
+}
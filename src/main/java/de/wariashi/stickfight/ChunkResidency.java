@@ -0,0 +1,171 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Keeps the chunks of the {@link Arena arenas} in a {@link World} loaded while a round is played and collects the
+ * glass pane restorations that are due in chunks that are not loaded.
+ * <p>
+ * While the residency is {@link #acquire(Iterable) acquired}, every chunk of the bounded arenas holds a plugin chunk ticket,
+ * up to {@link #MAX_TICKETS} chunks per world. Restorations in other chunks that are not loaded are
+ * {@link #defer(long, Material) deferred} instead of loading the chunk synchronously, and
+ * {@link #take(int, int, RespawnTimingWheel.Expiration) taken} in one batch once the chunk has been loaded.
+ * <p>
+ * The residency is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class ChunkResidency {
+	/**
+	 * The highest number of chunks per world that are kept loaded.
+	 */
+	public static final int MAX_TICKETS = 4096;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private final Map<Long, Deferred> deferred = new HashMap<>();
+	private int deferredCount;
+	private final Plugin plugin;
+	private long[] tickets = new long[0];
+	private final World world;
+
+	/**
+	 * Creates a new {@link ChunkResidency}.
+	 *
+	 * @param plugin the {@link Plugin} that holds the chunk tickets
+	 * @param world  the {@link World} whose chunks are managed
+	 */
+	public ChunkResidency(Plugin plugin, World world) {
+		this.plugin = plugin;
+		this.world = world;
+	}
+
+	/**
+	 * Adds a chunk ticket to every chunk of the bounded {@link Arena arenas} in the {@link World}, so that they stay loaded.
+	 * Tickets that are already held are released first, so this method can be called again when the arenas change.
+	 *
+	 * @param arenas all {@link Arena arenas}, of which only the ones in the {@link World} are considered
+	 */
+	public void acquire(Iterable<Arena> arenas) {
+		release();
+
+		var keys = new LinkedHashSet<Long>();
+		outer:
+		for (var arena : arenas) {
+			if (arena.unlimited() || !arena.world().equals(world.getName())) {
+				continue;
+			}
+			for (var chunkX = arena.minX() >> 4; chunkX <= arena.maxX() >> 4; chunkX++) {
+				for (var chunkZ = arena.minZ() >> 4; chunkZ <= arena.maxZ() >> 4; chunkZ++) {
+					if (keys.size() == MAX_TICKETS) {
+						break outer;
+					}
+					if (keys.add(getKey(chunkX, chunkZ))) {
+						world.addPluginChunkTicket(chunkX, chunkZ, plugin);
+					}
+				}
+			}
+		}
+		tickets = keys.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Remembers a restoration in a chunk that is not loaded.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 */
+	public void defer(long position, Material material) {
+		var key = getKey(BlockPosition.unpackX(position) >> 4, BlockPosition.unpackZ(position) >> 4);
+		deferred.computeIfAbsent(key, k -> new Deferred()).add(position, material);
+		deferredCount++;
+	}
+
+	/**
+	 * Tests whether the chunk that contains a block is loaded.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the block
+	 * @return <code>true</code> if the chunk is loaded, <code>false</code> otherwise
+	 */
+	public boolean isLoaded(long position) {
+		return world.isChunkLoaded(BlockPosition.unpackX(position) >> 4, BlockPosition.unpackZ(position) >> 4);
+	}
+
+	/**
+	 * Removes the chunk tickets, so that the chunks may be unloaded again.
+	 */
+	public void release() {
+		for (var key : tickets) {
+			world.removePluginChunkTicket((int) (key >> 32), (int) key, plugin);
+		}
+		tickets = new long[0];
+	}
+
+	/**
+	 * @return the number of deferred restorations
+	 */
+	public int size() {
+		return deferredCount;
+	}
+
+	/**
+	 * Hands all deferred restorations of a chunk to the given callback and forgets them.
+	 *
+	 * @param chunkX     the x coordinate of the chunk
+	 * @param chunkZ     the z coordinate of the chunk
+	 * @param expiration the callback that receives the restorations
+	 * @return the number of restorations that were handed out
+	 */
+	public int take(int chunkX, int chunkZ, RespawnTimingWheel.Expiration expiration) {
+		var chunk = deferred.remove(getKey(chunkX, chunkZ));
+		if (chunk == null) {
+			return 0;
+		}
+		for (var i = 0; i < chunk.size; i++) {
+			expiration.expire(chunk.positions[i], chunk.materials[i]);
+		}
+		deferredCount -= chunk.size;
+		return chunk.size;
+	}
+
+	/**
+	 * Combines the coordinates of a chunk into a single key.
+	 *
+	 * @param chunkX the x coordinate of the chunk
+	 * @param chunkZ the z coordinate of the chunk
+	 * @return the key
+	 */
+	private static long getKey(int chunkX, int chunkZ) {
+		return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * The deferred restorations of a single chunk.
+	 */
+	private static final class Deferred {
+		private Material[] materials = new Material[INITIAL_CAPACITY];
+		private long[] positions = new long[INITIAL_CAPACITY];
+		private int size;
+
+		/**
+		 * Adds a restoration.
+		 *
+		 * @param position the {@link BlockPosition packed position} of the glass pane
+		 * @param material the {@link Material} of the glass pane
+		 */
+		private void add(long position, Material material) {
+			if (size == positions.length) {
+				materials = Arrays.copyOf(materials, size * 2);
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+			materials[size] = material;
+			positions[size] = position;
+			size++;
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package de.wariashi.stickfight;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -10,13 +15,100 @@ public class Configuration {
 	/**
 	 * The {@link FileConfiguration} that is used to configure the {@link Stickfight} plugin.
 	 */
-	private final FileConfiguration fileConfiguration;
+	private FileConfiguration fileConfiguration;
+
+	/**
+	 * The config key to configure whether the level of detail should be lowered while the server is under load.
+	 */
+	private static final String ADAPTIVE_QUALITY = "adaptive-quality";
+
+	/**
+	 * The config key of an arena to configure the y coordinate where players will be killed.
+	 */
+	private static final String ARENA_KILL_LAYER = "kill-layer";
+
+	/**
+	 * The config key of an arena to configure its maximum x coordinate.
+	 */
+	private static final String ARENA_MAX_X = "max.x";
+
+	/**
+	 * The config key of an arena to configure its maximum y coordinate.
+	 */
+	private static final String ARENA_MAX_Y = "max.y";
+
+	/**
+	 * The config key of an arena to configure its maximum z coordinate.
+	 */
+	private static final String ARENA_MAX_Z = "max.z";
+
+	/**
+	 * The config key of an arena to configure its minimum x coordinate.
+	 */
+	private static final String ARENA_MIN_X = "min.x";
+
+	/**
+	 * The config key of an arena to configure its minimum y coordinate.
+	 */
+	private static final String ARENA_MIN_Y = "min.y";
+
+	/**
+	 * The config key of an arena to configure its minimum z coordinate.
+	 */
+	private static final String ARENA_MIN_Z = "min.z";
+
+	/**
+	 * The config key of an arena to configure after how many seconds broken glass panes are restored.
+	 */
+	private static final String ARENA_RESPAWN_TIME = "respawn-time";
+
+	/**
+	 * The config key of an arena to configure the name of the world that contains it.
+	 */
+	private static final String ARENA_WORLD = "world";
+
+	/**
+	 * The config key of the section that contains the arenas by name.
+	 * If there is no such section, the play area is used as the only arena.
+	 */
+	private static final String ARENAS = "arenas";
+
+	/**
+	 * The name of the arena that is created from the play area if no arenas are configured.
+	 */
+	private static final String DEFAULT_ARENA = "default";
+
+	/**
+	 * The number of seconds after which broken glass panes are restored if an arena does not configure it.
+	 */
+	private static final int DEFAULT_RESPAWN_TIME = 60;
+
+	/**
+	 * The config key to configure the distance in blocks up to which players receive particles and sounds.
+	 */
+	private static final String EFFECT_RADIUS = "effect-radius";
+
+	/**
+	 * The config key to configure for how many seconds a hit counts towards a kill or an assist.
+	 */
+	private static final String KILL_CREDIT_WINDOW = "kill-credit-window";
 
 	/**
-	 * The config key to configure the y coordinate where players will be killed.
+	 * The config key to configure the y coordinate where players will be killed outside of all arenas
+	 * and within arenas that do not configure it.
 	 */
 	private static final String KILL_LAYER = "kill-layer";
 
+	/**
+	 * The config key to configure how many ticks pass between two updates of the leaderboard.
+	 */
+	private static final String LEADERBOARD_INTERVAL = "leaderboard.interval";
+
+	/**
+	 * The config key to configure how many players are shown in the leaderboard.
+	 */
+	private static final String LEADERBOARD_SIZE = "leaderboard.size";
+
 	/**
 	 * The config key to configure the maximum x coordinate of the play area.
 	 */
@@ -32,6 +124,16 @@ public class Configuration {
 	 */
 	private static final String MAX_Z = "play-area.max.z";
 
+	/**
+	 * The config key to configure the file that metrics are written to periodically, an empty value disables the file.
+	 */
+	private static final String METRICS_FILE = "metrics.file";
+
+	/**
+	 * The config key to configure how many seconds pass between two writes of the metrics file.
+	 */
+	private static final String METRICS_INTERVAL = "metrics.interval";
+
 	/**
 	 * The config key to configure the minimum x coordinate of the play area.
 	 */
@@ -47,91 +149,309 @@ public class Configuration {
 	 */
 	private static final String MIN_Z = "play-area.min.z";
 
+	/**
+	 * The config key to configure the directory that replays are written to.
+	 */
+	private static final String REPLAY_DIRECTORY = "replay.directory";
+
+	/**
+	 * The config key to configure whether matches should be recorded.
+	 */
+	private static final String REPLAY_ENABLED = "replay.enabled";
+
+	/**
+	 * The config key to configure how many microseconds per tick may be spent on resetting arenas.
+	 */
+	private static final String RESET_BUDGET = "reset-budget";
+
+	/**
+	 * The config key to configure how many microseconds per tick may be spent on restoring glass panes.
+	 */
+	private static final String RESTORATION_BUDGET = "restoration-budget";
+
+	/**
+	 * The config key to configure whether fast players shatter the whole cluster of connected glass panes they hit.
+	 */
+	private static final String SHATTER_ENABLED = "shatter.enabled";
+
+	/**
+	 * The config key to configure the maximum number of glass panes that shatter at once.
+	 */
+	private static final String SHATTER_MAX_PANES = "shatter.max-panes";
+
+	/**
+	 * The config key to configure how many blocks per movement a player must cover to shatter a cluster of glass panes.
+	 */
+	private static final String SHATTER_MIN_SPEED = "shatter.min-speed";
+
+	/**
+	 * The config key to configure how many microseconds per tick may be spent on scheduled tasks.
+	 */
+	private static final String TICK_BUDGET = "tick-budget";
+
 	/**
 	 * The config key to configure whether the play area should be unlimited.
 	 */
 	private static final String UNLIMITED = "play-area.unlimited";
 
+	/**
+	 * The config key to configure whether the config file should be reloaded automatically when it changes.
+	 */
+	private static final String WATCH_FILE = "watch-file";
+
+	/**
+	 * The {@link JavaPlugin} whose {@link FileConfiguration} is used.
+	 */
+	private final JavaPlugin plugin;
+
+	/**
+	 * The values of the {@link FileConfiguration} at the time it was last loaded.
+	 */
+	private volatile ConfigurationSnapshot snapshot;
+
 	/**
 	 * Creates a new {@link Configuration} object.
 	 *
 	 * @param plugin the {@link JavaPlugin} whose {@link FileConfiguration} should be used
 	 */
 	public Configuration(JavaPlugin plugin) {
-		fileConfiguration = plugin.getConfig();
-		var options = fileConfiguration.options();
-		options.copyDefaults(true);
-		addDefaults();
-		plugin.saveConfig();
+		this.plugin = plugin;
+		load(true);
+	}
+
+	/**
+	 * Returns for how long a hit counts towards a kill or an assist.
+	 * If a {@link org.bukkit.entity.Player Player} dies within this time after being hit, the attacker gets the credit.
+	 *
+	 * @return the number of ticks that a hit counts for
+	 */
+	public long getKillCreditWindow() {
+		return fileConfiguration.getLong(KILL_CREDIT_WINDOW) * 20;
+	}
+
+	/**
+	 * @return the number of ticks between two updates of the leaderboard
+	 */
+	public int getLeaderboardInterval() {
+		return fileConfiguration.getInt(LEADERBOARD_INTERVAL);
+	}
+
+	/**
+	 * @return the number of players that are shown in the leaderboard
+	 */
+	public int getLeaderboardSize() {
+		return fileConfiguration.getInt(LEADERBOARD_SIZE);
 	}
 
 	/**
-	 * @return the y coordinate where players will be killed.
+	 * Returns the file that metrics are written to periodically.
+	 * Relative paths are resolved against the data folder of the plugin.
+	 *
+	 * @return the path of the metrics file or an empty string if no metrics file should be written
 	 */
-	public long getKillLayer() {
-		return fileConfiguration.getLong(KILL_LAYER);
+	public String getMetricsFile() {
+		return fileConfiguration.getString(METRICS_FILE, "");
 	}
 
 	/**
-	 * @return the maximum x coordinate of the play area
+	 * @return the number of seconds between two writes of the metrics file
+	 */
+	public int getMetricsInterval() {
+		return fileConfiguration.getInt(METRICS_INTERVAL);
+	}
+
+	/**
+	 * Returns the directory that replays are written to.
+	 * Relative paths are resolved against the data folder of the plugin.
+	 *
+	 * @return the path of the replay directory
 	 */
-	public long getMaxX() {
-		return fileConfiguration.getLong(MAX_X);
+	public String getReplayDirectory() {
+		return fileConfiguration.getString(REPLAY_DIRECTORY, "replays");
 	}
 
 	/**
-	 * @return the maximum y coordinate of the play area
+	 * @return the number of microseconds per tick that may be spent on changing blocks back when an {@link Arena} is reset
 	 */
-	public long getMaxY() {
-		return fileConfiguration.getLong(MAX_Y);
+	public long getResetBudget() {
+		return fileConfiguration.getLong(RESET_BUDGET);
 	}
 
 	/**
-	 * @return the maximum z coordinate of the play area
+	 * Returns the values of the config file at the time it was last loaded.
+	 * The returned {@link ConfigurationSnapshot} never changes, a {@link #reload() reload} replaces it atomically.
+	 *
+	 * @return the current {@link ConfigurationSnapshot}
 	 */
-	public long getMaxZ() {
-		return fileConfiguration.getLong(MAX_Z);
+	public ConfigurationSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	/**
-	 * @return the minimum x coordinate of the play area
+	 * @return <code>true</code> if the level of detail should be lowered while the server is under load, <code>false</code> otherwise
 	 */
-	public long getMinX() {
-		return fileConfiguration.getLong(MIN_X);
+	public boolean isAdaptiveQuality() {
+		return fileConfiguration.getBoolean(ADAPTIVE_QUALITY);
 	}
 
 	/**
-	 * @return the minimum y coordinate of the play area
+	 * @return <code>true</code> if matches should be recorded by the {@link ReplayRecorder}, <code>false</code> otherwise
 	 */
-	public long getMinY() {
-		return fileConfiguration.getLong(MIN_Y);
+	public boolean isReplayEnabled() {
+		return fileConfiguration.getBoolean(REPLAY_ENABLED);
 	}
 
 	/**
-	 * @return the minimum z coordinate of the play area
+	 * @return <code>true</code> if the config file should be reloaded automatically when it changes, <code>false</code> otherwise
 	 */
-	public long getMinZ() {
-		return fileConfiguration.getLong(MIN_Z);
+	public boolean isWatchFile() {
+		return fileConfiguration.getBoolean(WATCH_FILE);
 	}
 
 	/**
-	 * @return <code>true</code> it the play area should be unlimited, <code>false</code> otherwise
+	 * Reads the config file again and replaces the current {@link ConfigurationSnapshot}.
+	 * Unlike the initial load, the config file is not written back, so edits in progress are never overwritten.
+	 * Must be called on the main thread.
 	 */
-	public boolean isUnlimited() {
-		return fileConfiguration.getBoolean(UNLIMITED);
+	public void reload() {
+		plugin.reloadConfig();
+		load(false);
 	}
 
 	/**
 	 * Adds the missing default values to the config file.
 	 */
 	private void addDefaults() {
+		fileConfiguration.addDefault(ADAPTIVE_QUALITY, true);
+		fileConfiguration.addDefault(EFFECT_RADIUS, 64);
+		fileConfiguration.addDefault(KILL_CREDIT_WINDOW, 10);
 		fileConfiguration.addDefault(KILL_LAYER, -20);
+		fileConfiguration.addDefault(LEADERBOARD_INTERVAL, 20);
+		fileConfiguration.addDefault(LEADERBOARD_SIZE, 10);
 		fileConfiguration.addDefault(MAX_X, 10);
 		fileConfiguration.addDefault(MAX_Y, 10);
 		fileConfiguration.addDefault(MAX_Z, 10);
+		fileConfiguration.addDefault(METRICS_FILE, "");
+		fileConfiguration.addDefault(METRICS_INTERVAL, 15);
 		fileConfiguration.addDefault(MIN_X, -10);
 		fileConfiguration.addDefault(MIN_Y, -10);
 		fileConfiguration.addDefault(MIN_Z, -10);
+		fileConfiguration.addDefault(REPLAY_DIRECTORY, "replays");
+		fileConfiguration.addDefault(REPLAY_ENABLED, false);
+		fileConfiguration.addDefault(RESET_BUDGET, 5000);
+		fileConfiguration.addDefault(RESTORATION_BUDGET, 2000);
+		fileConfiguration.addDefault(SHATTER_ENABLED, false);
+		fileConfiguration.addDefault(SHATTER_MAX_PANES, 64);
+		fileConfiguration.addDefault(SHATTER_MIN_SPEED, 1.0);
+		fileConfiguration.addDefault(TICK_BUDGET, 10000);
 		fileConfiguration.addDefault(UNLIMITED, true);
+		fileConfiguration.addDefault(WATCH_FILE, false);
+	}
+
+	/**
+	 * Loads the {@link FileConfiguration} of the plugin, adds missing default values and creates a new {@link ConfigurationSnapshot}.
+	 *
+	 * @param save <code>true</code> if missing default values should be written to the config file
+	 */
+	private void load(boolean save) {
+		fileConfiguration = plugin.getConfig();
+		var options = fileConfiguration.options();
+		options.copyDefaults(true);
+		addDefaults();
+		if (save) {
+			plugin.saveConfig();
+		}
+
+		snapshot = new ConfigurationSnapshot(
+			fileConfiguration.getLong(KILL_LAYER),
+			new ArenaIndex(loadArenas()),
+			fileConfiguration.getLong(RESTORATION_BUDGET),
+			fileConfiguration.getLong(EFFECT_RADIUS),
+			fileConfiguration.getLong(TICK_BUDGET),
+			fileConfiguration.getBoolean(SHATTER_ENABLED),
+			fileConfiguration.getDouble(SHATTER_MIN_SPEED),
+			Math.max(1, fileConfiguration.getInt(SHATTER_MAX_PANES))
+		);
+	}
+
+	/**
+	 * Creates an {@link Arena} from a section of the config file.
+	 *
+	 * @param id      the id of the arena
+	 * @param name    the name of the arena
+	 * @param section the {@link ConfigurationSection} that contains the values of the arena
+	 * @return the {@link Arena}
+	 */
+	private Arena loadArena(int id, String name, ConfigurationSection section) {
+		var minX = section.getInt(ARENA_MIN_X);
+		var minY = section.getInt(ARENA_MIN_Y);
+		var minZ = section.getInt(ARENA_MIN_Z);
+		var maxX = section.getInt(ARENA_MAX_X);
+		var maxY = section.getInt(ARENA_MAX_Y);
+		var maxZ = section.getInt(ARENA_MAX_Z);
+		return new Arena(
+			id,
+			name,
+			section.getString(ARENA_WORLD, getDefaultWorld()),
+			Math.min(minX, maxX),
+			Math.min(minY, maxY),
+			Math.min(minZ, maxZ),
+			Math.max(minX, maxX),
+			Math.max(minY, maxY),
+			Math.max(minZ, maxZ),
+			false,
+			section.getLong(ARENA_KILL_LAYER, fileConfiguration.getLong(KILL_LAYER)),
+			section.getLong(ARENA_RESPAWN_TIME, DEFAULT_RESPAWN_TIME) * 20 // seconds * ticks per second
+		);
+	}
+
+	/**
+	 * Creates the {@link Arena arenas} from the config file.
+	 * If no arenas are configured, the play area is used as the only arena.
+	 *
+	 * @return the {@link Arena arenas}, ordered by their ids
+	 */
+	private List<Arena> loadArenas() {
+		var arenas = new ArrayList<Arena>();
+		var section = fileConfiguration.getConfigurationSection(ARENAS);
+		if (section != null) {
+			for (var name : section.getKeys(false)) {
+				var arenaSection = section.getConfigurationSection(name);
+				if (arenaSection != null) {
+					arenas.add(loadArena(arenas.size(), name, arenaSection));
+				}
+			}
+		}
+
+		if (arenas.isEmpty()) {
+			var minX = fileConfiguration.getInt(MIN_X);
+			var minY = fileConfiguration.getInt(MIN_Y);
+			var minZ = fileConfiguration.getInt(MIN_Z);
+			var maxX = fileConfiguration.getInt(MAX_X);
+			var maxY = fileConfiguration.getInt(MAX_Y);
+			var maxZ = fileConfiguration.getInt(MAX_Z);
+			arenas.add(new Arena(
+				0,
+				DEFAULT_ARENA,
+				getDefaultWorld(),
+				minX,
+				minY,
+				minZ,
+				maxX,
+				maxY,
+				maxZ,
+				fileConfiguration.getBoolean(UNLIMITED),
+				fileConfiguration.getLong(KILL_LAYER),
+				DEFAULT_RESPAWN_TIME * 20 // seconds * ticks per second
+			));
+		}
+		return arenas;
+	}
+
+	/**
+	 * @return the name of the main {@link org.bukkit.World World}, which contains arenas that do not configure a world
+	 */
+	private String getDefaultWorld() {
+		return Bukkit.getWorlds().getFirst().getName();
 	}
 }
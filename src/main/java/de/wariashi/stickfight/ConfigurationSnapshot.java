@@ -0,0 +1,55 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * An immutable copy of the values of a {@link Configuration}.
+ * Hot paths read these primitive fields directly instead of looking up the values in the config file every time.
+ *
+ * @param killLayer         the y coordinate where players will be killed outside of all arenas
+ * @param arenas            the {@link ArenaIndex} that contains all {@link Arena arenas}
+ * @param restorationBudget the number of microseconds per tick that may be spent on restoring glass panes
+ * @param effectRadius      the distance in blocks up to which players receive particles and sounds
+ * @param tickBudget        the number of microseconds per tick that may be spent on scheduled tasks
+ * @param shatterEnabled    <code>true</code> if fast players shatter the whole cluster of connected glass panes they hit
+ * @param shatterMinSpeed   the number of blocks that a player must cover within a single movement to shatter a cluster
+ * @param shatterMaxPanes   the maximum number of glass panes that shatter at once, including the one that has been hit
+ */
+public record ConfigurationSnapshot(long killLayer, ArenaIndex arenas, long restorationBudget, long effectRadius, long tickBudget,
+	boolean shatterEnabled, double shatterMinSpeed, int shatterMaxPanes) {
+	/**
+	 * Tests whether a {@link Location} is within any {@link Arena}.
+	 *
+	 * @param location the {@link Location} to test
+	 * @return <code>true</code> if the {@link Location} is within an arena, <code>false</code> otherwise
+	 */
+	public boolean contains(Location location) {
+		return arenas.find(location) != null;
+	}
+
+	/**
+	 * Looks up the {@link Arena} that contains a {@link Location}.
+	 *
+	 * @param location the {@link Location}
+	 * @return the {@link Arena} or <code>null</code> if the {@link Location} is not within any arena
+	 */
+	public Arena getArena(Location location) {
+		return arenas.find(location);
+	}
+
+	/**
+	 * Returns the kill layer that applies to a block column.
+	 * Columns within the horizontal bounds of an {@link Arena} use the kill layer of the arena, all others use the
+	 * global kill layer.
+	 *
+	 * @param world the {@link World} of the column
+	 * @param x     the x coordinate of the column
+	 * @param z     the z coordinate of the column
+	 * @return the y coordinate where players will be killed
+	 */
+	public long getKillLayer(World world, int x, int z) {
+		var arena = arenas.findColumn(world, x, z);
+		return arena != null ? arena.killLayer() : killLayer;
+	}
+}
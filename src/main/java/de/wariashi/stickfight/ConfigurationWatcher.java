@@ -0,0 +1,98 @@
+package de.wariashi.stickfight;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+
+/**
+ * The {@link ConfigurationWatcher} reloads the {@link Configuration} when the config file changes on disk.
+ * File system events are received on a background thread, the reload itself happens on the main thread.
+ */
+public class ConfigurationWatcher {
+	private static final String CONFIG_FILE = "config.yml";
+	private static final int RELOAD_DELAY = 10; // ticks
+
+	private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+	private boolean running = false;
+	private final Stickfight stickfight;
+	private Thread thread;
+	private WatchService watchService;
+
+	/**
+	 * Creates a new {@link ConfigurationWatcher}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public ConfigurationWatcher(Stickfight stickfight) {
+		this.stickfight = stickfight;
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			try {
+				var directory = stickfight.getDataFolder().toPath();
+				watchService = FileSystems.getDefault().newWatchService();
+				directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			} catch (IOException e) {
+				stickfight.getLogger().log(Level.WARNING, "Could not watch the config file", e);
+				return;
+			}
+
+			thread = new Thread(this::watch, "Stickfight Config Watcher");
+			thread.setDaemon(true);
+			thread.start();
+
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by closing the {@link WatchService}.
+	 */
+	public synchronized void stop() {
+		if (running) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				stickfight.getLogger().log(Level.WARNING, "Could not stop watching the config file", e);
+			}
+			thread.interrupt();
+			running = false;
+		}
+	}
+
+	/**
+	 * Waits for changes to the config file and schedules a reload on the main thread.
+	 * Editors often write a file several times when saving it, so reloads are delayed and coalesced.
+	 */
+	private void watch() {
+		var configFile = Path.of(CONFIG_FILE);
+		try {
+			while (true) {
+				var key = watchService.take();
+				for (var event : key.pollEvents()) {
+					if (configFile.equals(event.context()) && reloadScheduled.compareAndSet(false, true)) {
+						var scheduler = Bukkit.getScheduler();
+						scheduler.runTaskLater(stickfight, () -> {
+							reloadScheduled.set(false);
+							stickfight.reloadConfiguration();
+						}, RELOAD_DELAY);
+					}
+				}
+				key.reset();
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// the watcher has been stopped
+		}
+	}
+}
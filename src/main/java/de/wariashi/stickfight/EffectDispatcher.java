@@ -0,0 +1,268 @@
+package de.wariashi.stickfight;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * The {@link EffectDispatcher} collects particles and sounds during a tick and sends them once per tick.
+ * <p>
+ * Identical effects at nearby positions, e.g. the glass panes of a wall that shatters at once, are merged into a single
+ * effect. Particles of merged effects are spread across the area of the original effects. Every effect is only sent to
+ * the {@link Player players} within the {@link ConfigurationSnapshot#effectRadius() effect radius} in the same
+ * {@link World}, which are looked up in a grid instead of checking every {@link Player} for every effect.
+ * While the server is under load, the {@link QualityLevel} reduces the number of particles and the radius of sounds.
+ * <p>
+ * The dispatcher is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class EffectDispatcher {
+	private static final int MAX_PARTICLES = 128;
+	private static final int MERGE_CELL_BITS = 1; // effects within 2 blocks are merged
+
+	private final Map<Key, Effect> effects = new LinkedHashMap<>();
+	private boolean running = false;
+	private final Stickfight stickfight;
+	private TickScheduler.ScheduledTask task;
+
+	/**
+	 * Creates a new {@link EffectDispatcher}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public EffectDispatcher(Stickfight stickfight) {
+		this.stickfight = stickfight;
+	}
+
+	/**
+	 * Queues a particle effect that is sent at the end of the tick.
+	 *
+	 * @param location the {@link Location} of the effect
+	 * @param particle the {@link Particle}
+	 * @param count    the number of particles
+	 * @param data     the data of the {@link Particle}, e.g. the block data of {@link Particle#BLOCK block particles},
+	 *                 or <code>null</code>
+	 */
+	public void playParticle(Location location, Particle particle, int count, Object data) {
+		var level = stickfight.getQualityController().getLevel();
+		var effect = getEffect(location, particle, data, 0);
+		effect.count = Math.min(level.scaleParticles(MAX_PARTICLES), effect.count + level.scaleParticles(count));
+	}
+
+	/**
+	 * Queues a sound effect that is sent at the end of the tick.
+	 * Identical sounds at nearby positions are only played once, at the highest volume.
+	 *
+	 * @param location the {@link Location} of the effect
+	 * @param sound    the {@link Sound}
+	 * @param volume   the volume of the {@link Sound}
+	 * @param pitch    the pitch of the {@link Sound}
+	 */
+	public void playSound(Location location, Sound sound, float volume, float pitch) {
+		var effect = getEffect(location, sound, null, pitch);
+		effect.volume = Math.max(effect.volume, volume);
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var tickScheduler = stickfight.getTickScheduler();
+			task = tickScheduler.schedule("EffectDispatcher.tick", TickScheduler.Priority.CRITICAL, 1, this::tick);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by canceling its task. Queued effects are discarded.
+	 */
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+		}
+		effects.clear();
+		running = false;
+	}
+
+	/**
+	 * Adds all {@link Player players} of a {@link World} to a grid whose cells are as large as the effect radius,
+	 * so that the {@link Player players} near an effect can be found in the surrounding cells.
+	 *
+	 * @param world    the {@link World}
+	 * @param cellSize the size of a cell in blocks
+	 * @return the {@link Player players} by cell
+	 */
+	private Map<Long, List<Player>> createGrid(World world, double cellSize) {
+		var grid = new HashMap<Long, List<Player>>();
+		for (var player : world.getPlayers()) {
+			var location = player.getLocation();
+			var cell = toCell(location.getX(), location.getZ(), cellSize);
+			grid.computeIfAbsent(cell, key -> new ArrayList<>()).add(player);
+		}
+		return grid;
+	}
+
+	/**
+	 * Returns the queued effect that a new effect should be merged into and queues a new one if there is none.
+	 *
+	 * @param location the {@link Location} of the new effect
+	 * @param type     the {@link Particle} or {@link Sound}
+	 * @param data     the data of the {@link Particle} or <code>null</code>
+	 * @param pitch    the pitch of the {@link Sound} or <code>0</code>
+	 * @return the queued effect
+	 */
+	private Effect getEffect(Location location, Object type, Object data, float pitch) {
+		var x = location.getX();
+		var y = location.getY();
+		var z = location.getZ();
+		var cell = BlockPosition.pack((int) Math.floor(x) >> MERGE_CELL_BITS, (int) Math.floor(y) >> MERGE_CELL_BITS, (int) Math.floor(z) >> MERGE_CELL_BITS);
+		var key = new Key(location.getWorld(), type, data, pitch, cell);
+		var effect = effects.computeIfAbsent(key, k -> new Effect(x, y, z));
+		effect.add(x, y, z);
+		return effect;
+	}
+
+	/**
+	 * Sends a merged effect to a {@link Player}.
+	 *
+	 * @param player   the {@link Player}
+	 * @param key      the {@link Key} of the effect
+	 * @param effect   the merged effect
+	 * @param location the {@link Location} of the merged effect
+	 */
+	private void send(Player player, Key key, Effect effect, Location location) {
+		if (key.type() instanceof Particle particle) {
+			var offsetX = (effect.maxX - effect.minX) / 2;
+			var offsetY = (effect.maxY - effect.minY) / 2;
+			var offsetZ = (effect.maxZ - effect.minZ) / 2;
+			player.spawnParticle(particle, location, effect.count, offsetX, offsetY, offsetZ, key.data());
+		} else if (key.type() instanceof Sound sound) {
+			player.playSound(location, sound, effect.volume, key.pitch());
+		}
+	}
+
+	/**
+	 * Sends all queued effects to the {@link Player players} near them.
+	 */
+	private void tick() {
+		if (effects.isEmpty()) {
+			return;
+		}
+
+		var radius = (double) Math.max(1, stickfight.getConfiguration().getSnapshot().effectRadius());
+		var radiusSquared = radius * radius;
+		var soundRadius = radius * stickfight.getQualityController().getLevel().getSoundRadiusFactor();
+		var soundRadiusSquared = soundRadius * soundRadius;
+		var grids = new HashMap<World, Map<Long, List<Player>>>();
+		for (var entry : effects.entrySet()) {
+			var key = entry.getKey();
+			var effect = entry.getValue();
+			var world = key.world();
+			var grid = grids.computeIfAbsent(world, w -> createGrid(w, radius));
+			if (grid.isEmpty()) {
+				continue;
+			}
+
+			var x = (effect.minX + effect.maxX) / 2;
+			var y = (effect.minY + effect.maxY) / 2;
+			var z = (effect.minZ + effect.maxZ) / 2;
+			var location = new Location(world, x, y, z);
+			var maxDistanceSquared = key.type() instanceof Sound ? soundRadiusSquared : radiusSquared;
+			var cellX = (int) Math.floor(x / radius);
+			var cellZ = (int) Math.floor(z / radius);
+			for (var dx = -1; dx <= 1; dx++) {
+				for (var dz = -1; dz <= 1; dz++) {
+					var players = grid.get(BlockPosition.pack(cellX + dx, 0, cellZ + dz));
+					if (players == null) {
+						continue;
+					}
+					for (var player : players) {
+						var playerLocation = player.getLocation();
+						var distanceX = playerLocation.getX() - x;
+						var distanceY = playerLocation.getY() - y;
+						var distanceZ = playerLocation.getZ() - z;
+						if (distanceX * distanceX + distanceY * distanceY + distanceZ * distanceZ <= maxDistanceSquared) {
+							send(player, key, effect, location);
+						}
+					}
+				}
+			}
+		}
+		effects.clear();
+	}
+
+	/**
+	 * Calculates the grid cell of a position.
+	 *
+	 * @param x        the x coordinate
+	 * @param z        the z coordinate
+	 * @param cellSize the size of a cell in blocks
+	 * @return the {@link BlockPosition packed position} of the cell
+	 */
+	private long toCell(double x, double z, double cellSize) {
+		return BlockPosition.pack((int) Math.floor(x / cellSize), 0, (int) Math.floor(z / cellSize));
+	}
+
+	/**
+	 * The accumulated values of merged effects.
+	 */
+	private static final class Effect {
+		private int count;
+		private double maxX;
+		private double maxY;
+		private double maxZ;
+		private double minX;
+		private double minY;
+		private double minZ;
+		private float volume;
+
+		/**
+		 * Creates a new {@link Effect} at a position.
+		 *
+		 * @param x the x coordinate
+		 * @param y the y coordinate
+		 * @param z the z coordinate
+		 */
+		private Effect(double x, double y, double z) {
+			maxX = minX = x;
+			maxY = minY = y;
+			maxZ = minZ = z;
+		}
+
+		/**
+		 * Extends the area of the effect by a position.
+		 *
+		 * @param x the x coordinate
+		 * @param y the y coordinate
+		 * @param z the z coordinate
+		 */
+		private void add(double x, double y, double z) {
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			maxZ = Math.max(maxZ, z);
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			minZ = Math.min(minZ, z);
+		}
+	}
+
+	/**
+	 * Identifies effects that can be merged.
+	 *
+	 * @param world the {@link World} of the effect
+	 * @param type  the {@link Particle} or {@link Sound}
+	 * @param data  the data of the {@link Particle} or <code>null</code>
+	 * @param pitch the pitch of the {@link Sound} or <code>0</code>
+	 * @param cell  the {@link BlockPosition packed position} of the merge cell
+	 */
+	private record Key(World world, Object type, Object data, float pitch, long cell) {
+	}
+}
@@ -0,0 +1,290 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+/**
+ * Remembers which blocks of the play area are glass panes, so that movements can be checked without touching the world.
+ * <p>
+ * The play area is divided into chunk sections of 16 &times; 16 &times; 16 blocks. Sections without glass panes
+ * are not allocated at all. Every other section stores one bit per block that tells whether it is a glass pane,
+ * one bit per block that tells whether the glass pane is stained and a nibble per block with the color of stained
+ * glass panes.
+ * <p>
+ * The index learns about blocks that are placed or broken by players and about the blocks of chunks that are loaded.
+ * Glass panes that are placed in other ways, e.g. by WorldEdit or other plugins, may be missing, so a miss only means
+ * that the block has to be checked in the world, see {@link GlassPaneService}.
+ * <p>
+ * The index is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class GlassPaneIndex {
+	private static final int SECTION_BITS = 4;
+	private static final int SECTION_MASK = (1 << SECTION_BITS) - 1;
+
+	private final int maxX;
+	private final int maxY;
+	private final int maxZ;
+	private final int minSectionX;
+	private final int minSectionY;
+	private final int minSectionZ;
+	private final int minX;
+	private final int minY;
+	private final int minZ;
+	private final int sectionCountX;
+	private final int sectionCountZ;
+	private final Section[] sections;
+	private int size;
+
+	/**
+	 * Creates a new, empty {@link GlassPaneIndex} for an area.
+	 *
+	 * @param minX the minimum x coordinate of the area
+	 * @param minY the minimum y coordinate of the area
+	 * @param minZ the minimum z coordinate of the area
+	 * @param maxX the maximum x coordinate of the area
+	 * @param maxY the maximum y coordinate of the area
+	 * @param maxZ the maximum z coordinate of the area
+	 */
+	public GlassPaneIndex(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		minSectionX = minX >> SECTION_BITS;
+		minSectionY = minY >> SECTION_BITS;
+		minSectionZ = minZ >> SECTION_BITS;
+		sectionCountX = (maxX >> SECTION_BITS) - minSectionX + 1;
+		sectionCountZ = (maxZ >> SECTION_BITS) - minSectionZ + 1;
+		var sectionCountY = (maxY >> SECTION_BITS) - minSectionY + 1;
+		sections = new Section[sectionCountX * sectionCountY * sectionCountZ];
+	}
+
+	/**
+	 * Creates a {@link GlassPaneIndex} for an {@link Arena} and fills it with the glass panes that are currently in the world.
+	 * Only chunks that are already loaded are scanned, the others are {@link #scan(Chunk) scanned} when they are loaded.
+	 *
+	 * @param world the {@link World} that contains the arena
+	 * @param arena the {@link Arena}
+	 * @return the {@link GlassPaneIndex} or <code>null</code> if the arena is unlimited
+	 */
+	public static GlassPaneIndex scan(World world, Arena arena) {
+		if (arena.unlimited()) {
+			return null;
+		}
+
+		var minX = arena.minX();
+		var minY = Math.max(arena.minY(), world.getMinHeight());
+		var minZ = arena.minZ();
+		var maxX = arena.maxX();
+		var maxY = Math.min(arena.maxY(), world.getMaxHeight() - 1);
+		var maxZ = arena.maxZ();
+		if (maxX < minX || maxY < minY || maxZ < minZ) {
+			return null;
+		}
+
+		var index = new GlassPaneIndex(minX, minY, minZ, maxX, maxY, maxZ);
+		for (var chunkX = minX >> SECTION_BITS; chunkX <= maxX >> SECTION_BITS; chunkX++) {
+			for (var chunkZ = minZ >> SECTION_BITS; chunkZ <= maxZ >> SECTION_BITS; chunkZ++) {
+				if (world.isChunkLoaded(chunkX, chunkZ)) {
+					index.scan(world.getChunkAt(chunkX, chunkZ));
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Looks up the glass pane at a block position.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the {@link Material} of the glass pane or <code>null</code> if there is no glass pane
+	 */
+	public Material get(int x, int y, int z) {
+		var section = getSection(x, y, z);
+		if (section == null) {
+			return null;
+		}
+
+		var bit = bitIndex(x, y, z);
+		if ((section.panes[bit >> 6] & 1L << bit) == 0) {
+			return null;
+		} else if ((section.stained[bit >> 6] & 1L << bit) == 0) {
+			return Material.GLASS_PANE;
+		}
+		var color = (int) (section.colors[bit >> 4] >>> ((bit & 15) << 2) & 0xF);
+		return GlassPanes.getMaterial(color + 1);
+	}
+
+	/**
+	 * Stores the glass pane at a block position.
+	 * Positions outside the area and {@link Material materials} that are no glass panes are ignored.
+	 *
+	 * @param x        the x coordinate of the block
+	 * @param y        the y coordinate of the block
+	 * @param z        the z coordinate of the block
+	 * @param material the {@link Material} of the glass pane
+	 */
+	public void put(int x, int y, int z, Material material) {
+		var index = GlassPanes.indexOf(material);
+		if (index < 0 || !contains(x, y, z)) {
+			return;
+		}
+
+		var sectionIndex = sectionIndex(x, y, z);
+		var section = sections[sectionIndex];
+		if (section == null) {
+			section = new Section();
+			sections[sectionIndex] = section;
+		}
+
+		var bit = bitIndex(x, y, z);
+		var word = bit >> 6;
+		var mask = 1L << bit;
+		if ((section.panes[word] & mask) == 0) {
+			section.panes[word] |= mask;
+			section.count++;
+			size++;
+		}
+		if (index == 0) {
+			section.stained[word] &= ~mask;
+		} else {
+			section.stained[word] |= mask;
+			var shift = (bit & 15) << 2;
+			section.colors[bit >> 4] = section.colors[bit >> 4] & ~(0xFL << shift) | (long) (index - 1) << shift;
+		}
+	}
+
+	/**
+	 * Removes the glass pane at a block position.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 */
+	public void remove(int x, int y, int z) {
+		var section = getSection(x, y, z);
+		if (section == null) {
+			return;
+		}
+
+		var bit = bitIndex(x, y, z);
+		var word = bit >> 6;
+		var mask = 1L << bit;
+		if ((section.panes[word] & mask) != 0) {
+			section.panes[word] &= ~mask;
+			section.stained[word] &= ~mask;
+			section.count--;
+			size--;
+			if (section.count == 0) {
+				sections[sectionIndex(x, y, z)] = null;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the part of the index that overlaps a loaded {@link Chunk} with the glass panes that are currently in it.
+	 * Chunks that do not overlap the area are ignored.
+	 *
+	 * @param chunk the loaded {@link Chunk}
+	 */
+	public void scan(Chunk chunk) {
+		var fromX = Math.max(minX, chunk.getX() << SECTION_BITS);
+		var toX = Math.min(maxX, (chunk.getX() << SECTION_BITS) + SECTION_MASK);
+		var fromZ = Math.max(minZ, chunk.getZ() << SECTION_BITS);
+		var toZ = Math.min(maxZ, (chunk.getZ() << SECTION_BITS) + SECTION_MASK);
+		if (toX < fromX || toZ < fromZ) {
+			return;
+		}
+
+		var chunkSnapshot = chunk.getChunkSnapshot(false, false, false);
+		for (var x = fromX; x <= toX; x++) {
+			for (var z = fromZ; z <= toZ; z++) {
+				for (var y = minY; y <= maxY; y++) {
+					var material = chunkSnapshot.getBlockType(x & SECTION_MASK, y, z & SECTION_MASK);
+					if (GlassPanes.indexOf(material) >= 0) {
+						put(x, y, z, material);
+					} else {
+						remove(x, y, z);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of glass panes in the index
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Calculates the index of a block within its section.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the index of the block within its section
+	 */
+	private int bitIndex(int x, int y, int z) {
+		return (y & SECTION_MASK) << 8 | (z & SECTION_MASK) << 4 | (x & SECTION_MASK);
+	}
+
+	/**
+	 * Tests whether a block position is within the area of this index.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return <code>true</code> if the block is within the area, <code>false</code> otherwise
+	 */
+	private boolean contains(int x, int y, int z) {
+		return minX <= x && x <= maxX && minY <= y && y <= maxY && minZ <= z && z <= maxZ;
+	}
+
+	/**
+	 * Looks up the section that contains a block position.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the section or <code>null</code> if the position is outside the area or the section contains no glass panes
+	 */
+	private Section getSection(int x, int y, int z) {
+		if (!contains(x, y, z)) {
+			return null;
+		}
+		return sections[sectionIndex(x, y, z)];
+	}
+
+	/**
+	 * Calculates the index of the section that contains a block position.
+	 * The position must be within the area.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the index of the section
+	 */
+	private int sectionIndex(int x, int y, int z) {
+		var sectionX = (x >> SECTION_BITS) - minSectionX;
+		var sectionY = (y >> SECTION_BITS) - minSectionY;
+		var sectionZ = (z >> SECTION_BITS) - minSectionZ;
+		return (sectionY * sectionCountZ + sectionZ) * sectionCountX + sectionX;
+	}
+
+	/**
+	 * The glass panes of a chunk section with 4096 blocks.
+	 */
+	private static final class Section {
+		private final long[] colors = new long[4096 / 16];
+		private int count;
+		private final long[] panes = new long[4096 / 64];
+		private final long[] stained = new long[4096 / 64];
+	}
+}
@@ -1,19 +1,20 @@
 package de.wariashi.stickfight;
 
+import java.io.File;
 import java.util.Set;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.bukkit.*;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
-import org.bukkit.block.data.MultipleFacing;
-import org.bukkit.entity.ArmorStand;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.scoreboard.Criteria;
 import org.bukkit.scoreboard.Objective;
 import org.bukkit.scoreboard.Scoreboard;
@@ -21,9 +22,18 @@ import org.bukkit.scoreboard.Scoreboard;
 /**
  * The {@link GlassPaneService} breaks glass panes within the play area when a {@link Player} hits them.
  * Broken glass panes will be restored after a while.
+ * <p>
+ * There is one service per {@link World} that contains arenas. A started service is only {@link #activate() active}
+ * while there are players in {@link GameMode#ADVENTURE adventure mode} in its world. A {@link #park() parked} service
+ * does not subscribe to movements, and its tick only keeps running until the remaining glass panes have been restored.
+ * It still listens to blocks that are placed or broken, which is cheap, so that its {@link GlassPaneIndex indexes} stay
+ * up to date and do not have to be rebuilt when it is activated again.
  */
-public class GlassPaneService implements Listener {
-	private static final int RESPAWN_TIME = 60 * 20; // seconds * ticks per second
+public class GlassPaneService implements Listener, MovementSubscriber {
+	private static final int BODY_HEIGHT = 3; // blocks that are checked above the feet of a player, including the feet
+	private static final int JOURNAL_FLUSH_INTERVAL = 20; // ticks
+	private static final int MAX_SHATTERS = 4; // searches for clusters of glass panes that may run at the same time
+	private static final int RESPAWN_TIME = 60 * 20; // seconds * ticks per second, used by previous versions and to size the wheel
 	private static final String TAG_BLACK = "black";
 	private static final String TAG_BLUE = "blue";
 	private static final String TAG_BROWN = "brown";
@@ -36,18 +46,40 @@ public class GlassPaneService implements Listener {
 	private static final String TAG_MAGENTA = "magenta";
 	private static final String TAG_ORANGE = "orange";
 	private static final String TAG_PINK = "pink";
-	private static final String TAG_PLACEHOLDER = "placeholder";
 	private static final String TAG_PURPLE = "purple";
 	private static final String TAG_RED = "red";
-	private static final String TAG_STICKFIGHT = "stickfight";
 	private static final String TAG_WHITE = "white";
 	private static final String TAG_YELLOW = "yellow";
 	private static final String TIMER_OBJECTIVE = "stickfight_timer";
 
+	private boolean active = false;
+	private final VoxelTraversal.Visitor bodyVisitor = this::breakBody;
+	private long breakTick;
+	private int breaksInTick;
+	private GlassPaneIndex[] glassPaneIndexes = new GlassPaneIndex[0];
+	private final RestorationJournal journal;
+	private long lastJournalFlush;
+	private final PaneRestorer paneRestorer;
+	private final LongAdder panesBroken;
+	private final LongAdder panesDeferred;
+	private final LongAdder panesRestored;
+	private final LongAdder panesShattered;
+	private final LongAdder panesThrottled;
+	private final RespawnTimingWheel respawnTimingWheel;
+	private final ChunkResidency residency;
+	private final RespawnTimingWheel.Expiration restoration;
 	private boolean running = false;
+	private Scoreboard scoreboard;
+	private Arena shatterArena;
+	private boolean shatterArmed;
+	private Material shatterMaterial;
+	private long shatterSeed;
+	private int shattersInFlight;
 	private final Stickfight stickfight;
 	private Objective timerObjective;
-	private TimerTask timerTask;
+	private TickScheduler.ScheduledTask task;
+	private int visitedCount;
+	private final long[] visitedPositions = new long[VoxelTraversal.MAX_BLOCKS * BODY_HEIGHT];
 	private final World world;
 
 	/**
@@ -59,161 +91,373 @@ public class GlassPaneService implements Listener {
 	public GlassPaneService(Stickfight stickfight, World world) {
 		this.stickfight = stickfight;
 		this.world = world;
+		var journalFile = new File(stickfight.getDataFolder(), "restorations-" + world.getName() + ".journal");
+		journal = new RestorationJournal(journalFile, stickfight.getLogger());
+		paneRestorer = new PaneRestorer(world, this::onRestored);
+		respawnTimingWheel = new RespawnTimingWheel(RESPAWN_TIME, world.getGameTime());
+		residency = new ChunkResidency(stickfight, world);
+		restoration = this::restore;
+		var metrics = stickfight.getMetrics();
+		panesBroken = metrics.counter("stickfight_glass_panes_broken_total", "Glass panes broken by players.");
+		panesRestored = metrics.counter("stickfight_glass_panes_restored_total", "Glass panes restored after their respawn time.");
+		panesShattered = metrics.counter("stickfight_glass_panes_shattered_total", "Glass panes broken because a connected glass pane was hit.");
+		panesDeferred = metrics.counter("stickfight_glass_panes_deferred_total", "Glass pane restorations deferred until their chunk is loaded.");
+		panesThrottled = metrics.counter("stickfight_glass_panes_throttled_total", "Glass panes left intact because too many broke in the same tick.");
 		initScoreboard();
 	}
 
 	/**
-	 * Breaks glass panes and replaces them with invisible placeholders
-	 * if a {@link Player} in {@link GameMode#ADVENTURE adventure game mode} hits them.
+	 * Lets the service break glass panes by subscribing to movements, and keeps the chunks of the arenas loaded, see
+	 * {@link ChunkResidency}.
+	 * Does nothing unless the service has been started.
+	 */
+	public void activate() {
+		if (!running || active) {
+			return;
+		}
+		residency.acquire(stickfight.getConfiguration().getSnapshot().arenas().getArenas());
+
+		var movementDispatcher = stickfight.getMovementDispatcher();
+		movementDispatcher.subscribe(this);
+		scheduleTick();
+		active = true;
+	}
+
+	/**
+	 * @return the {@link World} of this service
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * @return <code>true</code> if the service is {@link #activate() active}, <code>false</code> if it is parked or stopped
+	 */
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Removes glass panes that are broken by other means from the {@link GlassPaneIndex}.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} breaks a {@link Block}
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockBreak(BlockBreakEvent event) {
+		var block = event.getBlock();
+		if (block.getWorld() == world) {
+			var glassPaneIndex = getGlassPaneIndex(block.getX(), block.getY(), block.getZ());
+			if (glassPaneIndex != null) {
+				glassPaneIndex.remove(block.getX(), block.getY(), block.getZ());
+			}
+		}
+	}
+
+	/**
+	 * Scans a loaded {@link Chunk} into the {@link GlassPaneIndex indexes} of the arenas that overlap it and restores the
+	 * glass panes whose restoration was deferred because the chunk was not loaded.
+	 * They are queued in one batch and placed within the restoration budget of the next ticks.
 	 *
-	 * @param event the {@link Event} that is sent when a {@link Player} moves
+	 * @param chunk the {@link Chunk} that has been loaded
 	 */
-	@EventHandler
-	public void onPlayerMove(PlayerMoveEvent event) {
-		var player = event.getPlayer();
-		var gamemode = player.getGameMode();
-		if (gamemode != GameMode.ADVENTURE) {
+	public void onChunkLoad(Chunk chunk) {
+		if (!running) {
 			return;
 		}
+		for (var glassPaneIndex : glassPaneIndexes) {
+			if (glassPaneIndex != null) {
+				glassPaneIndex.scan(chunk);
+			}
+		}
+		if (residency.size() > 0 && residency.take(chunk.getX(), chunk.getZ(), paneRestorer::add) > 0) {
+			scheduleTick();
+		}
+	}
 
-		var location = event.getTo();
-		if (location != null) {
-			var block = world.getBlockAt(location);
-			breakIfGlassPane(block);
+	/**
+	 * Keeps the {@link GlassPaneIndex} up to date when a {@link Player} places a {@link Block}.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} places a {@link Block}
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockPlace(BlockPlaceEvent event) {
+		var block = event.getBlock();
+		if (block.getWorld() == world) {
+			var x = block.getX();
+			var y = block.getY();
+			var z = block.getZ();
+			var glassPaneIndex = getGlassPaneIndex(x, y, z);
+			if (glassPaneIndex != null) {
+				glassPaneIndex.remove(x, y, z);
+				glassPaneIndex.put(x, y, z, block.getType());
+			}
+		}
+	}
 
-			block = block.getRelative(BlockFace.UP);
-			breakIfGlassPane(block);
+	/**
+	 * Breaks glass panes if a {@link Player} in {@link GameMode#ADVENTURE adventure game mode} hits them.
+	 * Players that were hit with a stick may cross several blocks at once,
+	 * so every block that the body of the {@link Player} passed through is checked.
+	 * If shattering is enabled and the {@link Player} is fast enough, the first glass pane that breaks also
+	 * {@link #shatter() shatters} the cluster of glass panes that it belongs to.
+	 *
+	 * @param movement the {@link Movement} of a {@link Player} to another block
+	 */
+	@Override
+	public void onBlockChange(Movement movement) {
+		var to = movement.getTo();
+		if (movement.getGameMode() != GameMode.ADVENTURE || to.getWorld() != world) {
+			return;
+		}
 
-			block = block.getRelative(BlockFace.UP);
-			breakIfGlassPane(block);
+		visitedCount = 0;
+		shatterArena = null;
+		var from = movement.getFrom();
+		if (from.getWorld() == world) {
+			shatterArmed = isShatterSpeed(from.distanceSquared(to));
+			VoxelTraversal.traverse(from.getX(), from.getY(), from.getZ(), to.getX(), to.getY(), to.getZ(), bodyVisitor);
+		} else {
+			shatterArmed = false;
+			breakBody(movement.getBlockX(), movement.getBlockY(), movement.getBlockZ());
+		}
+		if (shatterArena != null) {
+			shatter();
 		}
 	}
 
+	/**
+	 * Stops listening to movements, e.g. because the last {@link Player} in {@link GameMode#ADVENTURE adventure mode}
+	 * has left the world, and lets the chunks of the arenas unload.
+	 * Glass panes that are still broken are restored in time, after that, the service does not do any work until it is
+	 * {@link #activate() activated} again.
+	 */
+	public void park() {
+		if (!active) {
+			return;
+		}
+		residency.release();
+		var movementDispatcher = stickfight.getMovementDispatcher();
+		movementDispatcher.unsubscribe(this);
+		active = false;
+	}
+
+	/**
+	 * Scans the loaded chunks of the {@link Arena arenas} in the world of this service for glass panes and replaces their
+	 * {@link GlassPaneIndex indexes}. Must be called whenever the arenas change.
+	 * Chunks that are not loaded are scanned when they are loaded, see {@link #onChunkLoad(Chunk)}.
+	 */
+	public void reindex() {
+		var arenas = stickfight.getConfiguration().getSnapshot().arenas().getArenas();
+		var indexes = new GlassPaneIndex[arenas.size()];
+		var count = 0;
+		for (var arena : arenas) {
+			if (arena.world().equals(world.getName())) {
+				indexes[arena.id()] = GlassPaneIndex.scan(world, arena);
+				if (indexes[arena.id()] != null) {
+					count += indexes[arena.id()].size();
+				}
+			}
+		}
+		glassPaneIndexes = indexes;
+		if (active) {
+			residency.acquire(arenas);
+		}
+		stickfight.getLogger().info("Indexed " + count + " glass panes in " + world.getName());
+	}
+
 	/**
 	 * Starts the service if it has not already been started.
+	 * The service is parked until it is {@link #activate() activated}.
 	 */
 	public synchronized void start() {
 		if (!running) {
-			// register events
-			var pluginManager = Bukkit.getPluginManager();
-			pluginManager.registerEvents(this, stickfight);
+			// resume restorations that were pending when the server stopped
+			var pending = journal.replay(respawnTimingWheel);
+			if (pending > 0) {
+				stickfight.getLogger().info("Resuming " + pending + " pending glass pane restorations in " + world.getName());
+			}
 
-			// create timer task
-			timerTask = new TimerTask() {
-				@Override
-				public void run() {
-					tick();
-				}
-			};
+			// find glass panes that were left broken, including placeholders from previous versions
+			var recovery = new PaneRecovery(stickfight, world, this::recover);
+			recovery.run();
 
-			// start timer
-			var scheduler = Bukkit.getScheduler();
-			scheduler.scheduleSyncRepeatingTask(stickfight, timerTask, 0, 1);
+			// find all glass panes in the play area and keep the index up to date
+			reindex();
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
 
+			// restore the glass panes that are already pending
 			running = true;
+			if (!isIdle()) {
+				scheduleTick();
+			}
 		}
 	}
 
 	/**
-	 * Stops the service by canceling all timers and unregistering it as a {@link Listener}.
+	 * Stops the service by canceling all timers, unregistering it as a {@link Listener} and unsubscribing from movements.
+	 * Glass panes that are still broken are restored immediately, except for those in chunks that are not loaded, which
+	 * remain in the {@link RestorationJournal} and are restored after the next start.
 	 */
 	public void stop() {
+		park();
 		HandlerList.unregisterAll(this);
-		if (timerTask != null) {
-			timerTask.cancel();
+		if (task != null) {
+			task.cancel();
+			task = null;
 		}
+		respawnTimingWheel.drain(restoration);
+		paneRestorer.runAll();
+		journal.close(isIdle());
 		running = false;
 	}
 
 	/**
-	 * Breaks a {@link Block} and replaces it with an invisible placeholder if it is a type of glass pane and located within the play area.
+	 * Breaks all glass panes that overlap the body of a {@link Player} whose feet are in the given block.
+	 * Blocks that have already been checked during the current movement are skipped, and so are blocks outside of all
+	 * {@link Arena arenas}. Glass panes that are missing in the {@link GlassPaneIndex} of their arena, e.g. because they
+	 * have been placed by another plugin, are still found, because the {@link Block} is checked in the world.
+	 * The first glass pane that breaks during a fast movement is remembered as the origin of a shatter.
 	 *
-	 * @param block the {@link Block} to break
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
 	 */
-	private void breakIfGlassPane(Block block) {
+	private void breakBody(int x, int y, int z) {
+		for (var i = 0; i < BODY_HEIGHT; i++) {
+			var position = BlockPosition.pack(x, y + i, z);
+			if (isVisited(position)) {
+				continue;
+			}
+			visitedPositions[visitedCount++] = position;
+			var arena = stickfight.getConfiguration().getSnapshot().arenas().find(world, x, y + i, z);
+			if (arena == null) {
+				continue;
+			}
+
+			var block = world.getBlockAt(x, y + i, z);
+			var material = breakIfGlassPane(block, arena, getGlassPaneIndex(arena));
+			if (material != null && shatterArmed && shatterArena == null) {
+				shatterArena = arena;
+				shatterMaterial = material;
+				shatterSeed = position;
+			}
+		}
+	}
+
+	/**
+	 * Breaks the glass panes of a cluster that has been found by a {@link ShatterSearch}.
+	 * The blocks may have changed while the search was running, so every glass pane is checked again and broken just like
+	 * a glass pane that has been hit, including the limit of glass panes that break per tick.
+	 * The glass pane that has been hit is skipped, because it is already broken.
+	 *
+	 * @param search the completed {@link ShatterSearch}
+	 */
+	private void breakCluster(ShatterSearch search) {
+		shattersInFlight--;
+		if (!active) {
+			return;
+		}
+
+		var arenas = stickfight.getConfiguration().getSnapshot().arenas();
+		var positions = search.getPositions();
+		for (var i = 1; i < search.getSize(); i++) {
+			var x = BlockPosition.unpackX(positions[i]);
+			var y = BlockPosition.unpackY(positions[i]);
+			var z = BlockPosition.unpackZ(positions[i]);
+			if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+				continue;
+			}
+			var arena = arenas.find(world, x, y, z);
+			if (arena == null) {
+				continue;
+			}
+			if (breakIfGlassPane(world.getBlockAt(x, y, z), arena, getGlassPaneIndex(arena)) != null) {
+				panesShattered.increment();
+			}
+		}
+	}
+
+	/**
+	 * Breaks a {@link Block} within an {@link Arena} and schedules its restoration if it is a type of glass pane.
+	 * While the server is under load, only a limited number of glass panes break per tick, see
+	 * {@link QualityLevel#getPaneBreaksPerTick()}.
+	 * The {@link GlassPaneIndex} is corrected with the type of the {@link Block}, which is what the world says.
+	 *
+	 * @param block          the {@link Block} to break
+	 * @param arena          the {@link Arena} that contains the {@link Block}
+	 * @param glassPaneIndex the {@link GlassPaneIndex} of the {@link Arena} or <code>null</code> if it is unlimited
+	 * @return the {@link Material} of the glass pane that has been broken or <code>null</code> if nothing was broken
+	 */
+	private Material breakIfGlassPane(Block block, Arena arena, GlassPaneIndex glassPaneIndex) {
 		// ignore blocks that are no glass panes
 		var material = block.getType();
 		if (!isGlassPane(material)) {
-			return;
+			if (glassPaneIndex != null) {
+				glassPaneIndex.remove(block.getX(), block.getY(), block.getZ());
+			}
+			return null;
+		} else if (glassPaneIndex != null && glassPaneIndex.get(block.getX(), block.getY(), block.getZ()) != material) {
+			// the glass pane has been placed without an event, e.g. by another plugin
+			glassPaneIndex.put(block.getX(), block.getY(), block.getZ(), material);
 		}
 
-		// ignore blocks outside the play area
-		var location = block.getLocation().add(0.5, 0.5, 0.5);
-		if (!stickfight.isWithinConfinedArea(location)) {
-			return;
+		// limit the number of glass panes that break per tick
+		var now = world.getGameTime();
+		if (now != breakTick) {
+			breakTick = now;
+			breaksInTick = 0;
 		}
-
-		// add placeholder
-		var armorStand = world.createEntity(location, ArmorStand.class);
-		armorStand.addScoreboardTag(TAG_STICKFIGHT);
-		armorStand.addScoreboardTag(TAG_PLACEHOLDER);
-		var colorTag = getColorTag(material);
-		if (colorTag != null) {
-			armorStand.addScoreboardTag(colorTag);
+		if (breaksInTick >= stickfight.getQualityController().getLevel().getPaneBreaksPerTick()) {
+			panesThrottled.increment();
+			return null;
 		}
-		armorStand.setBasePlate(false);
-		armorStand.setGravity(false);
-		armorStand.setInvisible(true);
-		armorStand.setMarker(true);
-		world.addEntity(armorStand);
+		breaksInTick++;
+
+		// schedule restoration
+		var location = block.getLocation().add(0.5, 0.5, 0.5);
+		var position = BlockPosition.pack(block);
+		var dueTick = now + arena.respawnTime();
+		respawnTimingWheel.schedule(position, material, dueTick);
+		journal.appendBreak(position, material, dueTick);
 
 		// break block
 		block.breakNaturally();
+		panesBroken.increment();
+		stickfight.getReplayRecorder().recordBreak(world, position, material);
+		if (glassPaneIndex != null) {
+			glassPaneIndex.remove(block.getX(), block.getY(), block.getZ());
+		}
 
 		// spawn particles and play a sound effect
-		var onlinePlayers = Bukkit.getOnlinePlayers().toArray(new Player[0]);
-		for (var player : onlinePlayers) {
-			player.spawnParticle(Particle.BLOCK, location, 16, material.createBlockData());
-			player.playSound(location, Sound.BLOCK_GLASS_BREAK, 1, 1);
-		}
+		var effectDispatcher = stickfight.getEffectDispatcher();
+		effectDispatcher.playParticle(location, Particle.BLOCK, 16, material.createBlockData());
+		effectDispatcher.playSound(location, Sound.BLOCK_GLASS_BREAK, 1, 1);
+		return material;
 	}
 
 	/**
-	 * Fixes connections to adjacent blocks if the {@link Block} is a {@link MultipleFacing} block.
+	 * Looks up the {@link GlassPaneIndex} of an {@link Arena}.
 	 *
-	 * @param block the {@link Block} to fix
+	 * @param arena the {@link Arena}
+	 * @return the {@link GlassPaneIndex} or <code>null</code> if the arena is unlimited or not in the world of this service
 	 */
-	private void fixConnections(Block block) {
-		var blockData = block.getBlockData();
-		if (blockData instanceof MultipleFacing multipleFacing) {
-			var allowedFaces = multipleFacing.getAllowedFaces();
-			for (var face : allowedFaces) {
-				var relative = block.getRelative(face);
-				var material = relative.getType();
-				if (material.isSolid()) {
-					multipleFacing.setFace(face, true);
-				}
-			}
-			block.setBlockData(blockData);
-		}
+	private GlassPaneIndex getGlassPaneIndex(Arena arena) {
+		var indexes = glassPaneIndexes;
+		return arena.id() < indexes.length ? indexes[arena.id()] : null;
 	}
 
 	/**
-	 * Returns a String describing the color of a glass pane.
+	 * Looks up the {@link GlassPaneIndex} of the {@link Arena} that contains a block.
 	 *
-	 * @param material the {@link Material} to check
-	 * @return a String describing the color of a glass pane or <code>null</code> if it is a clear glass pane or not a glass pane at all
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the {@link GlassPaneIndex} or <code>null</code> if the block is not within an arena with an index
 	 */
-	private String getColorTag(Material material) {
-		return switch (material) {
-			case BLACK_STAINED_GLASS_PANE -> TAG_BLACK;
-			case BLUE_STAINED_GLASS_PANE -> TAG_BLUE;
-			case BROWN_STAINED_GLASS_PANE -> TAG_BROWN;
-			case CYAN_STAINED_GLASS_PANE -> TAG_CYAN;
-			case GRAY_STAINED_GLASS_PANE -> TAG_GRAY;
-			case GREEN_STAINED_GLASS_PANE -> TAG_GREEN;
-			case MAGENTA_STAINED_GLASS_PANE -> TAG_MAGENTA;
-			case LIGHT_BLUE_STAINED_GLASS_PANE -> TAG_LIGHT_BLUE;
-			case LIGHT_GRAY_STAINED_GLASS_PANE -> TAG_LIGHT_GRAY;
-			case LIME_STAINED_GLASS_PANE -> TAG_LIME;
-			case ORANGE_STAINED_GLASS_PANE -> TAG_ORANGE;
-			case PINK_STAINED_GLASS_PANE -> TAG_PINK;
-			case PURPLE_STAINED_GLASS_PANE -> TAG_PURPLE;
-			case RED_STAINED_GLASS_PANE -> TAG_RED;
-			case YELLOW_STAINED_GLASS_PANE -> TAG_YELLOW;
-			case WHITE_STAINED_GLASS_PANE -> TAG_WHITE;
-			default -> null;
-		};
+	private GlassPaneIndex getGlassPaneIndex(int x, int y, int z) {
+		var arena = stickfight.getConfiguration().getSnapshot().arenas().find(world, x, y, z);
+		return arena == null ? null : getGlassPaneIndex(arena);
 	}
 
 	/**
@@ -261,11 +505,12 @@ public class GlassPaneService implements Listener {
 	}
 
 	/**
-	 * Initializes the {@link Scoreboard} with an {@link Objective} to track the remaining time until placeholders are replaced with glass panes.
+	 * Initializes the {@link Scoreboard} with the {@link Objective} that previous versions of this plugin used
+	 * to track the remaining time until placeholders are replaced with glass panes.
 	 */
 	private void initScoreboard() {
 		var scoreboardManager = Bukkit.getScoreboardManager();
-		var scoreboard = scoreboardManager.getMainScoreboard();
+		scoreboard = scoreboardManager.getMainScoreboard();
 
 		timerObjective = scoreboard.getObjective(TIMER_OBJECTIVE);
 		if (timerObjective == null) {
@@ -280,53 +525,184 @@ public class GlassPaneService implements Listener {
 	 * @return <code>true</code> if the {@link Material} is a type of glass pane, <code>false</code> otherwise
 	 */
 	private boolean isGlassPane(Material material) {
-		return switch (material) {
-			case GLASS_PANE,
-				 BLACK_STAINED_GLASS_PANE,
-				 BLUE_STAINED_GLASS_PANE,
-				 BROWN_STAINED_GLASS_PANE,
-				 CYAN_STAINED_GLASS_PANE,
-				 GRAY_STAINED_GLASS_PANE,
-				 GREEN_STAINED_GLASS_PANE,
-				 MAGENTA_STAINED_GLASS_PANE,
-				 LIGHT_BLUE_STAINED_GLASS_PANE,
-				 LIGHT_GRAY_STAINED_GLASS_PANE,
-				 LIME_STAINED_GLASS_PANE,
-				 ORANGE_STAINED_GLASS_PANE,
-				 PINK_STAINED_GLASS_PANE,
-				 PURPLE_STAINED_GLASS_PANE,
-				 RED_STAINED_GLASS_PANE,
-				 YELLOW_STAINED_GLASS_PANE,
-				 WHITE_STAINED_GLASS_PANE -> true;
-			default -> false;
-		};
+		return GlassPanes.indexOf(material) >= 0;
 	}
 
 	/**
-	 * Updates the timers for placeholder entities.
-	 * When they reach the {@link GlassPaneService#RESPAWN_TIME respawn time}, the placeholders are replaced with glass panes.
+	 * @return <code>true</code> if no glass panes are waiting to be restored, <code>false</code> otherwise
 	 */
-	private void tick() {
-		var entities = world.getEntities();
-		for (var entity : entities) {
-			var tags = entity.getScoreboardTags();
-			if (tags.contains(TAG_STICKFIGHT) && tags.contains(TAG_PLACEHOLDER)) {
-				var uuid = entity.getUniqueId();
-				var score = timerObjective.getScore(uuid.toString());
-
-				// reset glass panes
-				if (RESPAWN_TIME <= score.getScore()) {
-					var location = entity.getLocation();
-					var block = world.getBlockAt(location);
-					var material = getMaterialForTags(tags);
-					block.setType(material);
-					fixConnections(block);
-					entity.remove();
-				}
+	private boolean isIdle() {
+		return respawnTimingWheel.size() == 0 && paneRestorer.size() == 0 && residency.size() == 0;
+	}
+
+	/**
+	 * Checks whether a movement is fast enough to shatter a cluster of glass panes.
+	 *
+	 * @param distanceSquared the squared distance that has been covered within the movement
+	 * @return <code>true</code> if shattering is enabled and the movement is fast enough, <code>false</code> otherwise
+	 */
+	private boolean isShatterSpeed(double distanceSquared) {
+		var snapshot = stickfight.getConfiguration().getSnapshot();
+		if (!snapshot.shatterEnabled()) {
+			return false;
+		}
+		var minSpeed = snapshot.shatterMinSpeed();
+		return distanceSquared >= minSpeed * minSpeed;
+	}
+
+	/**
+	 * Checks whether a block has already been checked during the current movement.
+	 * Only a few blocks are visited per movement, so a linear search is faster than hashing.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the block
+	 * @return <code>true</code> if the block has already been checked, <code>false</code> otherwise
+	 */
+	private boolean isVisited(long position) {
+		for (var i = visitedCount - 1; i >= 0; i--) {
+			if (visitedPositions[i] == position) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Keeps the {@link GlassPaneIndex} and the {@link RestorationJournal} up to date when a glass pane has been restored.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 */
+	private void onRestored(long position, Material material) {
+		var x = BlockPosition.unpackX(position);
+		var y = BlockPosition.unpackY(position);
+		var z = BlockPosition.unpackZ(position);
+		var glassPaneIndex = getGlassPaneIndex(x, y, z);
+		if (glassPaneIndex != null) {
+			glassPaneIndex.put(x, y, z, material);
+		}
+		journal.appendRestore(position);
+		panesRestored.increment();
+		stickfight.getReplayRecorder().recordRestore(world, position);
+	}
 
-				// update timer
-				score.setScore(score.getScore() + 1);
+	/**
+	 * Applies the {@link PaneRecovery.Result result} of the {@link PaneRecovery} that runs when the service is started.
+	 * <p>
+	 * Stale placeholders are removed. Placeholders that still mark a broken glass pane are replaced with entries in the
+	 * {@link RespawnTimingWheel}, taking into account the time that has already passed according to the timer
+	 * {@link Objective}. Glass panes without a placeholder are recovered from the {@link RestorationJournal}.
+	 *
+	 * @param result the {@link PaneRecovery.Result}
+	 */
+	private void recover(PaneRecovery.Result result) {
+		if (!running) {
+			return;
+		}
+
+		for (var armorStand : result.stalePlaceholders()) {
+			scoreboard.resetScores(armorStand.getUniqueId().toString());
+			armorStand.remove();
+		}
+
+		var now = world.getGameTime();
+		for (var armorStand : result.brokenPlaceholders()) {
+			var entry = armorStand.getUniqueId().toString();
+			var elapsed = timerObjective.getScore(entry).getScore();
+			var location = armorStand.getLocation();
+			var position = BlockPosition.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+			var material = getMaterialForTags(armorStand.getScoreboardTags());
+			var dueTick = now + Math.max(0, RESPAWN_TIME - elapsed);
+			respawnTimingWheel.schedule(position, material, dueTick);
+			journal.appendBreak(position, material, dueTick);
+			scoreboard.resetScores(entry);
+			armorStand.remove();
+		}
+
+		if (!isIdle()) {
+			scheduleTick();
+		}
+	}
+
+	/**
+	 * Queues a glass pane whose respawn time has elapsed for restoration if its chunk is loaded.
+	 * Otherwise the restoration is deferred until the chunk is loaded, because restoring it would load the chunk
+	 * synchronously.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 */
+	private void restore(long position, Material material) {
+		if (residency.isLoaded(position)) {
+			paneRestorer.add(position, material);
+		} else {
+			residency.defer(position, material);
+			panesDeferred.increment();
+		}
+	}
+
+	/**
+	 * Schedules the tick of the service unless it is already scheduled.
+	 */
+	private void scheduleTick() {
+		if (task == null) {
+			var tickScheduler = stickfight.getTickScheduler();
+			task = tickScheduler.schedule("GlassPaneService.tick", TickScheduler.Priority.NORMAL, 1, this::tick);
+		}
+	}
+
+	/**
+	 * Shatters the cluster of glass panes around the glass pane that has been hit during the current movement.
+	 * The chunks around it are captured on the main thread, the connected glass panes are searched on another thread and
+	 * broken in one batch back on the main thread, see {@link ShatterSearch}. While {@link #MAX_SHATTERS} searches are
+	 * running, further hits do not shatter anything.
+	 */
+	private void shatter() {
+		var maxPanes = stickfight.getConfiguration().getSnapshot().shatterMaxPanes();
+		if (maxPanes <= 1 || shattersInFlight >= MAX_SHATTERS) {
+			return;
+		}
+
+		var x = BlockPosition.unpackX(shatterSeed);
+		var y = BlockPosition.unpackY(shatterSeed);
+		var z = BlockPosition.unpackZ(shatterSeed);
+		var search = ShatterSearch.capture(world, shatterArena, x, y, z, shatterMaterial, maxPanes);
+		shattersInFlight++;
+		Bukkit.getScheduler().runTaskAsynchronously(stickfight, () -> {
+			try {
+				search.run();
+			} finally {
+				// a partial cluster is still broken, so that the search is never left in flight
+				if (stickfight.isEnabled()) {
+					Bukkit.getScheduler().runTask(stickfight, () -> breakCluster(search));
+				}
 			}
+		});
+	}
+
+	/**
+	 * Restores all glass panes whose {@link Arena#respawnTime() respawn time} has elapsed.
+	 * Only the panes that are due in the current tick are touched. If too many panes are due at once,
+	 * the remaining ones are restored in the next ticks, so that the time budget is not exceeded.
+	 * The {@link RestorationJournal} is flushed periodically.
+	 * Once a parked service has restored all glass panes, its tick is canceled.
+	 */
+	private void tick() {
+		var now = world.getGameTime();
+		respawnTimingWheel.advance(now, restoration);
+		if (paneRestorer.size() > 0) {
+			var budget = stickfight.getConfiguration().getSnapshot().restorationBudget();
+			paneRestorer.run(TimeUnit.MICROSECONDS.toNanos(budget));
+		}
+		if (now - lastJournalFlush >= JOURNAL_FLUSH_INTERVAL) {
+			journal.flush(isIdle());
+			lastJournalFlush = now;
+		}
+		if (!active && respawnTimingWheel.size() == 0 && paneRestorer.size() == 0) {
+			// restorations that wait for their chunk are restored when it is loaded
+			journal.flush(isIdle());
+			lastJournalFlush = now;
+			task.cancel();
+			task = null;
 		}
 	}
 }
@@ -0,0 +1,80 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.Material;
+
+/**
+ * Maps glass pane {@link Material materials} to small, stable indices.
+ * Index 0 is the clear glass pane, the stained glass panes follow in alphabetical order.
+ * Unlike {@link Material#ordinal()}, these indices do not change between server versions, so they can be stored on disk.
+ */
+public final class GlassPanes {
+	/**
+	 * The number of glass pane {@link Material materials}.
+	 */
+	public static final int COUNT = 17;
+
+	private static final Material[] MATERIALS = {
+		Material.GLASS_PANE,
+		Material.BLACK_STAINED_GLASS_PANE,
+		Material.BLUE_STAINED_GLASS_PANE,
+		Material.BROWN_STAINED_GLASS_PANE,
+		Material.CYAN_STAINED_GLASS_PANE,
+		Material.GRAY_STAINED_GLASS_PANE,
+		Material.GREEN_STAINED_GLASS_PANE,
+		Material.LIGHT_BLUE_STAINED_GLASS_PANE,
+		Material.LIGHT_GRAY_STAINED_GLASS_PANE,
+		Material.LIME_STAINED_GLASS_PANE,
+		Material.MAGENTA_STAINED_GLASS_PANE,
+		Material.ORANGE_STAINED_GLASS_PANE,
+		Material.PINK_STAINED_GLASS_PANE,
+		Material.PURPLE_STAINED_GLASS_PANE,
+		Material.RED_STAINED_GLASS_PANE,
+		Material.WHITE_STAINED_GLASS_PANE,
+		Material.YELLOW_STAINED_GLASS_PANE
+	};
+
+	private GlassPanes() {
+	}
+
+	/**
+	 * Looks up the index of a glass pane {@link Material}.
+	 *
+	 * @param material the {@link Material} to look up
+	 * @return the index of the {@link Material} or <code>-1</code> if it is not a glass pane
+	 */
+	public static int indexOf(Material material) {
+		return switch (material) {
+			case GLASS_PANE -> 0;
+			case BLACK_STAINED_GLASS_PANE -> 1;
+			case BLUE_STAINED_GLASS_PANE -> 2;
+			case BROWN_STAINED_GLASS_PANE -> 3;
+			case CYAN_STAINED_GLASS_PANE -> 4;
+			case GRAY_STAINED_GLASS_PANE -> 5;
+			case GREEN_STAINED_GLASS_PANE -> 6;
+			case LIGHT_BLUE_STAINED_GLASS_PANE -> 7;
+			case LIGHT_GRAY_STAINED_GLASS_PANE -> 8;
+			case LIME_STAINED_GLASS_PANE -> 9;
+			case MAGENTA_STAINED_GLASS_PANE -> 10;
+			case ORANGE_STAINED_GLASS_PANE -> 11;
+			case PINK_STAINED_GLASS_PANE -> 12;
+			case PURPLE_STAINED_GLASS_PANE -> 13;
+			case RED_STAINED_GLASS_PANE -> 14;
+			case WHITE_STAINED_GLASS_PANE -> 15;
+			case YELLOW_STAINED_GLASS_PANE -> 16;
+			default -> -1;
+		};
+	}
+
+	/**
+	 * Looks up the glass pane {@link Material} for an index.
+	 *
+	 * @param index the index of the glass pane
+	 * @return the glass pane {@link Material} or <code>null</code> if the index is invalid
+	 */
+	public static Material getMaterial(int index) {
+		if (index < 0 || MATERIALS.length <= index) {
+			return null;
+		}
+		return MATERIALS[index];
+	}
+}
@@ -0,0 +1,144 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the most recent hits that every {@link PlayerRegistry slot} received, so that a death can be credited to
+ * the players that knocked the victim into the void.
+ * <p>
+ * Every slot has a ring buffer of the last {@link #getCapacity() few} hits, stored as the slot of the attacker and the
+ * game time of the hit in primitive arrays, so recording a hit never allocates.
+ * <p>
+ * The history is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class HitHistory {
+	private static final int CAPACITY = 8;
+	private static final int NONE = -1;
+
+	private int[] attackers = new int[0];
+	private int[] heads = new int[0];
+	private long[] times = new long[0];
+
+	/**
+	 * Forgets all hits that a slot received.
+	 *
+	 * @param victim the slot of the victim
+	 */
+	public void clear(int victim) {
+		if (victim >= 0 && victim < heads.length) {
+			Arrays.fill(attackers, victim * CAPACITY, (victim + 1) * CAPACITY, NONE);
+		}
+	}
+
+	/**
+	 * Forgets all hits that a slot received or dealt, e.g. when its player leaves the server and the slot may be
+	 * reused.
+	 *
+	 * @param slot the slot
+	 */
+	public void forget(int slot) {
+		clear(slot);
+		for (var i = 0; i < attackers.length; i++) {
+			if (attackers[i] == slot) {
+				attackers[i] = NONE;
+			}
+		}
+	}
+
+	/**
+	 * Finds the players that hit a slot within a time window, except for the one that hit it last.
+	 * Every attacker is only reported once.
+	 *
+	 * @param victim     the slot of the victim
+	 * @param now        the current game time
+	 * @param window     the number of ticks that a hit counts for
+	 * @param assistants the array that the slots of the attackers are written to, at least {@link #getCapacity()} long
+	 * @return the number of slots that have been written to the array
+	 */
+	public int getAssistants(int victim, long now, long window, int[] assistants) {
+		var lastHitter = getLastHitter(victim, now, window);
+		if (lastHitter == NONE) {
+			return 0;
+		}
+
+		var count = 0;
+		var offset = victim * CAPACITY;
+		for (var i = 0; i < CAPACITY; i++) {
+			var attacker = attackers[offset + i];
+			if (attacker == NONE || attacker == lastHitter || now - times[offset + i] > window) {
+				continue;
+			}
+			var duplicate = false;
+			for (var j = 0; j < count; j++) {
+				duplicate |= assistants[j] == attacker;
+			}
+			if (!duplicate) {
+				assistants[count++] = attacker;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of hits that are remembered per slot
+	 */
+	public int getCapacity() {
+		return CAPACITY;
+	}
+
+	/**
+	 * Finds the player that hit a slot last within a time window.
+	 *
+	 * @param victim the slot of the victim
+	 * @param now    the current game time
+	 * @param window the number of ticks that a hit counts for
+	 * @return the slot of the attacker or <code>-1</code> if the slot has not been hit within the time window
+	 */
+	public int getLastHitter(int victim, long now, long window) {
+		if (victim < 0 || victim >= heads.length) {
+			return NONE;
+		}
+
+		var offset = victim * CAPACITY;
+		var head = heads[victim];
+		for (var i = 1; i <= CAPACITY; i++) {
+			var index = offset + (head - i & CAPACITY - 1);
+			if (attackers[index] != NONE) {
+				return now - times[index] <= window ? attackers[index] : NONE;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Records a hit, replacing the oldest hit that the victim received if its ring buffer is full.
+	 *
+	 * @param victim   the slot of the victim
+	 * @param attacker the slot of the attacker
+	 * @param now      the current game time
+	 */
+	public void record(int victim, int attacker, long now) {
+		ensureCapacity(victim);
+		var head = heads[victim];
+		var index = victim * CAPACITY + head;
+		attackers[index] = attacker;
+		times[index] = now;
+		heads[victim] = head + 1 & CAPACITY - 1;
+	}
+
+	/**
+	 * Makes sure that the arrays can hold the hits of a slot.
+	 *
+	 * @param slot the slot
+	 */
+	private void ensureCapacity(int slot) {
+		if (slot >= heads.length) {
+			var length = Math.max(slot + 1, heads.length * 2);
+			var oldLength = attackers.length;
+			attackers = Arrays.copyOf(attackers, length * CAPACITY);
+			Arrays.fill(attackers, oldLength, attackers.length, NONE);
+			heads = Arrays.copyOf(heads, length);
+			times = Arrays.copyOf(times, length * CAPACITY);
+		}
+	}
+}
@@ -1,28 +1,49 @@
 package de.wariashi.stickfight;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.bukkit.scoreboard.Criteria;
-import org.bukkit.scoreboard.DisplaySlot;
-import org.bukkit.scoreboard.Objective;
-import org.bukkit.scoreboard.Scoreboard;
 
 /**
  * The {@link KillCounterService} adds a kill counter to the game.
+ * The kills are shown by the {@link LeaderboardService}.
+ * <p>
+ * Kills and deaths are recorded in a {@link KillStatisticsStore}, so the kill counter of a {@link Player} keeps its
+ * value across rejoins and restarts. The totals of a {@link Player} are loaded in the background when the
+ * {@link Player} joins. Kills that happen before the totals have been loaded are kept and added to them afterwards.
+ * <p>
+ * Most players die by being knocked into the void or below the kill layer, so the server rarely knows a killer.
+ * Instead, every hit is recorded in a {@link HitHistory}, and a death is credited to the last {@link Player} that hit
+ * the victim within the {@link Configuration#getKillCreditWindow() kill credit window}. Everyone else who hit the
+ * victim within that window gets an assist.
  */
 public class KillCounterService implements Listener {
-	private static final String KILLS_OBJECTIVE = "stickfight_kill_counter";
+	private static final long FLUSH_INTERVAL = 100; // ticks
 
-	private Objective killsObjective;
+	private final int[] assistants;
+	private final LongAdder deathsRecorded;
+	private TickScheduler.ScheduledTask flushTask;
+	private final HitHistory hitHistory = new HitHistory();
+	private int[] kills = new int[0];
+	private final LeaderboardService leaderboardService;
+	private boolean[] loaded = new boolean[0];
+	private final PlayerRegistry playerRegistry;
 	private boolean running = false;
-	private Scoreboard scoreboard;
 	private final Stickfight stickfight;
+	private KillStatisticsStore store;
 
 	/**
 	 * Creates a new {@link KillCounterService}.
@@ -31,31 +52,101 @@ public class KillCounterService implements Listener {
 	 */
 	public KillCounterService(Stickfight stickfight) {
 		this.stickfight = stickfight;
+		playerRegistry = stickfight.getPlayerRegistry();
+		leaderboardService = stickfight.getLeaderboardService();
+		assistants = new int[hitHistory.getCapacity()];
+		deathsRecorded = stickfight.getMetrics().counter("stickfight_deaths_recorded_total", "Deaths written to the kill statistics.");
+	}
+
+	/**
+	 * Records hits of {@link Player players} on other {@link Player players}, including hits with projectiles.
+	 *
+	 * @param event the {@link Event} that is sent when an entity is damaged by another entity
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
+		if (!(event.getEntity() instanceof Player victim)) {
+			return;
+		}
+
+		var damager = event.getDamager();
+		if (damager instanceof Projectile projectile && projectile.getShooter() instanceof Player shooter) {
+			damager = shooter;
+		}
+		if (!(damager instanceof Player attacker) || attacker == victim) {
+			return;
+		}
+
+		var victimSlot = playerRegistry.getSlot(victim);
+		var attackerSlot = playerRegistry.getSlot(attacker);
+		if (victimSlot >= 0 && attackerSlot >= 0) {
+			hitHistory.record(victimSlot, attackerSlot, victim.getWorld().getGameTime());
+			stickfight.getReplayRecorder().recordHit(attackerSlot, victimSlot);
+		}
 	}
 
 	/**
-	 * Adds new {@link Player players} to the kill counter.
+	 * Records the death of a {@link Player}, the kill of its killer and the assists of everyone who helped.
+	 * The killer is the last {@link Player} that hit the victim within the kill credit window or, if there is none,
+	 * the killer that is known to the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} dies
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerDeath(PlayerDeathEvent event) {
+		var victim = event.getEntity();
+		var victimSlot = playerRegistry.getSlot(victim);
+		var now = victim.getWorld().getGameTime();
+		var window = stickfight.getConfiguration().getKillCreditWindow();
+
+		var killer = playerRegistry.getPlayer(hitHistory.getLastHitter(victimSlot, now, window));
+		if (killer == null) {
+			killer = victim.getKiller();
+		}
+		if (killer == victim) {
+			killer = null;
+		}
+		store.appendDeath(victim.getUniqueId(), killer == null ? null : killer.getUniqueId());
+		deathsRecorded.increment();
+		if (killer != null) {
+			credit(killer);
+		}
+
+		var assistantCount = hitHistory.getAssistants(victimSlot, now, window, assistants);
+		for (var i = 0; i < assistantCount; i++) {
+			var assistant = playerRegistry.getPlayer(assistants[i]);
+			if (assistant != null && assistant != killer) {
+				store.appendAssist(victim.getUniqueId(), assistant.getUniqueId());
+			}
+		}
+		hitHistory.clear(victimSlot);
+	}
+
+	/**
+	 * Adds new {@link Player players} to the kill counter and loads their totals in the background.
 	 *
 	 * @param event the {@link Event} that is sent when a {@link Player} joins the server
 	 */
 	@EventHandler
 	public void onPlayerJoin(PlayerJoinEvent event) {
-		var player = event.getPlayer();
-		var name = player.getName();
-		var score = killsObjective.getScore(name);
-		score.setScore(0);
+		load(event.getPlayer());
 	}
 
 	/**
-	 * Removes {@link Player players} from the {@link Scoreboard} when they leave the server.
+	 * Forgets the kills and hits of {@link Player players} that leave the server, their kills are loaded again when they
+	 * rejoin.
 	 *
 	 * @param event the {@link Event} that is sent when a {@link Player} leaves the server
 	 */
 	@EventHandler
 	public void onPlayerQuitEvent(PlayerQuitEvent event) {
 		var player = event.getPlayer();
-		var name = player.getName();
-		scoreboard.resetScores(name);
+		var slot = playerRegistry.getSlot(player);
+		if (slot >= 0 && slot < kills.length) {
+			kills[slot] = 0;
+			loaded[slot] = false;
+		}
+		hitHistory.forget(slot);
 	}
 
 	/**
@@ -63,42 +154,93 @@ public class KillCounterService implements Listener {
 	 */
 	public synchronized void start() {
 		if (!running) {
+			store = new KillStatisticsStore(stickfight.getDataFolder(), stickfight.getLogger());
 			var pluginManager = Bukkit.getPluginManager();
 			pluginManager.registerEvents(this, stickfight);
-			initScoreboard();
+			var onlinePlayers = Bukkit.getOnlinePlayers().toArray(new Player[0]);
+			for (var onlinePlayer : onlinePlayers) {
+				load(onlinePlayer);
+			}
+			var tickScheduler = stickfight.getTickScheduler();
+			flushTask = tickScheduler.schedule("KillStatisticsStore.flush", TickScheduler.Priority.LOW, FLUSH_INTERVAL, store::flush);
 			running = true;
 		}
 	}
 
 	/**
-	 * Stops the service by unregistering it as a {@link Listener} and removing the kill counter.
+	 * Stops the service by unregistering it as a {@link Listener} and writing all recorded kills to disk.
 	 */
 	public void stop() {
 		HandlerList.unregisterAll(this);
-		killsObjective.unregister();
+		if (flushTask != null) {
+			flushTask.cancel();
+		}
+		store.close();
+		Arrays.fill(kills, 0);
+		Arrays.fill(loaded, false);
 		running = false;
 	}
 
 	/**
-	 * Initializes the {@link Scoreboard} with an {@link Objective} to count kills.
+	 * Adds a kill to the kill counter of a {@link Player}.
+	 *
+	 * @param killer the {@link Player} that gets the kill
 	 */
-	private void initScoreboard() {
-		var scoreboardManager = Bukkit.getScoreboardManager();
-		scoreboard = scoreboardManager.getMainScoreboard();
-
-		// add objective
-		killsObjective = scoreboard.getObjective(KILLS_OBJECTIVE);
-		if (killsObjective == null) {
-			killsObjective = scoreboard.registerNewObjective(KILLS_OBJECTIVE, Criteria.PLAYER_KILL_COUNT, "Kills");
+	private void credit(Player killer) {
+		var slot = playerRegistry.getSlot(killer);
+		if (slot >= 0) {
+			ensureCapacity(slot);
+			kills[slot]++;
+			if (loaded[slot]) {
+				leaderboardService.setKills(slot, kills[slot]);
+			}
 		}
-		killsObjective.setDisplaySlot(DisplaySlot.SIDEBAR);
-
-		// set initial scores for online players
-		var onlinePlayers = Bukkit.getOnlinePlayers().toArray(new Player[0]);
-		for (var onlinePlayer : onlinePlayers) {
-			var name = onlinePlayer.getName();
-			var score = killsObjective.getScore(name);
-			score.setScore(0);
+	}
+
+	/**
+	 * Makes sure that the per-player arrays can hold the state of a slot.
+	 *
+	 * @param slot the slot
+	 */
+	private void ensureCapacity(int slot) {
+		if (slot >= kills.length) {
+			var length = Math.max(slot + 1, kills.length * 2);
+			kills = Arrays.copyOf(kills, length);
+			loaded = Arrays.copyOf(loaded, length);
 		}
 	}
+
+	/**
+	 * Loads the totals of a {@link Player} in the background and shows them once they are available.
+	 * The totals are discarded if the {@link Player} has left the server in the meantime.
+	 *
+	 * @param player the {@link Player}
+	 */
+	private void load(Player player) {
+		var slot = playerRegistry.getSlot(player);
+		if (slot < 0) {
+			return;
+		}
+		ensureCapacity(slot);
+		kills[slot] = 0;
+		loaded[slot] = false;
+
+		store.load(player.getUniqueId()).whenComplete((totals, exception) -> {
+			if (exception != null) {
+				stickfight.getLogger().log(Level.WARNING, "Could not load the kill statistics of " + player.getName(), exception);
+				return;
+			}
+			if (!stickfight.isEnabled()) {
+				return;
+			}
+			Bukkit.getScheduler().runTask(stickfight, () -> {
+				if (!running || playerRegistry.getPlayer(slot) != player || loaded[slot]) {
+					return;
+				}
+				kills[slot] += totals.kills();
+				loaded[slot] = true;
+				leaderboardService.setKills(slot, kills[slot]);
+			});
+		});
+	}
 }
@@ -0,0 +1,366 @@
+package de.wariashi.stickfight;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the kills, deaths and assists of all players that ever played, so that they survive rejoins and restarts.
+ * <p>
+ * Every death and assist is recorded as a compact event in an append-only log. Events are appended to an in-memory buffer on the
+ * main thread and written to disk in batches by a background thread whenever the buffer is {@link #flush() flushed}.
+ * When the log grows too large, the background thread compacts it into a snapshot of the totals of every player.
+ * Both files carry a generation number, so a log that has already been compacted is never applied twice, even if the
+ * server crashes during compaction.
+ * <p>
+ * The totals are kept in memory by the background thread. They are read from disk the first time they are needed,
+ * and {@link #load(UUID) lookups} never block the calling thread. If the snapshot or the log cannot be read, the store
+ * becomes read-only: nothing is written until the server is restarted, so that neither a compaction nor a truncation of
+ * the log can ever discard totals that could not be read.
+ */
+public class KillStatisticsStore {
+	private static final long COMPACTION_THRESHOLD = 1 << 20; // bytes
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+	private static final int LOG_MAGIC = 0x53464B31; // "SFK1"
+	private static final byte RECORD_ASSIST = 2;
+	private static final byte RECORD_DEATH = 1;
+	private static final int RECORD_SIZE = 1 + 4 * Long.BYTES + Long.BYTES;
+	private static final int SNAPSHOT_MAGIC = 0x53465332; // "SFS2"
+	private static final int SNAPSHOT_MAGIC_WITHOUT_ASSISTS = 0x53465331; // "SFS1"
+
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private FileChannel channel;
+	private long generation;
+	private final File logFile;
+	private final Logger logger;
+	private boolean readOnly = false;
+	private final File snapshotFile;
+	private Map<UUID, int[]> totals;
+	private final ExecutorService writer;
+
+	/**
+	 * Creates a new {@link KillStatisticsStore}.
+	 *
+	 * @param directory the directory that the log and the snapshot are stored in
+	 * @param logger    the {@link Logger} that is used to report I/O errors
+	 */
+	public KillStatisticsStore(File directory, Logger logger) {
+		this.logger = logger;
+		logFile = new File(directory, "kills.log");
+		snapshotFile = new File(directory, "kills.snapshot");
+		writer = Executors.newSingleThreadExecutor(runnable -> {
+			var thread = new Thread(runnable, "Stickfight Kill Statistics");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Records that a player helped to kill another player.
+	 *
+	 * @param victim    the {@link UUID} of the player that died
+	 * @param assistant the {@link UUID} of the player that gets the assist
+	 */
+	public void appendAssist(UUID victim, UUID assistant) {
+		append(RECORD_ASSIST, victim, assistant);
+	}
+
+	/**
+	 * Records that a player died.
+	 *
+	 * @param victim the {@link UUID} of the player that died
+	 * @param killer the {@link UUID} of the player that gets the kill or <code>null</code> if nobody gets it
+	 */
+	public void appendDeath(UUID victim, UUID killer) {
+		append(RECORD_DEATH, victim, killer);
+	}
+
+	/**
+	 * Writes all remaining events to disk and waits for the background thread to finish.
+	 */
+	public void close() {
+		flush();
+		writer.execute(this::closeChannel);
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.warning("Timed out while writing the kill statistics");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Hands all buffered events to the background thread, which writes them to disk and compacts the log if necessary.
+	 */
+	public void flush() {
+		if (buffer.position() == 0) {
+			return;
+		}
+
+		var records = buffer.flip();
+		buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		writer.execute(() -> write(records));
+	}
+
+	/**
+	 * Looks up the totals of a player on the background thread.
+	 * Events that have been recorded before this call are included, events that are recorded afterwards are not.
+	 *
+	 * @param player the {@link UUID} of the player
+	 * @return a {@link CompletableFuture} that is completed with the {@link Totals} on the background thread
+	 */
+	public CompletableFuture<Totals> load(UUID player) {
+		flush();
+		return CompletableFuture.supplyAsync(() -> {
+			ensureLoaded();
+			var total = totals.get(player);
+			return total == null ? new Totals(0, 0, 0) : new Totals(total[0], total[1], total[2]);
+		}, writer);
+	}
+
+	/**
+	 * Appends an event to the in-memory buffer.
+	 *
+	 * @param type   the type of the event
+	 * @param victim the {@link UUID} of the player that died
+	 * @param other  the {@link UUID} of the killer or assistant or <code>null</code> if there is none
+	 */
+	private void append(byte type, UUID victim, UUID other) {
+		if (buffer.remaining() < RECORD_SIZE) {
+			var larger = ByteBuffer.allocate(buffer.capacity() * 2);
+			larger.put(buffer.flip());
+			buffer = larger;
+		}
+		buffer.put(type);
+		buffer.putLong(victim.getMostSignificantBits());
+		buffer.putLong(victim.getLeastSignificantBits());
+		buffer.putLong(other == null ? 0 : other.getMostSignificantBits());
+		buffer.putLong(other == null ? 0 : other.getLeastSignificantBits());
+		buffer.putLong(System.currentTimeMillis());
+	}
+
+	/**
+	 * Adds an event to the totals.
+	 * Must only be called on the background thread.
+	 *
+	 * @param type        the type of the event
+	 * @param victimMost  the most significant bits of the {@link UUID} of the victim
+	 * @param victimLeast the least significant bits of the {@link UUID} of the victim
+	 * @param otherMost   the most significant bits of the {@link UUID} of the killer or assistant
+	 * @param otherLeast  the least significant bits of the {@link UUID} of the killer or assistant
+	 */
+	private void apply(byte type, long victimMost, long victimLeast, long otherMost, long otherLeast) {
+		if (type == RECORD_DEATH) {
+			totals.computeIfAbsent(new UUID(victimMost, victimLeast), key -> new int[3])[1]++;
+		}
+		if (otherMost != 0 || otherLeast != 0) {
+			totals.computeIfAbsent(new UUID(otherMost, otherLeast), key -> new int[3])[type == RECORD_DEATH ? 0 : 2]++;
+		}
+	}
+
+	/**
+	 * Closes the {@link FileChannel} if it is open.
+	 * Must only be called on the background thread.
+	 */
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not close the kill statistics", e);
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Writes the totals to a new snapshot and starts a new, empty log with the next generation.
+	 * Must only be called on the background thread.
+	 *
+	 * @throws IOException if the snapshot or the log cannot be written
+	 */
+	private void compact() throws IOException {
+		var temporary = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+		try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+			output.writeInt(SNAPSHOT_MAGIC);
+			output.writeLong(generation + 1);
+			output.writeInt(totals.size());
+			for (var entry : totals.entrySet()) {
+				output.writeLong(entry.getKey().getMostSignificantBits());
+				output.writeLong(entry.getKey().getLeastSignificantBits());
+				output.writeInt(entry.getValue()[0]);
+				output.writeInt(entry.getValue()[1]);
+				output.writeInt(entry.getValue()[2]);
+			}
+		}
+		Files.move(temporary.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		// a crash before the log is reset is harmless, because the log of the previous generation is ignored
+		generation++;
+		resetLog();
+	}
+
+	/**
+	 * Reads the snapshot and the log the first time the totals are needed.
+	 * An incomplete event at the end of the log, e.g. after a crash, is cut off.
+	 * If the snapshot or the log cannot be read for any other reason, the store becomes read-only, so that neither the
+	 * snapshot nor the log are touched.
+	 * Must only be called on the background thread.
+	 */
+	private void ensureLoaded() {
+		if (totals != null) {
+			return;
+		}
+
+		totals = new HashMap<>();
+		generation = 0;
+		if (snapshotFile.isFile()) {
+			try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+				var magic = input.readInt();
+				if (magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_WITHOUT_ASSISTS) {
+					throw new IOException("Unknown file format");
+				}
+				generation = input.readLong();
+				var count = input.readInt();
+				for (var i = 0; i < count; i++) {
+					var uuid = new UUID(input.readLong(), input.readLong());
+					var kills = input.readInt();
+					var deaths = input.readInt();
+					var assists = magic == SNAPSHOT_MAGIC ? input.readInt() : 0;
+					totals.put(uuid, new int[] { kills, deaths, assists });
+				}
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Could not read the kill statistics snapshot " + snapshotFile + ", no kill statistics are recorded until it has been repaired", e);
+				totals = new HashMap<>();
+				readOnly = true;
+				return;
+			}
+		}
+
+		var valid = 0L;
+		var logGeneration = -1L;
+		if (logFile.isFile()) {
+			try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+				if (input.readInt() != LOG_MAGIC) {
+					throw new IOException("Unknown file format");
+				}
+				logGeneration = input.readLong();
+				valid = HEADER_SIZE;
+				while (true) {
+					var type = input.readByte();
+					if (type != RECORD_DEATH && type != RECORD_ASSIST) {
+						throw new IOException("Unknown record type " + type);
+					}
+					var victimMost = input.readLong();
+					var victimLeast = input.readLong();
+					var otherMost = input.readLong();
+					var otherLeast = input.readLong();
+					input.readLong(); // time
+					if (logGeneration == generation) {
+						apply(type, victimMost, victimLeast, otherMost, otherLeast);
+					}
+					valid += RECORD_SIZE;
+				}
+			} catch (EOFException e) {
+				// end of log, the last event may be incomplete if the server crashed while writing it
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Could not read the kill statistics log " + logFile + ", no kill statistics are recorded until it has been repaired", e);
+				readOnly = true;
+				return;
+			}
+		}
+
+		try {
+			if (logGeneration == generation) {
+				channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				channel.truncate(valid);
+				channel.position(valid);
+			} else {
+				resetLog();
+			}
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not open the kill statistics log", e);
+		}
+	}
+
+	/**
+	 * Empties the log and writes the header of the current generation.
+	 * Must only be called on the background thread.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	private void resetLog() throws IOException {
+		if (channel == null) {
+			channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		}
+		channel.truncate(0);
+		channel.position(0);
+		channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(LOG_MAGIC).putLong(generation).flip());
+		channel.force(false);
+	}
+
+	/**
+	 * Appends events to the log, adds them to the totals and compacts the log if it has grown too large.
+	 * If the store is read-only, the events are only added to the totals.
+	 * Must only be called on the background thread.
+	 *
+	 * @param records the events to write
+	 */
+	private void write(ByteBuffer records) {
+		ensureLoaded();
+		for (var offset = 0; offset + RECORD_SIZE <= records.limit(); offset += RECORD_SIZE) {
+			apply(records.get(offset), records.getLong(offset + 1), records.getLong(offset + 9), records.getLong(offset + 17), records.getLong(offset + 25));
+		}
+		if (readOnly) {
+			return;
+		}
+
+		try {
+			if (channel == null) {
+				resetLog();
+			}
+			while (records.hasRemaining()) {
+				channel.write(records);
+			}
+			channel.force(false);
+			if (channel.size() > COMPACTION_THRESHOLD) {
+				compact();
+			}
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not write the kill statistics", e);
+		}
+	}
+
+	/**
+	 * The kills, deaths and assists of a player.
+	 *
+	 * @param kills   the number of players that the player killed
+	 * @param deaths  the number of times the player died
+	 * @param assists the number of kills that the player helped with
+	 */
+	public record Totals(int kills, int deaths, int assists) {
+	}
+}
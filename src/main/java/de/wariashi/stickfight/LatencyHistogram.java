@@ -0,0 +1,109 @@
+package de.wariashi.stickfight;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long an event handler or a scheduled task took, using fixed buckets.
+ * <p>
+ * Recording a duration only increments two {@link LongAdder adders}, so it is cheap enough to be done for every event,
+ * and the histogram can be read from another thread while it is being recorded to.
+ */
+public class LatencyHistogram {
+	/**
+	 * The upper bounds of the buckets in nanoseconds, from 1 microsecond up to a full tick of 50 milliseconds.
+	 * Durations above the last bound are counted in an additional bucket.
+	 */
+	public static final long[] BUCKET_BOUNDS = {
+		1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+		1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000
+	};
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * Creates a new, empty {@link LatencyHistogram}.
+	 */
+	public LatencyHistogram() {
+		for (var i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Returns the number of durations in a bucket, not including the smaller buckets.
+	 *
+	 * @param bucket the index of the bucket, where {@link #BUCKET_BOUNDS BUCKET_BOUNDS.length} is the bucket for
+	 *               durations above the last bound
+	 * @return the number of durations in the bucket
+	 */
+	public long getBucketCount(int bucket) {
+		return buckets[bucket].sum();
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+		var count = 0L;
+		for (var bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Estimates a percentile of the recorded durations by the upper bound of the bucket that contains it.
+	 *
+	 * @param percentile the percentile between <code>0</code> and <code>1</code>
+	 * @return the upper bound in nanoseconds or {@link Long#MAX_VALUE} if the percentile is above the last bound
+	 */
+	public long getPercentile(double percentile) {
+		var counts = new long[buckets.length];
+		var count = 0L;
+		for (var i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+
+		var rank = (long) Math.ceil(percentile * count);
+		var cumulative = 0L;
+		for (var i = 0; i < BUCKET_BOUNDS.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= rank) {
+				return BUCKET_BOUNDS[i];
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return the sum of all recorded durations in nanoseconds
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		var bucket = 0;
+		while (bucket < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		sum.add(nanos);
+	}
+
+	/**
+	 * Records the time that has passed since a start time.
+	 *
+	 * @param start the start time as returned by {@link System#nanoTime()}
+	 */
+	public void recordSince(long start) {
+		record(System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,294 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+
+/**
+ * A ranking of {@link PlayerRegistry slots} by score that is updated incrementally.
+ * <p>
+ * The ranking is a treap whose nodes are the slots themselves, so it is stored in a few primitive arrays and never
+ * allocates after it has grown to the number of slots. Every node knows the size of its subtree, so changing a score,
+ * looking up the rank of a slot and looking up the slot at a rank all take O(log n) time.
+ * <p>
+ * Slots are ordered by their score, highest first. Slots with the same score are ordered by the time at which they
+ * reached it, so whoever got there first stays ahead.
+ * <p>
+ * The ranking is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class Leaderboard {
+	private static final int NONE = -1;
+
+	private int[] left = new int[0];
+	private long nextSequence;
+	private int[] priorities = new int[0];
+	private int[] right = new int[0];
+	private int root = NONE;
+	private int[] scores = new int[0];
+	private long[] sequences = new long[0];
+	private int[] sizes = new int[0];
+	private int splitLeft;
+	private int splitRight;
+
+	/**
+	 * Tests whether a slot is part of the ranking.
+	 *
+	 * @param slot the slot
+	 * @return <code>true</code> if the slot is ranked, <code>false</code> otherwise
+	 */
+	public boolean contains(int slot) {
+		return slot >= 0 && slot < sizes.length && sizes[slot] > 0;
+	}
+
+	/**
+	 * Returns the slot at a rank.
+	 *
+	 * @param rank the rank, starting at <code>0</code> for the highest score
+	 * @return the slot or <code>-1</code> if the rank is out of bounds
+	 */
+	public int get(int rank) {
+		var node = root;
+		while (node != NONE) {
+			var leftSize = size(left[node]);
+			if (rank < leftSize) {
+				node = left[node];
+			} else if (rank == leftSize) {
+				return node;
+			} else {
+				rank -= leftSize + 1;
+				node = right[node];
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the rank of a slot.
+	 *
+	 * @param slot the slot
+	 * @return the rank, starting at <code>0</code> for the highest score, or <code>-1</code> if the slot is not ranked
+	 */
+	public int getRank(int slot) {
+		if (!contains(slot)) {
+			return NONE;
+		}
+
+		var rank = 0;
+		var node = root;
+		while (node != slot) {
+			if (before(slot, node)) {
+				node = left[node];
+			} else {
+				rank += size(left[node]) + 1;
+				node = right[node];
+			}
+		}
+		return rank + size(left[slot]);
+	}
+
+	/**
+	 * Returns the score of a slot.
+	 *
+	 * @param slot the slot
+	 * @return the score or <code>0</code> if the slot is not ranked
+	 */
+	public int getScore(int slot) {
+		return contains(slot) ? scores[slot] : 0;
+	}
+
+	/**
+	 * Removes a slot from the ranking.
+	 *
+	 * @param slot the slot
+	 */
+	public void remove(int slot) {
+		if (contains(slot)) {
+			root = erase(root, slot);
+			sizes[slot] = 0;
+		}
+	}
+
+	/**
+	 * Sets the score of a slot, adding it to the ranking if it is not ranked yet.
+	 *
+	 * @param slot  the slot
+	 * @param score the score
+	 */
+	public void set(int slot, int score) {
+		if (contains(slot)) {
+			if (scores[slot] == score) {
+				return;
+			}
+			root = erase(root, slot);
+		}
+		ensureCapacity(slot);
+		left[slot] = NONE;
+		right[slot] = NONE;
+		scores[slot] = score;
+		sequences[slot] = nextSequence;
+		priorities[slot] = mix(nextSequence);
+		sizes[slot] = 1;
+		nextSequence++;
+		root = insert(root, slot);
+	}
+
+	/**
+	 * @return the number of ranked slots
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * Tests whether a slot is ranked before another one.
+	 *
+	 * @param a the first slot
+	 * @param b the second slot
+	 * @return <code>true</code> if the first slot is ranked before the second one, <code>false</code> otherwise
+	 */
+	private boolean before(int a, int b) {
+		return scores[a] != scores[b] ? scores[a] > scores[b] : sequences[a] < sequences[b];
+	}
+
+	/**
+	 * Makes sure that the arrays can hold a slot.
+	 *
+	 * @param slot the slot
+	 */
+	private void ensureCapacity(int slot) {
+		if (slot >= sizes.length) {
+			var length = Math.max(slot + 1, sizes.length * 2);
+			left = Arrays.copyOf(left, length);
+			priorities = Arrays.copyOf(priorities, length);
+			right = Arrays.copyOf(right, length);
+			scores = Arrays.copyOf(scores, length);
+			sequences = Arrays.copyOf(sequences, length);
+			sizes = Arrays.copyOf(sizes, length);
+		}
+	}
+
+	/**
+	 * Removes a slot from a subtree.
+	 *
+	 * @param node the root of the subtree, which must contain the slot
+	 * @param slot the slot
+	 * @return the new root of the subtree
+	 */
+	private int erase(int node, int slot) {
+		if (node == slot) {
+			return merge(left[node], right[node]);
+		}
+		if (before(slot, node)) {
+			left[node] = erase(left[node], slot);
+		} else {
+			right[node] = erase(right[node], slot);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Inserts a slot into a subtree.
+	 *
+	 * @param node the root of the subtree
+	 * @param slot the slot, which must not have any children yet
+	 * @return the new root of the subtree
+	 */
+	private int insert(int node, int slot) {
+		if (node == NONE) {
+			return slot;
+		}
+		if (priorities[slot] > priorities[node]) {
+			split(node, slot);
+			left[slot] = splitLeft;
+			right[slot] = splitRight;
+			update(slot);
+			return slot;
+		}
+		if (before(slot, node)) {
+			left[node] = insert(left[node], slot);
+		} else {
+			right[node] = insert(right[node], slot);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Merges two subtrees.
+	 *
+	 * @param a the root of the first subtree, whose slots are all ranked before the slots of the second one
+	 * @param b the root of the second subtree
+	 * @return the root of the merged subtree
+	 */
+	private int merge(int a, int b) {
+		if (a == NONE) {
+			return b;
+		}
+		if (b == NONE) {
+			return a;
+		}
+		if (priorities[a] > priorities[b]) {
+			right[a] = merge(right[a], b);
+			update(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		update(b);
+		return b;
+	}
+
+	/**
+	 * Scrambles a sequence number into a priority, so the treap stays balanced without a random number generator.
+	 *
+	 * @param sequence the sequence number
+	 * @return the priority
+	 */
+	private static int mix(long sequence) {
+		var z = sequence * 0x9E3779B97F4A7C15L;
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return (int) (z ^ z >>> 31);
+	}
+
+	/**
+	 * Returns the size of a subtree.
+	 *
+	 * @param node the root of the subtree
+	 * @return the number of slots in the subtree
+	 */
+	private int size(int node) {
+		return node == NONE ? 0 : sizes[node];
+	}
+
+	/**
+	 * Splits a subtree into the slots that are ranked before a slot, stored in {@link #splitLeft}, and the slots that
+	 * are ranked after it, stored in {@link #splitRight}.
+	 *
+	 * @param node the root of the subtree
+	 * @param slot the slot
+	 */
+	private void split(int node, int slot) {
+		if (node == NONE) {
+			splitLeft = NONE;
+			splitRight = NONE;
+		} else if (before(node, slot)) {
+			split(right[node], slot);
+			right[node] = splitLeft;
+			update(node);
+			splitLeft = node;
+		} else {
+			split(left[node], slot);
+			left[node] = splitRight;
+			update(node);
+			splitRight = node;
+		}
+	}
+
+	/**
+	 * Recalculates the size of a subtree after its children have changed.
+	 *
+	 * @param node the root of the subtree
+	 */
+	private void update(int node) {
+		sizes[node] = size(left[node]) + size(right[node]) + 1;
+	}
+}
@@ -0,0 +1,257 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scoreboard.Criteria;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
+
+/**
+ * The {@link LeaderboardService} shows the players with the most kills in the sidebar.
+ * <p>
+ * Every {@link Player} has an own {@link Scoreboard} that shows the top players and, below them, the rank of the
+ * {@link Player} itself. The ranking is kept in a {@link Leaderboard}, so a kill only costs O(log n). Changes are
+ * collected and pushed at a fixed rate, and only the lines of a sidebar that have changed since the last push are
+ * sent to its {@link Player}.
+ */
+public class LeaderboardService implements Listener {
+	private static final String KILLS_OBJECTIVE = "stickfight_kill_counter";
+	private static final int MAX_LINES = 15;
+
+	private boolean changed = false;
+	private final Leaderboard leaderboard = new Leaderboard();
+	private String[][] lines = new String[0][];
+	private Objective[] objectives = new Objective[0];
+	private final PlayerRegistry playerRegistry;
+	private boolean running = false;
+	private int[][] scores = new int[0][];
+	private final Stickfight stickfight;
+	private TickScheduler.ScheduledTask task;
+	private final String[] topLines = new String[MAX_LINES];
+	private final int[] topScores = new int[MAX_LINES];
+
+	/**
+	 * Creates a new {@link LeaderboardService}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public LeaderboardService(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		playerRegistry = stickfight.getPlayerRegistry();
+	}
+
+	/**
+	 * Shows the leaderboard to {@link Player players} that join the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} joins the server
+	 */
+	@EventHandler
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		show(event.getPlayer());
+	}
+
+	/**
+	 * Removes {@link Player players} from the leaderboard when they leave the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} leaves the server
+	 */
+	@EventHandler
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		var slot = playerRegistry.getSlot(event.getPlayer());
+		if (slot < 0) {
+			return;
+		}
+		leaderboard.remove(slot);
+		if (slot < objectives.length) {
+			objectives[slot] = null;
+			lines[slot] = null;
+			scores[slot] = null;
+		}
+		changed = true;
+	}
+
+	/**
+	 * Sets the number of kills of a {@link Player}.
+	 * The sidebars are updated with the next push.
+	 *
+	 * @param slot  the {@link PlayerRegistry slot} of the {@link Player}
+	 * @param kills the number of kills
+	 */
+	public void setKills(int slot, int kills) {
+		if (!leaderboard.contains(slot) || leaderboard.getScore(slot) != kills) {
+			leaderboard.set(slot, kills);
+			changed = true;
+		}
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
+			removeSharedObjective();
+			var onlinePlayers = Bukkit.getOnlinePlayers().toArray(new Player[0]);
+			for (var onlinePlayer : onlinePlayers) {
+				show(onlinePlayer);
+			}
+			var interval = Math.max(1, stickfight.getConfiguration().getLeaderboardInterval());
+			var tickScheduler = stickfight.getTickScheduler();
+			task = tickScheduler.schedule("LeaderboardService.tick", TickScheduler.Priority.LOW, interval, this::tick);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by unregistering it as a {@link Listener} and giving all {@link Player players} the main
+	 * {@link Scoreboard} back.
+	 */
+	public void stop() {
+		HandlerList.unregisterAll(this);
+		if (task != null) {
+			task.cancel();
+		}
+		var mainScoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
+		for (var slot = 0; slot < objectives.length; slot++) {
+			var player = playerRegistry.getPlayer(slot);
+			if (objectives[slot] != null && player != null) {
+				player.setScoreboard(mainScoreboard);
+			}
+		}
+		Arrays.fill(objectives, null);
+		Arrays.fill(lines, null);
+		Arrays.fill(scores, null);
+		running = false;
+	}
+
+	/**
+	 * Makes sure that the per-player arrays can hold the state of a slot.
+	 *
+	 * @param slot the slot
+	 */
+	private void ensureCapacity(int slot) {
+		if (slot >= objectives.length) {
+			var length = Math.max(slot + 1, objectives.length * 2);
+			lines = Arrays.copyOf(lines, length);
+			objectives = Arrays.copyOf(objectives, length);
+			scores = Arrays.copyOf(scores, length);
+		}
+	}
+
+	/**
+	 * Formats a line of the sidebar.
+	 * The rank is padded with spaces, so lines with the same number of kills are sorted by rank by the client.
+	 *
+	 * @param rank the rank, starting at <code>0</code>
+	 * @param slot the {@link PlayerRegistry slot} of the {@link Player}
+	 * @return the line
+	 */
+	private String format(int rank, int slot) {
+		var player = playerRegistry.getPlayer(slot);
+		var name = player == null ? "?" : player.getName();
+		return String.format("%3d. %s", rank + 1, name);
+	}
+
+	/**
+	 * Sends the lines of a sidebar that have changed since the last push.
+	 *
+	 * @param slot      the {@link PlayerRegistry slot} of the viewing {@link Player}
+	 * @param newLines  the lines that should be shown
+	 * @param newScores the numbers of kills next to the lines
+	 * @param count     the number of lines
+	 */
+	private void push(int slot, String[] newLines, int[] newScores, int count) {
+		var objective = objectives[slot];
+		var oldLines = lines[slot];
+		var oldScores = scores[slot];
+		var scoreboard = objective.getScoreboard();
+		for (var i = 0; i < MAX_LINES; i++) {
+			var oldLine = oldLines[i];
+			var newLine = i < count ? newLines[i] : null;
+			if (oldLine != null && !oldLine.equals(newLine)) {
+				scoreboard.resetScores(oldLine);
+			}
+			if (newLine != null && (!newLine.equals(oldLine) || oldScores[i] != newScores[i])) {
+				objective.getScore(newLine).setScore(newScores[i]);
+			}
+			oldLines[i] = newLine;
+			oldScores[i] = i < count ? newScores[i] : 0;
+		}
+	}
+
+	/**
+	 * Removes the kill counter that older versions showed on the main {@link Scoreboard}.
+	 */
+	private void removeSharedObjective() {
+		var mainScoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
+		var objective = mainScoreboard.getObjective(KILLS_OBJECTIVE);
+		if (objective != null) {
+			objective.unregister();
+		}
+	}
+
+	/**
+	 * Gives a {@link Player} an own {@link Scoreboard} with the leaderboard.
+	 *
+	 * @param player the {@link Player}
+	 */
+	private void show(Player player) {
+		var slot = playerRegistry.getSlot(player);
+		if (slot < 0) {
+			return;
+		}
+		ensureCapacity(slot);
+
+		var scoreboard = Bukkit.getScoreboardManager().getNewScoreboard();
+		var objective = scoreboard.registerNewObjective(KILLS_OBJECTIVE, Criteria.DUMMY, "Kills");
+		objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+		player.setScoreboard(scoreboard);
+		objectives[slot] = objective;
+		lines[slot] = new String[MAX_LINES];
+		scores[slot] = new int[MAX_LINES];
+		changed = true;
+	}
+
+	/**
+	 * Pushes the leaderboard to all {@link Player players} if it has changed since the last push.
+	 * The top lines are the same for everyone and are only formatted once.
+	 */
+	private void tick() {
+		if (!changed) {
+			return;
+		}
+
+		var size = Math.clamp(stickfight.getConfiguration().getLeaderboardSize(), 1, MAX_LINES - 1);
+		var top = Math.min(size, leaderboard.size());
+		for (var rank = 0; rank < top; rank++) {
+			var slot = leaderboard.get(rank);
+			topLines[rank] = format(rank, slot);
+			topScores[rank] = leaderboard.getScore(slot);
+		}
+
+		for (var slot = 0; slot < objectives.length; slot++) {
+			if (objectives[slot] == null) {
+				continue;
+			}
+			var count = top;
+			var rank = leaderboard.getRank(slot);
+			if (rank >= top) {
+				topLines[count] = format(rank, slot);
+				topScores[count] = leaderboard.getScore(slot);
+				count++;
+			}
+			push(slot, topLines, topScores, count);
+		}
+		changed = false;
+	}
+}
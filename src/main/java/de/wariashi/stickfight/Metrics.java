@@ -0,0 +1,132 @@
+package de.wariashi.stickfight;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Collects counters, gauges and {@link LatencyHistogram latency histograms} of the plugin.
+ * <p>
+ * Counters, gauges and histograms are registered once, usually when a service is created, and then updated without locking.
+ * The collected values can be read from any thread and rendered in the Prometheus text exposition format.
+ */
+public class Metrics {
+	private static final String HANDLER_DURATION = "stickfight_handler_duration_seconds";
+	private static final String HANDLER_DURATION_HELP = "Time spent in event handlers and scheduled tasks.";
+
+	private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+	private final Map<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+	private final Map<String, LatencyHistogram> handlers = new ConcurrentSkipListMap<>();
+	private final Map<String, String> help = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the counter with the given name and registers it if it does not exist yet.
+	 *
+	 * @param name        the name of the counter, which should end with <code>_total</code>
+	 * @param description a short description of what is counted
+	 * @return the counter
+	 */
+	public LongAdder counter(String name, String description) {
+		help.putIfAbsent(name, description);
+		return counters.computeIfAbsent(name, key -> new LongAdder());
+	}
+
+	/**
+	 * Registers a gauge, i.e. a value that can go up and down and is read whenever the metrics are rendered.
+	 * A gauge that already exists is replaced.
+	 *
+	 * @param name        the name of the gauge
+	 * @param description a short description of the value
+	 * @param supplier    the supplier of the value, which may be called from any thread
+	 */
+	public void gauge(String name, String description, DoubleSupplier supplier) {
+		help.put(name, description);
+		gauges.put(name, supplier);
+	}
+
+	/**
+	 * @return all counters by name, sorted by name
+	 */
+	public Map<String, LongAdder> getCounters() {
+		return counters;
+	}
+
+	/**
+	 * @return the suppliers of all gauges by name, sorted by name
+	 */
+	public Map<String, DoubleSupplier> getGauges() {
+		return gauges;
+	}
+
+	/**
+	 * @return the {@link LatencyHistogram histograms} of all event handlers and scheduled tasks by name, sorted by name
+	 */
+	public Map<String, LatencyHistogram> getHandlers() {
+		return handlers;
+	}
+
+	/**
+	 * Returns the {@link LatencyHistogram} of an event handler or a scheduled task and registers it if it does not exist yet.
+	 *
+	 * @param name the name of the handler, e.g. <code>GlassPaneService.tick</code>
+	 * @return the {@link LatencyHistogram}
+	 */
+	public LatencyHistogram handler(String name) {
+		return handlers.computeIfAbsent(name, key -> new LatencyHistogram());
+	}
+
+	/**
+	 * Renders all counters, gauges and histograms in the Prometheus text exposition format.
+	 *
+	 * @return the rendered metrics
+	 */
+	public String toPrometheus() {
+		var builder = new StringBuilder();
+
+		if (!handlers.isEmpty()) {
+			builder.append("# HELP ").append(HANDLER_DURATION).append(' ').append(HANDLER_DURATION_HELP).append('\n');
+			builder.append("# TYPE ").append(HANDLER_DURATION).append(" histogram\n");
+			for (var entry : handlers.entrySet()) {
+				var label = "handler=\"" + entry.getKey() + "\"";
+				var histogram = entry.getValue();
+				var cumulative = 0L;
+				for (var i = 0; i <= LatencyHistogram.BUCKET_BOUNDS.length; i++) {
+					cumulative += histogram.getBucketCount(i);
+					var bound = i < LatencyHistogram.BUCKET_BOUNDS.length ? toSeconds(LatencyHistogram.BUCKET_BOUNDS[i]) : "+Inf";
+					builder.append(HANDLER_DURATION).append("_bucket{").append(label).append(",le=\"").append(bound).append("\"} ")
+						.append(cumulative).append('\n');
+				}
+				builder.append(HANDLER_DURATION).append("_sum{").append(label).append("} ").append(toSeconds(histogram.getSum())).append('\n');
+				builder.append(HANDLER_DURATION).append("_count{").append(label).append("} ").append(cumulative).append('\n');
+			}
+		}
+
+		for (var entry : counters.entrySet()) {
+			var name = entry.getKey();
+			builder.append("# HELP ").append(name).append(' ').append(help.get(name)).append('\n');
+			builder.append("# TYPE ").append(name).append(" counter\n");
+			builder.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+		}
+
+		for (var entry : gauges.entrySet()) {
+			var name = entry.getKey();
+			builder.append("# HELP ").append(name).append(' ').append(help.get(name)).append('\n');
+			builder.append("# TYPE ").append(name).append(" gauge\n");
+			builder.append(name).append(' ').append(entry.getValue().getAsDouble()).append('\n');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Converts nanoseconds to seconds without losing precision or using scientific notation.
+	 *
+	 * @param nanos the duration in nanoseconds
+	 * @return the duration in seconds
+	 */
+	private static String toSeconds(long nanos) {
+		return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+	}
+}
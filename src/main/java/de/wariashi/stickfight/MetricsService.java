@@ -0,0 +1,84 @@
+package de.wariashi.stickfight;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * The {@link MetricsService} periodically writes the {@link Metrics} of the plugin to a file in the Prometheus text
+ * exposition format, so that they can be collected by the textfile collector of the Prometheus node exporter.
+ * <p>
+ * The file is written by an asynchronous task and replaced atomically, so that the collector never reads a partial file.
+ * Nothing is written if no file is configured.
+ */
+public class MetricsService {
+	private boolean running = false;
+	private final Stickfight stickfight;
+	private BukkitTask task;
+
+	/**
+	 * Creates a new {@link MetricsService}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public MetricsService(Stickfight stickfight) {
+		this.stickfight = stickfight;
+	}
+
+	/**
+	 * Starts the service if it has not already been started and a file is configured.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var configuration = stickfight.getConfiguration();
+			var path = configuration.getMetricsFile();
+			if (path.isBlank()) {
+				return;
+			}
+
+			var file = new File(path);
+			if (!file.isAbsolute()) {
+				file = new File(stickfight.getDataFolder(), path);
+			}
+			var target = file;
+			var interval = Math.max(1, configuration.getMetricsInterval()) * 20L; // seconds * ticks per second
+			var scheduler = Bukkit.getScheduler();
+			task = scheduler.runTaskTimerAsynchronously(stickfight, () -> dump(target), interval, interval);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by canceling its task.
+	 */
+	public synchronized void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		running = false;
+	}
+
+	/**
+	 * Writes the {@link Metrics} to a temporary file and moves it to the target file.
+	 *
+	 * @param target the file that the {@link Metrics} should be written to
+	 */
+	private void dump(File target) {
+		var text = stickfight.getMetrics().toPrometheus();
+		var temporary = new File(target.getParentFile(), target.getName() + ".tmp");
+		try {
+			Files.createDirectories(temporary.toPath().getParent());
+			Files.writeString(temporary.toPath(), text, StandardCharsets.UTF_8);
+			Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			stickfight.getLogger().log(Level.WARNING, "Could not write the metrics file " + target, e);
+		}
+	}
+}
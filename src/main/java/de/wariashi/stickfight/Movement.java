@@ -0,0 +1,125 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+/**
+ * Describes a {@link Player} moving from one block to another.
+ * The {@link MovementDispatcher} resolves all values once per movement and hands the same {@link Movement} to every
+ * {@link MovementSubscriber}. Instances are reused, so subscribers must not keep a reference after they returned.
+ */
+public class Movement {
+	private Arena arena;
+	private int blockX;
+	private int blockY;
+	private int blockZ;
+	private Location from;
+	private GameMode gameMode;
+	private Player player;
+	private int slot;
+	private Location to;
+
+	/**
+	 * @return the {@link Arena} that contains the block that the {@link Player} moved to or <code>null</code> if the
+	 * block is not within any arena
+	 */
+	public Arena getArena() {
+		return arena;
+	}
+
+	/**
+	 * @return the x coordinate of the block that the {@link Player} moved to
+	 */
+	public int getBlockX() {
+		return blockX;
+	}
+
+	/**
+	 * @return the y coordinate of the block that the {@link Player} moved to
+	 */
+	public int getBlockY() {
+		return blockY;
+	}
+
+	/**
+	 * @return the z coordinate of the block that the {@link Player} moved to
+	 */
+	public int getBlockZ() {
+		return blockZ;
+	}
+
+	/**
+	 * @return the {@link Location} that the {@link Player} moved from
+	 */
+	public Location getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return the {@link GameMode} of the {@link Player}
+	 */
+	public GameMode getGameMode() {
+		return gameMode;
+	}
+
+	/**
+	 * @return the {@link Player} that moved
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * @return the slot of the {@link Player} in the {@link PlayerRegistry} or <code>-1</code> if the {@link Player} has none
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * @return the {@link Location} that the {@link Player} moved to
+	 */
+	public Location getTo() {
+		return to;
+	}
+
+	/**
+	 * @return <code>true</code> if the {@link Player} moved to a block within an {@link Arena}, <code>false</code> otherwise
+	 */
+	public boolean isWithinConfinedArea() {
+		return arena != null;
+	}
+
+	/**
+	 * Removes all references, so that no {@link Player} or {@link Location} is retained between movements.
+	 */
+	void clear() {
+		arena = null;
+		player = null;
+		from = null;
+		to = null;
+	}
+
+	/**
+	 * Fills this {@link Movement} with new values.
+	 *
+	 * @param player   the {@link Player} that moved
+	 * @param slot     the slot of the {@link Player} in the {@link PlayerRegistry}
+	 * @param gameMode the {@link GameMode} of the {@link Player}
+	 * @param from     the {@link Location} that the {@link Player} moved from
+	 * @param to       the {@link Location} that the {@link Player} moved to
+	 * @param arena    the {@link Arena} that contains the block that the {@link Player} moved to or <code>null</code>
+	 */
+	void set(Player player, int slot, GameMode gameMode, Location from, Location to, Arena arena) {
+		this.player = player;
+		this.slot = slot;
+		this.gameMode = gameMode;
+		this.from = from;
+		this.to = to;
+		this.arena = arena;
+		blockX = to.getBlockX();
+		blockY = to.getBlockY();
+		blockZ = to.getBlockZ();
+	}
+}
@@ -0,0 +1,133 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+
+import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+/**
+ * The {@link MovementDispatcher} is the only {@link Listener} for {@link PlayerMoveEvent player movements}.
+ * Movements within the same block, e.g. head rotations, are ignored. For all other movements, the slot of the
+ * {@link Player}, the {@link GameMode} and the {@link Arena} of the target are resolved once and handed to every
+ * {@link MovementSubscriber}.
+ */
+public class MovementDispatcher implements Listener {
+	private final LatencyHistogram latency;
+	private final Movement movement = new Movement();
+	private boolean running = false;
+	private final Stickfight stickfight;
+	private MovementSubscriber[] subscribers = new MovementSubscriber[0];
+	private LatencyHistogram[] subscriberLatencies = new LatencyHistogram[0];
+
+	/**
+	 * Creates a new {@link MovementDispatcher}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public MovementDispatcher(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		latency = stickfight.getMetrics().handler("MovementDispatcher.onPlayerMove");
+	}
+
+	/**
+	 * Hands movements to other blocks to all {@link MovementSubscriber subscribers}.
+	 * Movements in worlds that do not contain any {@link Arena} are ignored.
+	 * The time spent in each subscriber and in total is recorded in the {@link Metrics}.
+	 * Like before the dispatcher existed, movements that other plugins cancel are handed on as well.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} moves
+	 */
+	@EventHandler
+	public void onPlayerMove(PlayerMoveEvent event) {
+		var from = event.getFrom();
+		var to = event.getTo();
+		if (to == null || from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) {
+			return;
+		}
+
+		// worlds without arenas, e.g. a lobby, are of no interest to any subscriber
+		if (!stickfight.getConfiguration().getSnapshot().arenas().contains(to.getWorld())) {
+			return;
+		}
+
+		var start = System.nanoTime();
+		var player = event.getPlayer();
+		var slot = stickfight.getPlayerRegistry().getSlot(player);
+		var gameMode = player.getGameMode();
+		var arena = stickfight.getArena(to);
+		movement.set(player, slot, gameMode, from, to, arena);
+		var currentSubscribers = subscribers;
+		var currentLatencies = subscriberLatencies;
+		try {
+			for (var i = 0; i < currentSubscribers.length; i++) {
+				var subscriberStart = System.nanoTime();
+				currentSubscribers[i].onBlockChange(movement);
+				currentLatencies[i].recordSince(subscriberStart);
+			}
+		} finally {
+			movement.clear();
+			latency.recordSince(start);
+		}
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by unregistering it as a {@link Listener}.
+	 */
+	public void stop() {
+		HandlerList.unregisterAll(this);
+		running = false;
+	}
+
+	/**
+	 * Adds a {@link MovementSubscriber}.
+	 * Subscribers are called in the order in which they were added.
+	 *
+	 * @param subscriber the {@link MovementSubscriber} to add
+	 */
+	public void subscribe(MovementSubscriber subscriber) {
+		var length = subscribers.length;
+		var latencies = Arrays.copyOf(subscriberLatencies, length + 1);
+		latencies[length] = stickfight.getMetrics().handler(subscriber.getClass().getSimpleName() + ".onBlockChange");
+		var copy = Arrays.copyOf(subscribers, length + 1);
+		copy[length] = subscriber;
+		subscriberLatencies = latencies;
+		subscribers = copy;
+	}
+
+	/**
+	 * Removes a {@link MovementSubscriber}.
+	 *
+	 * @param subscriber the {@link MovementSubscriber} to remove
+	 */
+	public void unsubscribe(MovementSubscriber subscriber) {
+		var remainingSubscribers = new MovementSubscriber[subscribers.length];
+		var remainingLatencies = new LatencyHistogram[subscribers.length];
+		var count = 0;
+		for (var i = 0; i < subscribers.length; i++) {
+			if (subscribers[i] != subscriber) {
+				remainingSubscribers[count] = subscribers[i];
+				remainingLatencies[count] = subscriberLatencies[i];
+				count++;
+			}
+		}
+		subscriberLatencies = Arrays.copyOf(remainingLatencies, count);
+		subscribers = Arrays.copyOf(remainingSubscribers, count);
+	}
+}
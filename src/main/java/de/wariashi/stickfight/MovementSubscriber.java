@@ -0,0 +1,17 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Receives {@link Movement movements} of {@link Player players} from the {@link MovementDispatcher}.
+ */
+@FunctionalInterface
+public interface MovementSubscriber {
+	/**
+	 * Called when a {@link Player} moved to another block.
+	 * The {@link Movement} is reused and must not be kept after this method returned.
+	 *
+	 * @param movement the {@link Movement} of the {@link Player}
+	 */
+	void onBlockChange(Movement movement);
+}
@@ -0,0 +1,272 @@
+package de.wariashi.stickfight;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.entity.ArmorStand;
+
+/**
+ * Finds the placeholder entities that previous versions of this plugin left behind for broken glass panes.
+ * Glass panes that have been broken by this version are recovered from the {@link RestorationJournal} instead.
+ * <p>
+ * The recovery looks at the loaded chunks of the {@link Arena arenas} in a {@link World}, chunks are never loaded for it.
+ * On the main thread, it only collects the placeholders and takes a {@link ChunkSnapshot} of each chunk that contains
+ * some. The chunks are then examined in parallel on worker threads: a placeholder is stale if a glass pane has already
+ * been restored at its position, otherwise it still marks a broken glass pane. Once all chunks have been examined, the
+ * {@link Result} is handed to a {@link Callback} on the main thread in one step.
+ */
+public class PaneRecovery {
+	private static final int PROGRESS_STEPS = 10;
+	private static final String TAG_PLACEHOLDER = "placeholder";
+	private static final String TAG_STICKFIGHT = "stickfight";
+
+	private final Callback callback;
+	private final int maxHeight;
+	private final int minHeight;
+	private final Stickfight stickfight;
+	private final World world;
+
+	/**
+	 * Creates a new {@link PaneRecovery}.
+	 *
+	 * @param stickfight the stickfight plugin that this recovery is associated with
+	 * @param world      the {@link World} whose arenas are recovered
+	 * @param callback   the {@link Callback} that receives the {@link Result} on the main thread
+	 */
+	public PaneRecovery(Stickfight stickfight, World world, Callback callback) {
+		this.stickfight = stickfight;
+		this.world = world;
+		this.callback = callback;
+		minHeight = world.getMinHeight();
+		maxHeight = world.getMaxHeight();
+	}
+
+	/**
+	 * Tests whether an {@link ArmorStand} is a placeholder for a broken glass pane.
+	 *
+	 * @param armorStand the {@link ArmorStand}
+	 * @return <code>true</code> if it is a placeholder, <code>false</code> otherwise
+	 */
+	public static boolean isPlaceholder(ArmorStand armorStand) {
+		var tags = armorStand.getScoreboardTags();
+		return tags.contains(TAG_STICKFIGHT) && tags.contains(TAG_PLACEHOLDER);
+	}
+
+	/**
+	 * Collects the chunks of the arenas and examines them on worker threads.
+	 * Must be called on the main thread, the {@link Callback} is called on the main thread later.
+	 */
+	public void run() {
+		var start = System.nanoTime();
+		var arenas = new ArrayList<Arena>();
+		for (var arena : stickfight.getConfiguration().getSnapshot().arenas().getArenas()) {
+			if (arena.world().equals(world.getName())) {
+				arenas.add(arena);
+			}
+		}
+		var chunks = collectChunks(arenas);
+		if (chunks.isEmpty()) {
+			callback.recovered(new Result(List.of(), List.of()));
+			return;
+		}
+		stickfight.getLogger().info("Recovering glass panes in " + chunks.size() + " chunks of " + world.getName());
+
+		var threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		var executor = Executors.newFixedThreadPool(threads, runnable -> {
+			var thread = new Thread(runnable, "Stickfight Recovery");
+			thread.setDaemon(true);
+			return thread;
+		});
+		var done = new AtomicInteger();
+		var futures = new CompletableFuture<?>[chunks.size()];
+		for (var i = 0; i < futures.length; i++) {
+			var chunk = chunks.get(i);
+			futures[i] = CompletableFuture.runAsync(() -> {
+				examine(chunk);
+				reportProgress(done.incrementAndGet(), futures.length);
+			}, executor);
+		}
+		CompletableFuture.allOf(futures).whenComplete((ignored, exception) -> {
+			executor.shutdown();
+			if (exception != null) {
+				stickfight.getLogger().log(Level.WARNING, "Could not recover the glass panes in " + world.getName(), exception);
+				return;
+			}
+			if (stickfight.isEnabled()) {
+				Bukkit.getScheduler().runTask(stickfight, () -> finish(chunks, start));
+			}
+		});
+	}
+
+	/**
+	 * Collects the placeholders in the loaded chunks of the arenas and takes a {@link ChunkSnapshot} of every chunk that
+	 * contains some. Chunks that are not loaded are skipped, because loading them would block the main thread.
+	 *
+	 * @param arenas the {@link Arena arenas} in the {@link World}
+	 * @return the chunks that contain placeholders
+	 */
+	private List<ChunkScan> collectChunks(List<Arena> arenas) {
+		var keys = new HashSet<Long>();
+		var chunks = new ArrayList<ChunkScan>();
+		for (var arena : arenas) {
+			if (arena.unlimited()) {
+				for (var chunk : world.getLoadedChunks()) {
+					if (keys.add(getKey(chunk.getX(), chunk.getZ()))) {
+						collectChunk(chunk, chunks);
+					}
+				}
+				continue;
+			}
+			for (var chunkX = arena.minX() >> 4; chunkX <= arena.maxX() >> 4; chunkX++) {
+				for (var chunkZ = arena.minZ() >> 4; chunkZ <= arena.maxZ() >> 4; chunkZ++) {
+					if (world.isChunkLoaded(chunkX, chunkZ) && keys.add(getKey(chunkX, chunkZ))) {
+						collectChunk(world.getChunkAt(chunkX, chunkZ), chunks);
+					}
+				}
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Adds a loaded chunk to the chunks that are examined if it contains placeholders.
+	 *
+	 * @param chunk  the loaded {@link Chunk}
+	 * @param chunks the chunks that are examined
+	 */
+	private void collectChunk(Chunk chunk, List<ChunkScan> chunks) {
+		var placeholders = new ArrayList<ArmorStand>();
+		for (var entity : chunk.getEntities()) {
+			if (entity instanceof ArmorStand armorStand && isPlaceholder(armorStand)) {
+				placeholders.add(armorStand);
+			}
+		}
+		if (!placeholders.isEmpty()) {
+			chunks.add(new ChunkScan(chunk.getChunkSnapshot(false, false, false), placeholders));
+		}
+	}
+
+	/**
+	 * Examines the placeholders of a chunk. Called on a worker thread.
+	 *
+	 * @param chunk the {@link ChunkScan} of the chunk
+	 */
+	private void examine(ChunkScan chunk) {
+		var snapshot = chunk.snapshot;
+		var chunkX = snapshot.getX() << 4;
+		var chunkZ = snapshot.getZ() << 4;
+
+		// placeholders are stale if their glass pane is back
+		for (var i = 0; i < chunk.placeholders.size(); i++) {
+			var position = chunk.placeholderPositions[i];
+			var y = BlockPosition.unpackY(position);
+			var intact = y >= minHeight && y < maxHeight
+				&& GlassPanes.indexOf(snapshot.getBlockType(BlockPosition.unpackX(position) - chunkX, y, BlockPosition.unpackZ(position) - chunkZ)) >= 0;
+			(intact ? chunk.stalePlaceholders : chunk.brokenPlaceholders).add(chunk.placeholders.get(i));
+		}
+	}
+
+	/**
+	 * Merges the findings of all chunks and hands them to the {@link Callback}.
+	 *
+	 * @param chunks the examined chunks
+	 * @param start  the time at which the recovery started as returned by {@link System#nanoTime()}
+	 */
+	private void finish(List<ChunkScan> chunks, long start) {
+		var stalePlaceholders = new ArrayList<ArmorStand>();
+		var brokenPlaceholders = new ArrayList<ArmorStand>();
+		for (var chunk : chunks) {
+			stalePlaceholders.addAll(chunk.stalePlaceholders);
+			brokenPlaceholders.addAll(chunk.brokenPlaceholders);
+		}
+
+		callback.recovered(new Result(stalePlaceholders, brokenPlaceholders));
+		var millis = (System.nanoTime() - start) / 1_000_000;
+		stickfight.getLogger().info("Recovered glass panes in " + world.getName() + " in " + millis + " ms: "
+			+ brokenPlaceholders.size() + " placeholders, " + stalePlaceholders.size() + " stale placeholders");
+	}
+
+	/**
+	 * Combines the coordinates of a chunk into a single key.
+	 *
+	 * @param chunkX the x coordinate of the chunk
+	 * @param chunkZ the z coordinate of the chunk
+	 * @return the key
+	 */
+	private long getKey(int chunkX, int chunkZ) {
+		return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Logs the progress of the recovery whenever another tenth of the chunks has been examined.
+	 *
+	 * @param done  the number of examined chunks
+	 * @param total the total number of chunks
+	 */
+	private void reportProgress(int done, int total) {
+		var step = done * PROGRESS_STEPS / total;
+		if (step > (done - 1) * PROGRESS_STEPS / total && done < total) {
+			stickfight.getLogger().info("Recovering glass panes in " + world.getName() + ": " + done + "/" + total + " chunks");
+		}
+	}
+
+	/**
+	 * Receives the {@link Result} of a {@link PaneRecovery}.
+	 */
+	@FunctionalInterface
+	public interface Callback {
+		/**
+		 * Called on the main thread once all chunks have been examined.
+		 *
+		 * @param result the {@link Result}
+		 */
+		void recovered(Result result);
+	}
+
+	/**
+	 * The findings of a {@link PaneRecovery}.
+	 *
+	 * @param stalePlaceholders  the placeholders whose glass pane has already been restored
+	 * @param brokenPlaceholders the placeholders whose glass pane is still broken
+	 */
+	public record Result(List<ArmorStand> stalePlaceholders, List<ArmorStand> brokenPlaceholders) {
+	}
+
+	/**
+	 * The {@link ChunkSnapshot} and the placeholders of a chunk, together with what has been found in it.
+	 */
+	private static final class ChunkScan {
+		private final List<ArmorStand> brokenPlaceholders = new ArrayList<>();
+		private final long[] placeholderPositions;
+		private final List<ArmorStand> placeholders;
+		private final ChunkSnapshot snapshot;
+		private final List<ArmorStand> stalePlaceholders = new ArrayList<>();
+
+		/**
+		 * Creates a new {@link ChunkScan}.
+		 *
+		 * @param snapshot     the {@link ChunkSnapshot} of the chunk
+		 * @param placeholders the placeholders in the chunk
+		 */
+		private ChunkScan(ChunkSnapshot snapshot, List<ArmorStand> placeholders) {
+			this.snapshot = snapshot;
+			this.placeholders = placeholders;
+
+			// entities must not be accessed from the worker threads
+			placeholderPositions = new long[placeholders.size()];
+			for (var i = 0; i < placeholderPositions.length; i++) {
+				var location = placeholders.get(i).getLocation();
+				placeholderPositions[i] = BlockPosition.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+			}
+		}
+	}
+}
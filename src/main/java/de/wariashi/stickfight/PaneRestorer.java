@@ -0,0 +1,239 @@
+package de.wariashi.stickfight;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.MultipleFacing;
+
+/**
+ * Places glass panes that are due to be restored, spread across ticks within a time budget.
+ * <p>
+ * Glass panes are restored in batches. The connections of every glass pane are computed in memory before it is placed,
+ * taking into account the other glass panes of the same batch, and each glass pane is placed exactly once without
+ * triggering physics. Adjacent glass panes that already exist are connected to the restored ones afterwards,
+ * each of them is updated once per batch no matter how many of its neighbors were restored. Neighbors in chunks that
+ * are not loaded are ignored, so a restoration never loads a chunk.
+ * <p>
+ * The restorer is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class PaneRestorer {
+	private static final int BATCH_SIZE = 32;
+	private static final BlockFace[] FACES = { BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST };
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final long[] batch = new long[BATCH_SIZE];
+	private final Callback callback;
+	private int head;
+	private Material[] materials = new Material[INITIAL_CAPACITY];
+	private int neighborCount;
+	private final int[] neighborFaces = new int[BATCH_SIZE * FACES.length];
+	private final long[] neighborPositions = new long[BATCH_SIZE * FACES.length];
+	private long[] positions = new long[INITIAL_CAPACITY];
+	private int size;
+	private final World world;
+
+	/**
+	 * Creates a new {@link PaneRestorer}.
+	 *
+	 * @param world    the {@link World} in which glass panes are restored
+	 * @param callback the {@link Callback} that is called for every restored glass pane
+	 */
+	public PaneRestorer(World world, Callback callback) {
+		this.callback = callback;
+		this.world = world;
+	}
+
+	/**
+	 * Queues a glass pane for restoration.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 */
+	public void add(long position, Material material) {
+		if (size == positions.length) {
+			grow();
+		}
+		var index = (head + size) % positions.length;
+		positions[index] = position;
+		materials[index] = material;
+		size++;
+	}
+
+	/**
+	 * Restores queued glass panes until the queue is empty or the time budget is used up.
+	 * At least one batch is restored per call, so the queue always makes progress.
+	 *
+	 * @param budget the time budget in nanoseconds
+	 */
+	public void run(long budget) {
+		var start = System.nanoTime();
+		while (size > 0) {
+			restoreBatch();
+			if (System.nanoTime() - start >= budget) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Restores all queued glass panes, regardless of how long it takes.
+	 */
+	public void runAll() {
+		while (size > 0) {
+			restoreBatch();
+		}
+	}
+
+	/**
+	 * @return the number of queued glass panes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a face to a neighbor that has to be connected to a restored glass pane.
+	 * Neighbors that are adjacent to several restored glass panes are only stored once.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the neighbor
+	 * @param face     the index of the face within {@link PaneRestorer#FACES} that points to the restored glass pane
+	 */
+	private void addNeighborFace(long position, int face) {
+		for (var i = 0; i < neighborCount; i++) {
+			if (neighborPositions[i] == position) {
+				neighborFaces[i] |= 1 << face;
+				return;
+			}
+		}
+		neighborPositions[neighborCount] = position;
+		neighborFaces[neighborCount] = 1 << face;
+		neighborCount++;
+	}
+
+	/**
+	 * Connects an existing glass pane to the restored glass panes next to it.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param faces    a bit set of the indices of the faces within {@link PaneRestorer#FACES} that should be connected
+	 */
+	private void connectNeighbor(long position, int faces) {
+		var block = world.getBlockAt(BlockPosition.unpackX(position), BlockPosition.unpackY(position), BlockPosition.unpackZ(position));
+		var blockData = block.getBlockData();
+		if (blockData instanceof MultipleFacing multipleFacing) {
+			for (var face = 0; face < FACES.length; face++) {
+				if ((faces & 1 << face) != 0) {
+					multipleFacing.setFace(FACES[face], true);
+				}
+			}
+			block.setBlockData(multipleFacing, false);
+		}
+	}
+
+	/**
+	 * Doubles the capacity of the queue.
+	 */
+	private void grow() {
+		var capacity = positions.length * 2;
+		var grownMaterials = new Material[capacity];
+		var grownPositions = new long[capacity];
+		for (var i = 0; i < size; i++) {
+			var index = (head + i) % positions.length;
+			grownMaterials[i] = materials[index];
+			grownPositions[i] = positions[index];
+		}
+		materials = grownMaterials;
+		positions = grownPositions;
+		head = 0;
+	}
+
+	/**
+	 * Checks whether a position belongs to the current batch.
+	 *
+	 * @param position  the {@link BlockPosition packed position} to check
+	 * @param batchSize the number of glass panes in the current batch
+	 * @return <code>true</code> if the position belongs to the current batch, <code>false</code> otherwise
+	 */
+	private boolean isInBatch(long position, int batchSize) {
+		for (var i = 0; i < batchSize; i++) {
+			if (batch[i] == position) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a {@link Material} is a glass pane or another block that connects to glass panes like them.
+	 *
+	 * @param material the {@link Material} to check
+	 * @return <code>true</code> if the {@link Material} connects to glass panes, <code>false</code> otherwise
+	 */
+	private boolean isPaneLike(Material material) {
+		return material == Material.IRON_BARS || GlassPanes.indexOf(material) >= 0;
+	}
+
+	/**
+	 * Takes the next batch from the queue, places its glass panes with their final connections
+	 * and connects the existing neighbors to them.
+	 */
+	private void restoreBatch() {
+		var batchSize = Math.min(size, BATCH_SIZE);
+		var batchHead = head;
+		for (var i = 0; i < batchSize; i++) {
+			batch[i] = positions[(batchHead + i) % positions.length];
+		}
+
+		neighborCount = 0;
+		for (var i = 0; i < batchSize; i++) {
+			var index = (batchHead + i) % positions.length;
+			var position = positions[index];
+			var material = materials[index];
+			materials[index] = null;
+
+			var x = BlockPosition.unpackX(position);
+			var y = BlockPosition.unpackY(position);
+			var z = BlockPosition.unpackZ(position);
+			var blockData = material.createBlockData();
+			if (blockData instanceof MultipleFacing multipleFacing) {
+				for (var face = 0; face < FACES.length; face++) {
+					var neighborX = x + FACES[face].getModX();
+					var neighborZ = z + FACES[face].getModZ();
+					var neighborPosition = BlockPosition.pack(neighborX, y, neighborZ);
+					if (isInBatch(neighborPosition, batchSize)) {
+						multipleFacing.setFace(FACES[face], true);
+					} else if (world.isChunkLoaded(neighborX >> 4, neighborZ >> 4)) {
+						var neighborMaterial = world.getBlockAt(neighborX, y, neighborZ).getType();
+						if (neighborMaterial.isSolid()) {
+							multipleFacing.setFace(FACES[face], true);
+						}
+						if (isPaneLike(neighborMaterial)) {
+							addNeighborFace(neighborPosition, (face + 2) % FACES.length);
+						}
+					}
+				}
+			}
+			world.getBlockAt(x, y, z).setBlockData(blockData, false);
+			callback.restored(position, material);
+		}
+		head = (batchHead + batchSize) % positions.length;
+		size -= batchSize;
+
+		for (var i = 0; i < neighborCount; i++) {
+			connectNeighbor(neighborPositions[i], neighborFaces[i]);
+		}
+	}
+
+	/**
+	 * Is called by a {@link PaneRestorer} for every glass pane that has been restored.
+	 */
+	@FunctionalInterface
+	public interface Callback {
+		/**
+		 * Called after a glass pane has been placed.
+		 *
+		 * @param position the {@link BlockPosition packed position} of the glass pane
+		 * @param material the {@link Material} of the glass pane
+		 */
+		void restored(long position, Material material);
+	}
+}
@@ -0,0 +1,260 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * The {@link PlayerRegistry} gives every online {@link Player} a dense slot number, so that services can keep their
+ * per-player state in primitive arrays instead of maps keyed by names or {@link java.util.UUID UUIDs}.
+ * <p>
+ * A slot is assigned before any other plugin sees the {@link PlayerJoinEvent} and released after all other plugins have
+ * handled the {@link PlayerQuitEvent}, so the slot of a {@link Player} is valid in every event handler in between.
+ * Released slots are reused, always starting with the lowest free slot, so the arrays of the services stay small.
+ * Services must reset the state of a slot when its {@link Player} quits.
+ * <p>
+ * Slots are looked up by entity id in an open addressing hash table, so a lookup neither allocates nor hashes strings.
+ * The registry is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class PlayerRegistry implements Listener {
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] entityIds = new int[INITIAL_CAPACITY * 2];
+	private int mask = INITIAL_CAPACITY * 2 - 1;
+	private Player[] players = new Player[INITIAL_CAPACITY];
+	private boolean running = false;
+	private int size;
+	private int slotCount;
+	private int[] slots = new int[INITIAL_CAPACITY * 2];
+	private final Stickfight stickfight;
+	private long[] used = new long[INITIAL_CAPACITY / 64];
+
+	/**
+	 * Creates a new {@link PlayerRegistry}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public PlayerRegistry(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		Arrays.fill(slots, EMPTY);
+	}
+
+	/**
+	 * Returns the {@link Player} that a slot is assigned to.
+	 *
+	 * @param slot the slot
+	 * @return the {@link Player} or <code>null</code> if the slot is free
+	 */
+	public Player getPlayer(int slot) {
+		return slot >= 0 && slot < players.length ? players[slot] : null;
+	}
+
+	/**
+	 * Returns the slot of a {@link Player}.
+	 *
+	 * @param player the {@link Player}
+	 * @return the slot or <code>-1</code> if the {@link Player} is not online
+	 */
+	public int getSlot(Player player) {
+		var entityId = player.getEntityId();
+		for (var index = hash(entityId); slots[index] != EMPTY; index = index + 1 & mask) {
+			if (entityIds[index] == entityId) {
+				return slots[index];
+			}
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the number of slots that may be assigned, i.e. one more than the highest assigned slot.
+	 * Per-player arrays of this length can hold the state of every online {@link Player}.
+	 *
+	 * @return the number of slots
+	 */
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * Assigns a slot to a {@link Player} that joins the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} joins the server
+	 */
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		register(event.getPlayer());
+	}
+
+	/**
+	 * Releases the slot of a {@link Player} that leaves the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} leaves the server
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		unregister(event.getPlayer());
+	}
+
+	/**
+	 * @return the number of {@link Player players} that have a slot
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Starts the service if it has not already been started and assigns slots to all online {@link Player players}.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
+			var onlinePlayers = Bukkit.getOnlinePlayers().toArray(new Player[0]);
+			for (var player : onlinePlayers) {
+				register(player);
+			}
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by unregistering it as a {@link Listener} and releasing all slots.
+	 */
+	public void stop() {
+		HandlerList.unregisterAll(this);
+		Arrays.fill(players, null);
+		Arrays.fill(slots, EMPTY);
+		Arrays.fill(used, 0);
+		size = 0;
+		slotCount = 0;
+		running = false;
+	}
+
+	/**
+	 * Finds the lowest free slot and marks it as used.
+	 *
+	 * @return the slot
+	 */
+	private int allocate() {
+		for (var word = 0; word < used.length; word++) {
+			if (used[word] != -1L) {
+				var slot = word << 6 | Long.numberOfTrailingZeros(~used[word]);
+				used[word] |= 1L << slot;
+				return slot;
+			}
+		}
+		var slot = used.length << 6;
+		used = Arrays.copyOf(used, used.length * 2);
+		players = Arrays.copyOf(players, used.length << 6);
+		used[slot >> 6] |= 1L;
+		return slot;
+	}
+
+	/**
+	 * Doubles the size of the hash table.
+	 */
+	private void growTable() {
+		var oldEntityIds = entityIds;
+		var oldSlots = slots;
+		entityIds = new int[oldEntityIds.length * 2];
+		slots = new int[oldSlots.length * 2];
+		mask = slots.length - 1;
+		Arrays.fill(slots, EMPTY);
+		for (var i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] != EMPTY) {
+				insert(oldEntityIds[i], oldSlots[i]);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the preferred index of an entity id in the hash table.
+	 *
+	 * @param entityId the entity id
+	 * @return the index
+	 */
+	private int hash(int entityId) {
+		return entityId * 0x9E3779B9 >>> 16 & mask;
+	}
+
+	/**
+	 * Inserts an entity id into the hash table, which must not contain it yet.
+	 *
+	 * @param entityId the entity id
+	 * @param slot     the slot of the entity
+	 */
+	private void insert(int entityId, int slot) {
+		var index = hash(entityId);
+		while (slots[index] != EMPTY) {
+			index = index + 1 & mask;
+		}
+		entityIds[index] = entityId;
+		slots[index] = slot;
+	}
+
+	/**
+	 * Assigns a slot to a {@link Player} if it does not have one yet.
+	 *
+	 * @param player the {@link Player}
+	 */
+	private void register(Player player) {
+		if (getSlot(player) != EMPTY) {
+			return;
+		}
+		if ((size + 1) * 2 > slots.length) {
+			growTable();
+		}
+
+		var slot = allocate();
+		players[slot] = player;
+		insert(player.getEntityId(), slot);
+		size++;
+		slotCount = Math.max(slotCount, slot + 1);
+	}
+
+	/**
+	 * Releases the slot of a {@link Player}.
+	 * Entries that follow the removed entry in the hash table are shifted back, so that lookups never need tombstones.
+	 *
+	 * @param player the {@link Player}
+	 */
+	private void unregister(Player player) {
+		var entityId = player.getEntityId();
+		var index = hash(entityId);
+		while (slots[index] != EMPTY && entityIds[index] != entityId) {
+			index = index + 1 & mask;
+		}
+		if (slots[index] == EMPTY) {
+			return;
+		}
+
+		var slot = slots[index];
+		players[slot] = null;
+		used[slot >> 6] &= ~(1L << slot);
+		size--;
+		while (slotCount > 0 && players[slotCount - 1] == null) {
+			slotCount--;
+		}
+
+		// backward shift deletion
+		var free = index;
+		for (var next = free + 1 & mask; slots[next] != EMPTY; next = next + 1 & mask) {
+			var preferred = hash(entityIds[next]);
+			if ((next - preferred & mask) >= (next - free & mask)) {
+				entityIds[free] = entityIds[next];
+				slots[free] = slots[next];
+				free = next;
+			}
+		}
+		slots[free] = EMPTY;
+	}
+}
@@ -0,0 +1,108 @@
+package de.wariashi.stickfight;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link QualityController} lowers the {@link QualityLevel} of the plugin while the server cannot keep up with
+ * 20 ticks per second and raises it again once the server has recovered.
+ * <p>
+ * Once per second, the controller compares the {@link TickScheduler#getAverageTickDuration() average tick duration}
+ * with two thresholds. The level is only lowered after the server has been too slow for several checks in a row and
+ * only raised after it has been fast enough for even longer, so the level does not flap when the tick duration is
+ * close to a threshold. The level changes by one step at a time and every change is logged.
+ */
+public class QualityController {
+	private static final int CHECK_INTERVAL = 20; // ticks
+	private static final int DEGRADE_CHECKS = 3;
+	private static final double DEGRADE_THRESHOLD = 55; // milliseconds
+	private static final int RECOVER_CHECKS = 15;
+	private static final double RECOVER_THRESHOLD = 50.5; // milliseconds
+
+	private final LongAdder changes;
+	private int fastChecks;
+	private volatile QualityLevel level = QualityLevel.FULL;
+	private boolean running = false;
+	private int slowChecks;
+	private final Stickfight stickfight;
+	private TickScheduler.ScheduledTask task;
+
+	/**
+	 * Creates a new {@link QualityController}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public QualityController(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		var metrics = stickfight.getMetrics();
+		changes = metrics.counter("stickfight_quality_level_changes_total", "Changes of the quality level due to the load of the server.");
+		metrics.gauge("stickfight_quality_level", "The current quality level, 0 is full detail.", () -> level.ordinal());
+	}
+
+	/**
+	 * @return the current {@link QualityLevel}
+	 */
+	public QualityLevel getLevel() {
+		return level;
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var tickScheduler = stickfight.getTickScheduler();
+			task = tickScheduler.schedule("QualityController.check", TickScheduler.Priority.CRITICAL, CHECK_INTERVAL, this::check);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by canceling its task and going back to {@link QualityLevel#FULL full detail}.
+	 */
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+		}
+		level = QualityLevel.FULL;
+		slowChecks = 0;
+		fastChecks = 0;
+		running = false;
+	}
+
+	/**
+	 * Compares the average tick duration with the thresholds and changes the level if necessary.
+	 */
+	private void check() {
+		if (!stickfight.getConfiguration().isAdaptiveQuality()) {
+			if (level != QualityLevel.FULL) {
+				setLevel(QualityLevel.FULL, 0);
+			}
+			return;
+		}
+
+		var duration = stickfight.getTickScheduler().getAverageTickDuration();
+		slowChecks = duration > DEGRADE_THRESHOLD ? slowChecks + 1 : 0;
+		fastChecks = duration < RECOVER_THRESHOLD ? fastChecks + 1 : 0;
+
+		var levels = QualityLevel.values();
+		if (slowChecks >= DEGRADE_CHECKS && level.ordinal() < levels.length - 1) {
+			setLevel(levels[level.ordinal() + 1], duration);
+		} else if (fastChecks >= RECOVER_CHECKS && level.ordinal() > 0) {
+			setLevel(levels[level.ordinal() - 1], duration);
+		}
+	}
+
+	/**
+	 * Changes the level and restarts the hysteresis.
+	 *
+	 * @param newLevel the new {@link QualityLevel}
+	 * @param duration the average tick duration that caused the change in milliseconds
+	 */
+	private void setLevel(QualityLevel newLevel, double duration) {
+		stickfight.getLogger().info(String.format("Quality level changed from %s to %s (average tick duration %.1f ms)", level, newLevel, duration));
+		level = newLevel;
+		slowChecks = 0;
+		fastChecks = 0;
+		changes.increment();
+	}
+}
@@ -0,0 +1,85 @@
+package de.wariashi.stickfight;
+
+/**
+ * The levels of detail that the plugin can run at, from full detail to the bare minimum.
+ * The {@link QualityController} switches between them depending on the load of the server.
+ */
+public enum QualityLevel {
+	/**
+	 * Everything is shown and checked as often as possible.
+	 */
+	FULL(1.0, 1.0, 1, Integer.MAX_VALUE),
+
+	/**
+	 * Fewer particles, sounds only within three quarters of the effect radius and stick checks every other tick.
+	 */
+	REDUCED(0.5, 0.75, 2, 256),
+
+	/**
+	 * A quarter of the particles, sounds only within half of the effect radius and stick checks every five ticks.
+	 */
+	LOW(0.25, 0.5, 5, 64),
+
+	/**
+	 * Hardly any particles, sounds only to players right next to them and stick checks twice per second.
+	 */
+	MINIMAL(0.1, 0.25, 10, 16);
+
+	private final int paneBreaksPerTick;
+	private final double particleFactor;
+	private final double soundRadiusFactor;
+	private final int stickCheckInterval;
+
+	/**
+	 * Creates a new {@link QualityLevel}.
+	 *
+	 * @param particleFactor     the factor by which the number of particles is multiplied
+	 * @param soundRadiusFactor  the factor by which the effect radius is multiplied for sounds
+	 * @param stickCheckInterval the number of ticks between two checks of the inventories of dirty players
+	 * @param paneBreaksPerTick  the maximum number of glass panes that may break per tick and world
+	 */
+	QualityLevel(double particleFactor, double soundRadiusFactor, int stickCheckInterval, int paneBreaksPerTick) {
+		this.particleFactor = particleFactor;
+		this.soundRadiusFactor = soundRadiusFactor;
+		this.stickCheckInterval = stickCheckInterval;
+		this.paneBreaksPerTick = paneBreaksPerTick;
+	}
+
+	/**
+	 * @return the maximum number of glass panes that may break per tick and world
+	 */
+	public int getPaneBreaksPerTick() {
+		return paneBreaksPerTick;
+	}
+
+	/**
+	 * @return the factor by which the number of particles is multiplied
+	 */
+	public double getParticleFactor() {
+		return particleFactor;
+	}
+
+	/**
+	 * @return the factor by which the {@link ConfigurationSnapshot#effectRadius() effect radius} is multiplied for sounds
+	 */
+	public double getSoundRadiusFactor() {
+		return soundRadiusFactor;
+	}
+
+	/**
+	 * @return the number of ticks between two checks of the inventories of dirty players
+	 */
+	public int getStickCheckInterval() {
+		return stickCheckInterval;
+	}
+
+	/**
+	 * Scales a number of particles, keeping at least one particle.
+	 *
+	 * @param count the number of particles at full detail
+	 * @return the number of particles at this level
+	 */
+	public int scaleParticles(int count) {
+		return count <= 0 ? 0 : Math.max(1, (int) Math.round(count * particleFactor));
+	}
+}
@@ -0,0 +1,210 @@
+package de.wariashi.stickfight;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary format of replays that are written by the {@link ReplayRecorder} and read by the {@link ReplayReader}.
+ * <p>
+ * A replay starts with {@link #MAGIC}, the time at which the recording started in milliseconds since the epoch and the
+ * names of the glass pane materials in the order of their {@link GlassPanes indices}. The records follow, each one
+ * starting with its type. Numbers are stored as variable length integers with seven bits per byte, signed numbers are
+ * zigzag encoded first, so that small deltas take a single byte. Strings are stored as their length followed by their
+ * UTF-8 bytes. Coordinates are stored in fixed point with {@link #POSITION_SCALE} steps per block, angles in
+ * {@link #ANGLE_STEPS} steps per full turn.
+ * <p>
+ * <ul>
+ * <li>{@link #RECORD_SYNC}: the absolute tick, all players, worlds and positions that are known so far are forgotten</li>
+ * <li>{@link #RECORD_FRAME}: the number of ticks since the previous frame or sync, the following records happen in that tick</li>
+ * <li>{@link #RECORD_WORLD}: the id and the name of a world</li>
+ * <li>{@link #RECORD_ENTER}: the slot, the UUID, the name, the world id, the absolute position and the look angles of a
+ * player that entered the play area</li>
+ * <li>{@link #RECORD_MOVE}: the slot, the position relative to the previous position and the look angles of a player</li>
+ * <li>{@link #RECORD_LEAVE}: the slot of a player that left the play area or the server</li>
+ * <li>{@link #RECORD_HIT}: the slots of the attacker and of the victim</li>
+ * <li>{@link #RECORD_BREAK}: the world id, the block coordinates and the glass pane index of a glass pane that broke</li>
+ * <li>{@link #RECORD_RESTORE}: the world id and the block coordinates of a glass pane that has been restored</li>
+ * <li>{@link #RECORD_DEATH}: the slot of a player that died in the kill layer</li>
+ * </ul>
+ * The writer may drop records if it falls behind. In that case, the next records start with a sync, so that the replay
+ * can be read on from there.
+ */
+public final class ReplayFormat {
+	/**
+	 * The number of steps per full turn in which look angles are stored.
+	 */
+	public static final int ANGLE_STEPS = 256;
+
+	/**
+	 * The magic number at the start of every replay.
+	 */
+	public static final int MAGIC = 0x53465231; // "SFR1"
+
+	/**
+	 * The highest number of bytes of a variable length integer.
+	 */
+	public static final int MAX_VARINT_SIZE = 10;
+
+	/**
+	 * The number of steps per block in which positions of players are stored.
+	 */
+	public static final int POSITION_SCALE = 32;
+
+	/**
+	 * The record type of a glass pane that broke.
+	 */
+	public static final byte RECORD_BREAK = 7;
+
+	/**
+	 * The record type of a player that died in the kill layer.
+	 */
+	public static final byte RECORD_DEATH = 9;
+
+	/**
+	 * The record type of a player that entered the play area.
+	 */
+	public static final byte RECORD_ENTER = 3;
+
+	/**
+	 * The record type of the start of a tick.
+	 */
+	public static final byte RECORD_FRAME = 1;
+
+	/**
+	 * The record type of a hit of a player on another player.
+	 */
+	public static final byte RECORD_HIT = 6;
+
+	/**
+	 * The record type of a player that left the play area.
+	 */
+	public static final byte RECORD_LEAVE = 5;
+
+	/**
+	 * The record type of a player that moved or looked around.
+	 */
+	public static final byte RECORD_MOVE = 4;
+
+	/**
+	 * The record type of a glass pane that has been restored.
+	 */
+	public static final byte RECORD_RESTORE = 8;
+
+	/**
+	 * The record type of a point from which the replay can be read without knowing the previous records.
+	 */
+	public static final byte RECORD_SYNC = 0;
+
+	/**
+	 * The record type of a world that is referred to by its id.
+	 */
+	public static final byte RECORD_WORLD = 2;
+
+	private ReplayFormat() {
+	}
+
+	/**
+	 * Encodes a look angle.
+	 *
+	 * @param degrees the angle in degrees
+	 * @return the encoded angle
+	 */
+	public static byte encodeAngle(float degrees) {
+		return (byte) Math.round(degrees * ANGLE_STEPS / 360f);
+	}
+
+	/**
+	 * Encodes a coordinate of a player.
+	 *
+	 * @param coordinate the coordinate in blocks
+	 * @return the fixed point coordinate
+	 */
+	public static long encodePosition(double coordinate) {
+		return Math.round(coordinate * POSITION_SCALE);
+	}
+
+	/**
+	 * Writes a signed variable length integer.
+	 *
+	 * @param buffer the {@link ByteBuffer} to write to
+	 * @param value  the value
+	 */
+	public static void putSignedVarLong(ByteBuffer buffer, long value) {
+		putVarLong(buffer, value << 1 ^ value >> 63);
+	}
+
+	/**
+	 * Writes a string.
+	 *
+	 * @param buffer the {@link ByteBuffer} to write to
+	 * @param bytes  the UTF-8 bytes of the string
+	 */
+	public static void putString(ByteBuffer buffer, byte[] bytes) {
+		putVarLong(buffer, bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Writes an unsigned variable length integer.
+	 *
+	 * @param buffer the {@link ByteBuffer} to write to
+	 * @param value  the value
+	 */
+	public static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Reads a signed variable length integer.
+	 *
+	 * @param input the {@link DataInput} to read from
+	 * @return the value
+	 * @throws IOException if the input cannot be read
+	 */
+	public static long readSignedVarLong(DataInput input) throws IOException {
+		var value = readVarLong(input);
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	/**
+	 * Reads a string.
+	 *
+	 * @param input the {@link DataInput} to read from
+	 * @return the string
+	 * @throws IOException if the input cannot be read
+	 */
+	public static String readString(DataInput input) throws IOException {
+		var length = readVarLong(input);
+		if (length > Short.MAX_VALUE) {
+			throw new IOException("String too long: " + length);
+		}
+		var bytes = new byte[(int) length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 *
+	 * @param input the {@link DataInput} to read from
+	 * @return the value
+	 * @throws IOException if the input cannot be read
+	 */
+	public static long readVarLong(DataInput input) throws IOException {
+		var value = 0L;
+		for (var shift = 0; shift < 64; shift += 7) {
+			var b = input.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+}
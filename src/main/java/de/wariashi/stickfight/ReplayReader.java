@@ -0,0 +1,522 @@
+package de.wariashi.stickfight;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads replays that have been written by the {@link ReplayRecorder}, see {@link ReplayFormat}.
+ * <p>
+ * The reader decodes the delta-encoded records and hands them to a {@link Visitor} with absolute positions. It does not
+ * depend on the server, so replays can be inspected offline with the plugin jar on the class path:
+ *
+ * <pre>
+ * java -cp stickfight.jar de.wariashi.stickfight.ReplayReader summary &lt;file&gt;
+ * java -cp stickfight.jar de.wariashi.stickfight.ReplayReader export &lt;file&gt; &gt; replay.csv
+ * </pre>
+ *
+ * A replay that ends with an incomplete record, e.g. because the server crashed, is read up to that record.
+ */
+public class ReplayReader {
+	private final DataInputStream input;
+	private final String[] materials;
+	private final long startTime;
+
+	/**
+	 * Creates a new {@link ReplayReader} and reads the header of the replay.
+	 *
+	 * @param input the {@link InputStream} of the replay, which is closed after the replay has been {@link #read(Visitor) read}
+	 * @throws IOException if the header cannot be read or the input is no replay
+	 */
+	public ReplayReader(InputStream input) throws IOException {
+		this.input = new DataInputStream(new BufferedInputStream(input));
+		if (this.input.readInt() != ReplayFormat.MAGIC) {
+			throw new IOException("Unknown file format");
+		}
+		startTime = this.input.readLong();
+		materials = new String[this.input.readUnsignedByte()];
+		for (var i = 0; i < materials.length; i++) {
+			materials[i] = ReplayFormat.readString(this.input);
+		}
+	}
+
+	/**
+	 * Prints a summary of a replay or exports its records as CSV.
+	 *
+	 * @param args the command, <code>summary</code> or <code>export</code>, and the path of the replay
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2 || !args[0].equals("summary") && !args[0].equals("export")) {
+			System.err.println("Usage: java -cp stickfight.jar " + ReplayReader.class.getName() + " <summary|export> <file>");
+			System.exit(2);
+			return;
+		}
+
+		try (var stream = new FileInputStream(args[1])) {
+			var reader = new ReplayReader(stream);
+			if (args[0].equals("summary")) {
+				var summary = new Summary();
+				reader.read(summary);
+				summary.print(System.out, reader.getStartTime());
+			} else {
+				reader.read(new Export(System.out));
+			}
+		} catch (IOException e) {
+			System.err.println("Could not read the replay " + args[1] + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the time at which the recording started in milliseconds since the epoch
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Reads all records and hands them to a {@link Visitor}.
+	 *
+	 * @param visitor the {@link Visitor}
+	 * @throws IOException if the replay cannot be read or is malformed
+	 */
+	public void read(Visitor visitor) throws IOException {
+		var participants = new HashMap<Integer, Participant>();
+		var worlds = new HashMap<Integer, String>();
+		var tick = 0L;
+		try (input) {
+			while (true) {
+				var type = input.readByte();
+				switch (type) {
+					case ReplayFormat.RECORD_SYNC -> {
+						tick = ReplayFormat.readVarLong(input);
+						participants.clear();
+						worlds.clear();
+						visitor.onSync(tick);
+					}
+					case ReplayFormat.RECORD_FRAME -> tick += ReplayFormat.readVarLong(input);
+					case ReplayFormat.RECORD_WORLD -> {
+						var id = (int) ReplayFormat.readVarLong(input);
+						worlds.put(id, ReplayFormat.readString(input));
+					}
+					case ReplayFormat.RECORD_ENTER -> {
+						var slot = (int) ReplayFormat.readVarLong(input);
+						var uuid = new UUID(input.readLong(), input.readLong());
+						var name = ReplayFormat.readString(input);
+						var world = worlds.getOrDefault((int) ReplayFormat.readVarLong(input), "?");
+						var participant = new Participant(slot, uuid, name, world);
+						participant.x = ReplayFormat.readSignedVarLong(input);
+						participant.y = ReplayFormat.readSignedVarLong(input);
+						participant.z = ReplayFormat.readSignedVarLong(input);
+						participant.yaw = input.readByte();
+						participant.pitch = input.readByte();
+						participants.put(slot, participant);
+						visitor.onEnter(tick, participant);
+					}
+					case ReplayFormat.RECORD_MOVE -> {
+						var participant = getParticipant(participants, (int) ReplayFormat.readVarLong(input));
+						participant.x += ReplayFormat.readSignedVarLong(input);
+						participant.y += ReplayFormat.readSignedVarLong(input);
+						participant.z += ReplayFormat.readSignedVarLong(input);
+						participant.yaw = input.readByte();
+						participant.pitch = input.readByte();
+						visitor.onMove(tick, participant);
+					}
+					case ReplayFormat.RECORD_LEAVE -> {
+						var slot = (int) ReplayFormat.readVarLong(input);
+						visitor.onLeave(tick, getParticipant(participants, slot));
+						participants.remove(slot);
+					}
+					case ReplayFormat.RECORD_HIT -> {
+						var attacker = getParticipant(participants, (int) ReplayFormat.readVarLong(input));
+						var victim = getParticipant(participants, (int) ReplayFormat.readVarLong(input));
+						visitor.onHit(tick, attacker, victim);
+					}
+					case ReplayFormat.RECORD_BREAK -> {
+						var world = worlds.getOrDefault((int) ReplayFormat.readVarLong(input), "?");
+						var x = (int) ReplayFormat.readSignedVarLong(input);
+						var y = (int) ReplayFormat.readSignedVarLong(input);
+						var z = (int) ReplayFormat.readSignedVarLong(input);
+						var index = input.readUnsignedByte();
+						visitor.onBreak(tick, world, x, y, z, index < materials.length ? materials[index] : "?");
+					}
+					case ReplayFormat.RECORD_RESTORE -> {
+						var world = worlds.getOrDefault((int) ReplayFormat.readVarLong(input), "?");
+						var x = (int) ReplayFormat.readSignedVarLong(input);
+						var y = (int) ReplayFormat.readSignedVarLong(input);
+						var z = (int) ReplayFormat.readSignedVarLong(input);
+						visitor.onRestore(tick, world, x, y, z);
+					}
+					case ReplayFormat.RECORD_DEATH -> visitor.onDeath(tick, getParticipant(participants, (int) ReplayFormat.readVarLong(input)));
+					default -> throw new IOException("Unknown record type " + type);
+				}
+			}
+		} catch (EOFException e) {
+			// end of replay, the last record may be incomplete if the server crashed while writing it
+		}
+	}
+
+	/**
+	 * Looks up the {@link Participant} in a slot.
+	 * Hits may involve players outside of the play area, which are represented by a {@link Participant} without a {@link UUID}.
+	 *
+	 * @param participants the {@link Participant participants} by slot
+	 * @param slot         the slot
+	 * @return the {@link Participant}
+	 */
+	private static Participant getParticipant(Map<Integer, Participant> participants, int slot) {
+		var participant = participants.get(slot);
+		return participant != null ? participant : new Participant(slot, null, "#" + slot, "?");
+	}
+
+	/**
+	 * A player that has been recorded, along with the last recorded position.
+	 * The player is identified by the slot until it leaves the play area.
+	 */
+	public static final class Participant {
+		private final String name;
+		private byte pitch;
+		private final int slot;
+		private final UUID uuid;
+		private final String world;
+		private long x;
+		private byte yaw;
+		private long y;
+		private long z;
+
+		/**
+		 * Creates a new {@link Participant}.
+		 *
+		 * @param slot  the slot of the player
+		 * @param uuid  the {@link UUID} of the player or <code>null</code> if the player has not entered the play area
+		 * @param name  the name of the player
+		 * @param world the name of the world of the player
+		 */
+		private Participant(int slot, UUID uuid, String name, String world) {
+			this.slot = slot;
+			this.uuid = uuid;
+			this.name = name;
+			this.world = world;
+		}
+
+		/**
+		 * @return the name of the player
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the pitch of the player in degrees
+		 */
+		public float getPitch() {
+			return pitch * 360f / ReplayFormat.ANGLE_STEPS;
+		}
+
+		/**
+		 * @return the slot of the player
+		 */
+		public int getSlot() {
+			return slot;
+		}
+
+		/**
+		 * @return the {@link UUID} of the player or <code>null</code> if the player has not entered the play area
+		 */
+		public UUID getUuid() {
+			return uuid;
+		}
+
+		/**
+		 * @return the name of the world of the player
+		 */
+		public String getWorld() {
+			return world;
+		}
+
+		/**
+		 * @return the x coordinate of the player
+		 */
+		public double getX() {
+			return (double) x / ReplayFormat.POSITION_SCALE;
+		}
+
+		/**
+		 * @return the y coordinate of the player
+		 */
+		public double getY() {
+			return (double) y / ReplayFormat.POSITION_SCALE;
+		}
+
+		/**
+		 * @return the yaw of the player in degrees
+		 */
+		public float getYaw() {
+			return yaw * 360f / ReplayFormat.ANGLE_STEPS;
+		}
+
+		/**
+		 * @return the z coordinate of the player
+		 */
+		public double getZ() {
+			return (double) z / ReplayFormat.POSITION_SCALE;
+		}
+	}
+
+	/**
+	 * Receives the decoded records of a replay. Ticks are counted from the start of the recording.
+	 */
+	public interface Visitor {
+		/**
+		 * Called when a glass pane has been broken.
+		 *
+		 * @param tick     the tick
+		 * @param world    the name of the world
+		 * @param x        the x coordinate of the glass pane
+		 * @param y        the y coordinate of the glass pane
+		 * @param z        the z coordinate of the glass pane
+		 * @param material the name of the material of the glass pane
+		 */
+		default void onBreak(long tick, String world, int x, int y, int z, String material) {
+		}
+
+		/**
+		 * Called when a player has died in the kill layer.
+		 *
+		 * @param tick        the tick
+		 * @param participant the player
+		 */
+		default void onDeath(long tick, Participant participant) {
+		}
+
+		/**
+		 * Called when a player has entered the play area.
+		 *
+		 * @param tick        the tick
+		 * @param participant the player
+		 */
+		default void onEnter(long tick, Participant participant) {
+		}
+
+		/**
+		 * Called when a player has hit another player.
+		 *
+		 * @param tick     the tick
+		 * @param attacker the player that hit
+		 * @param victim   the player that has been hit
+		 */
+		default void onHit(long tick, Participant attacker, Participant victim) {
+		}
+
+		/**
+		 * Called when a player has left the play area or the server.
+		 *
+		 * @param tick        the tick
+		 * @param participant the player
+		 */
+		default void onLeave(long tick, Participant participant) {
+		}
+
+		/**
+		 * Called when a player has moved or looked around.
+		 *
+		 * @param tick        the tick
+		 * @param participant the player with the new position
+		 */
+		default void onMove(long tick, Participant participant) {
+		}
+
+		/**
+		 * Called when a glass pane has been restored.
+		 *
+		 * @param tick  the tick
+		 * @param world the name of the world
+		 * @param x     the x coordinate of the glass pane
+		 * @param y     the y coordinate of the glass pane
+		 * @param z     the z coordinate of the glass pane
+		 */
+		default void onRestore(long tick, String world, int x, int y, int z) {
+		}
+
+		/**
+		 * Called at the start of the replay and after records have been dropped.
+		 * All players have left the play area at this point and enter it again in the same tick.
+		 *
+		 * @param tick the tick
+		 */
+		default void onSync(long tick) {
+		}
+	}
+
+	/**
+	 * Writes every record as a line of CSV.
+	 */
+	private static final class Export implements Visitor {
+		private final PrintStream out;
+
+		/**
+		 * Creates a new {@link Export} and writes the header line.
+		 *
+		 * @param out the {@link PrintStream} to write to
+		 */
+		private Export(PrintStream out) {
+			this.out = out;
+			out.println("tick,event,player,uuid,world,x,y,z,yaw,pitch,target,material");
+		}
+
+		@Override
+		public void onBreak(long tick, String world, int x, int y, int z, String material) {
+			out.println(tick + ",break,,," + world + "," + x + "," + y + "," + z + ",,,," + material);
+		}
+
+		@Override
+		public void onDeath(long tick, Participant participant) {
+			out.println(tick + ",death," + participant.getName() + "," + uuid(participant) + ",,,,,,,,");
+		}
+
+		@Override
+		public void onEnter(long tick, Participant participant) {
+			printPosition(tick, "enter", participant);
+		}
+
+		@Override
+		public void onHit(long tick, Participant attacker, Participant victim) {
+			out.println(tick + ",hit," + attacker.getName() + "," + uuid(attacker) + ",,,,,,," + victim.getName() + ",");
+		}
+
+		@Override
+		public void onLeave(long tick, Participant participant) {
+			out.println(tick + ",leave," + participant.getName() + "," + uuid(participant) + ",,,,,,,,");
+		}
+
+		@Override
+		public void onMove(long tick, Participant participant) {
+			printPosition(tick, "move", participant);
+		}
+
+		@Override
+		public void onRestore(long tick, String world, int x, int y, int z) {
+			out.println(tick + ",restore,,," + world + "," + x + "," + y + "," + z + ",,,,");
+		}
+
+		@Override
+		public void onSync(long tick) {
+			out.println(tick + ",sync,,,,,,,,,,");
+		}
+
+		/**
+		 * Writes a line with the position of a player.
+		 *
+		 * @param tick        the tick
+		 * @param event       the name of the event
+		 * @param participant the player
+		 */
+		private void printPosition(long tick, String event, Participant participant) {
+			out.println(String.format(Locale.ROOT, "%d,%s,%s,%s,%s,%.5f,%.5f,%.5f,%.1f,%.1f,,", tick, event, participant.getName(),
+				uuid(participant), participant.getWorld(), participant.getX(), participant.getY(), participant.getZ(),
+				participant.getYaw(), participant.getPitch()));
+		}
+
+		/**
+		 * @param participant the player
+		 * @return the {@link UUID} of the player or an empty string if it is unknown
+		 */
+		private static String uuid(Participant participant) {
+			return participant.getUuid() != null ? participant.getUuid().toString() : "";
+		}
+	}
+
+	/**
+	 * Counts the events of a replay per player.
+	 */
+	private static final class Summary implements Visitor {
+		private long breaks;
+		private long gaps = -1; // the first sync starts the replay
+		private long lastTick;
+		private final Map<String, long[]> players = new LinkedHashMap<>(); // hits, times hit, deaths
+		private long restores;
+
+		@Override
+		public void onBreak(long tick, String world, int x, int y, int z, String material) {
+			breaks++;
+			lastTick = tick;
+		}
+
+		@Override
+		public void onDeath(long tick, Participant participant) {
+			get(participant)[2]++;
+			lastTick = tick;
+		}
+
+		@Override
+		public void onEnter(long tick, Participant participant) {
+			get(participant);
+			lastTick = tick;
+		}
+
+		@Override
+		public void onHit(long tick, Participant attacker, Participant victim) {
+			get(attacker)[0]++;
+			get(victim)[1]++;
+			lastTick = tick;
+		}
+
+		@Override
+		public void onLeave(long tick, Participant participant) {
+			lastTick = tick;
+		}
+
+		@Override
+		public void onMove(long tick, Participant participant) {
+			lastTick = tick;
+		}
+
+		@Override
+		public void onRestore(long tick, String world, int x, int y, int z) {
+			restores++;
+			lastTick = tick;
+		}
+
+		@Override
+		public void onSync(long tick) {
+			gaps++;
+			lastTick = tick;
+		}
+
+		/**
+		 * Prints the summary.
+		 *
+		 * @param out       the {@link PrintStream} to print to
+		 * @param startTime the time at which the recording started in milliseconds since the epoch
+		 */
+		private void print(PrintStream out, long startTime) {
+			out.println("Started:   " + Instant.ofEpochMilli(startTime));
+			out.println("Duration:  " + lastTick + " ticks (" + lastTick / 20 + " s)");
+			out.println("Gaps:      " + gaps);
+			out.println("Panes:     " + breaks + " broken, " + restores + " restored");
+			out.println("Players:   " + players.size());
+			for (var entry : players.entrySet()) {
+				var counts = entry.getValue();
+				out.println("  " + entry.getKey() + ": " + counts[0] + " hits, hit " + counts[1] + " times, " + counts[2] + " deaths in the kill layer");
+			}
+		}
+
+		/**
+		 * @param participant the player
+		 * @return the counts of the player
+		 */
+		private long[] get(Participant participant) {
+			return players.computeIfAbsent(participant.getName(), name -> new long[3]);
+		}
+	}
+}
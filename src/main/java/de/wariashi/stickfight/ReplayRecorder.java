@@ -0,0 +1,435 @@
+package de.wariashi.stickfight;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * The {@link ReplayRecorder} records matches, so that disputes can be settled and cheating reports can be reviewed.
+ * <p>
+ * Every tick, the position and the look angles of every {@link Player} within the play area are recorded, along with
+ * hits, broken and restored glass panes and deaths in the kill layer. Positions are delta-encoded, so a {@link Player}
+ * that stands still costs nothing and a moving one only a few bytes per tick, see {@link ReplayFormat}. The records are
+ * encoded into a buffer on the main thread and handed to a {@link ReplayWriter}, which streams them to a file in the
+ * replay directory on its own thread. If the writer falls behind, a buffer is dropped and the recording continues with
+ * a {@link ReplayFormat#RECORD_SYNC sync}.
+ * <p>
+ * Nothing is recorded unless replays are enabled in the {@link Configuration}. The files can be summarized and exported
+ * with the {@link ReplayReader}.
+ */
+public class ReplayRecorder {
+	private static final int BREAK_SIZE = 1 + 3 * ReplayFormat.MAX_VARINT_SIZE + 1 + ReplayFormat.MAX_VARINT_SIZE;
+	private static final int ENTER_SIZE = 1 + 2 * ReplayFormat.MAX_VARINT_SIZE + 2 * Long.BYTES + 3 * ReplayFormat.MAX_VARINT_SIZE + 2;
+	private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+	private static final int FLUSH_INTERVAL = 20; // ticks
+	private static final int FRAME_SIZE = 1 + ReplayFormat.MAX_VARINT_SIZE;
+	private static final int HIGH_WATER_MARK = ReplayWriter.BUFFER_SIZE * 3 / 4; // bytes
+	private static final int MOVE_SIZE = 1 + 4 * ReplayFormat.MAX_VARINT_SIZE + 2;
+	private static final int SLOT_RECORD_SIZE = 1 + 2 * ReplayFormat.MAX_VARINT_SIZE;
+
+	private ByteBuffer buffer;
+	private final LongAdder buffersDropped;
+	private final LongAdder bytesWritten;
+	private long frameTick;
+	private TickScheduler.ScheduledTask handOffTask;
+	private long lastHandOff;
+	private byte[] pitches = new byte[0];
+	private Player[] players = new Player[0];
+	private boolean running = false;
+	private TickScheduler.ScheduledTask sampleTask;
+	private final Location scratch = new Location(null, 0, 0, 0);
+	private long startTick;
+	private final Stickfight stickfight;
+	private final Map<String, Integer> worldIds = new HashMap<>();
+	private World[] worlds = new World[0];
+	private ReplayWriter writer;
+	private long[] xs = new long[0];
+	private byte[] yaws = new byte[0];
+	private long[] ys = new long[0];
+	private long[] zs = new long[0];
+
+	/**
+	 * Creates a new {@link ReplayRecorder}.
+	 *
+	 * @param stickfight the stickfight plugin that this recorder is associated with
+	 */
+	public ReplayRecorder(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		var metrics = stickfight.getMetrics();
+		buffersDropped = metrics.counter("stickfight_replay_buffers_dropped_total", "Replay buffers dropped because the writer fell behind.");
+		bytesWritten = metrics.counter("stickfight_replay_bytes_written_total", "Bytes written to replay files.");
+	}
+
+	/**
+	 * @return <code>true</code> if a replay is being recorded, <code>false</code> otherwise
+	 */
+	public boolean isRecording() {
+		return running;
+	}
+
+	/**
+	 * Records that a glass pane has been broken.
+	 *
+	 * @param world    the {@link World} of the glass pane
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 */
+	public void recordBreak(World world, long position, Material material) {
+		if (!running) {
+			return;
+		}
+		var worldId = getWorldId(world);
+		begin(BREAK_SIZE);
+		buffer.put(ReplayFormat.RECORD_BREAK);
+		putBlock(worldId, position);
+		buffer.put((byte) GlassPanes.indexOf(material));
+	}
+
+	/**
+	 * Records that a {@link Player} has died in the kill layer.
+	 *
+	 * @param slot the slot of the {@link Player}, see {@link PlayerRegistry}
+	 */
+	public void recordDeath(int slot) {
+		if (!running || slot < 0) {
+			return;
+		}
+		begin(SLOT_RECORD_SIZE);
+		buffer.put(ReplayFormat.RECORD_DEATH);
+		ReplayFormat.putVarLong(buffer, slot);
+	}
+
+	/**
+	 * Records that a {@link Player} has hit another {@link Player}.
+	 *
+	 * @param attacker the slot of the {@link Player} that hit, see {@link PlayerRegistry}
+	 * @param victim   the slot of the {@link Player} that has been hit
+	 */
+	public void recordHit(int attacker, int victim) {
+		if (!running) {
+			return;
+		}
+		begin(SLOT_RECORD_SIZE);
+		buffer.put(ReplayFormat.RECORD_HIT);
+		ReplayFormat.putVarLong(buffer, attacker);
+		ReplayFormat.putVarLong(buffer, victim);
+	}
+
+	/**
+	 * Records that a glass pane has been restored.
+	 *
+	 * @param world    the {@link World} of the glass pane
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 */
+	public void recordRestore(World world, long position) {
+		if (!running) {
+			return;
+		}
+		var worldId = getWorldId(world);
+		begin(BREAK_SIZE);
+		buffer.put(ReplayFormat.RECORD_RESTORE);
+		putBlock(worldId, position);
+	}
+
+	/**
+	 * Starts recording into a new file if replays are enabled and the recorder has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var configuration = stickfight.getConfiguration();
+			if (!configuration.isReplayEnabled()) {
+				return;
+			}
+
+			var directory = new File(configuration.getReplayDirectory());
+			if (!directory.isAbsolute()) {
+				directory = new File(stickfight.getDataFolder(), configuration.getReplayDirectory());
+			}
+			var file = new File(directory, LocalDateTime.now().format(FILE_NAME) + ".replay");
+			writer = new ReplayWriter(file, stickfight.getLogger(), bytesWritten);
+			buffer = writer.obtain();
+			startTick = stickfight.getTickScheduler().getTickCount();
+			lastHandOff = 0;
+			writeHeader();
+			sync();
+
+			// sampling must not be stretched or deferred, so that every tick is recorded even while the server is under load
+			var tickScheduler = stickfight.getTickScheduler();
+			sampleTask = tickScheduler.schedule("ReplayRecorder.sample", TickScheduler.Priority.CRITICAL, 1, this::sample);
+			handOffTask = tickScheduler.schedule("ReplayRecorder.handOff", TickScheduler.Priority.LOW, 1, this::flush);
+			running = true;
+			stickfight.getLogger().info("Recording replay " + file.getName());
+		}
+	}
+
+	/**
+	 * Stops recording and waits until the remaining records have been written.
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		sampleTask.cancel();
+		sampleTask = null;
+		handOffTask.cancel();
+		handOffTask = null;
+		if (!writer.offer(buffer)) {
+			buffersDropped.increment();
+		}
+		writer.close();
+		writer = null;
+		buffer = null;
+		running = false;
+	}
+
+	/**
+	 * Makes sure that a record of the given size fits into the buffer and starts a new frame if the tick has changed
+	 * since the previous record. The buffer grows if a single tick produces more records than it can hold, it is only
+	 * handed to the {@link ReplayWriter} between ticks, so that records are never dropped in the middle of a tick.
+	 *
+	 * @param size the highest number of bytes of the record
+	 */
+	private void begin(int size) {
+		if (buffer.remaining() < size + FRAME_SIZE) {
+			var grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size + FRAME_SIZE));
+			buffer = grown.put(buffer.flip());
+		}
+		var tick = getTick();
+		if (tick != frameTick) {
+			buffer.put(ReplayFormat.RECORD_FRAME);
+			ReplayFormat.putVarLong(buffer, tick - frameTick);
+			frameTick = tick;
+		}
+	}
+
+	/**
+	 * Records that a {@link Player} has entered the play area, including everything that is needed to identify the
+	 * {@link Player} and the absolute position.
+	 *
+	 * @param slot     the slot of the {@link Player}
+	 * @param player   the {@link Player}
+	 * @param location the {@link Location} of the {@link Player}
+	 */
+	private void enter(int slot, Player player, Location location) {
+		var worldId = getWorldId(location.getWorld());
+		var name = player.getName().getBytes(StandardCharsets.UTF_8);
+		var uuid = player.getUniqueId();
+		players[slot] = player;
+		worlds[slot] = location.getWorld();
+		xs[slot] = ReplayFormat.encodePosition(location.getX());
+		ys[slot] = ReplayFormat.encodePosition(location.getY());
+		zs[slot] = ReplayFormat.encodePosition(location.getZ());
+		yaws[slot] = ReplayFormat.encodeAngle(location.getYaw());
+		pitches[slot] = ReplayFormat.encodeAngle(location.getPitch());
+
+		begin(ENTER_SIZE + ReplayFormat.MAX_VARINT_SIZE + name.length);
+		buffer.put(ReplayFormat.RECORD_ENTER);
+		ReplayFormat.putVarLong(buffer, slot);
+		buffer.putLong(uuid.getMostSignificantBits());
+		buffer.putLong(uuid.getLeastSignificantBits());
+		ReplayFormat.putString(buffer, name);
+		ReplayFormat.putVarLong(buffer, worldId);
+		ReplayFormat.putSignedVarLong(buffer, xs[slot]);
+		ReplayFormat.putSignedVarLong(buffer, ys[slot]);
+		ReplayFormat.putSignedVarLong(buffer, zs[slot]);
+		buffer.put(yaws[slot]);
+		buffer.put(pitches[slot]);
+	}
+
+	/**
+	 * Makes sure that the per-slot arrays can hold the state of all slots.
+	 *
+	 * @param slotCount the number of slots
+	 */
+	private void ensureCapacity(int slotCount) {
+		if (slotCount > players.length) {
+			var length = Math.max(slotCount, players.length * 2);
+			pitches = Arrays.copyOf(pitches, length);
+			players = Arrays.copyOf(players, length);
+			worlds = Arrays.copyOf(worlds, length);
+			xs = Arrays.copyOf(xs, length);
+			yaws = Arrays.copyOf(yaws, length);
+			ys = Arrays.copyOf(ys, length);
+			zs = Arrays.copyOf(zs, length);
+		}
+	}
+
+	/**
+	 * Hands the buffer to the {@link ReplayWriter} once per {@link #FLUSH_INTERVAL} or when it is almost full. Runs with
+	 * a low priority, the buffer grows meanwhile if the task is stretched or deferred.
+	 */
+	private void flush() {
+		if (getTick() - lastHandOff >= FLUSH_INTERVAL || buffer.position() >= HIGH_WATER_MARK) {
+			handOff();
+		}
+	}
+
+	/**
+	 * @return the number of ticks since the recording has been started
+	 */
+	private long getTick() {
+		return stickfight.getTickScheduler().getTickCount() - startTick;
+	}
+
+	/**
+	 * Looks up the id of a {@link World} and records the {@link World} if it has not been recorded since the last sync.
+	 *
+	 * @param world the {@link World}
+	 * @return the id of the {@link World}
+	 */
+	private int getWorldId(World world) {
+		var name = world.getName();
+		var worldId = worldIds.get(name);
+		if (worldId == null) {
+			worldId = worldIds.size();
+			worldIds.put(name, worldId);
+			var bytes = name.getBytes(StandardCharsets.UTF_8);
+			begin(1 + 2 * ReplayFormat.MAX_VARINT_SIZE + bytes.length);
+			buffer.put(ReplayFormat.RECORD_WORLD);
+			ReplayFormat.putVarLong(buffer, worldId);
+			ReplayFormat.putString(buffer, bytes);
+		}
+		return worldId;
+	}
+
+	/**
+	 * Hands the buffer to the {@link ReplayWriter}. If the writer has fallen behind, the buffer is dropped and the
+	 * recording continues with a {@link ReplayFormat#RECORD_SYNC sync}.
+	 */
+	private void handOff() {
+		if (writer.offer(buffer)) {
+			buffer = writer.obtain();
+		} else {
+			buffersDropped.increment();
+			buffer.clear();
+			sync();
+		}
+		lastHandOff = getTick();
+	}
+
+	/**
+	 * Records that a {@link Player} has left the play area or the server.
+	 *
+	 * @param slot the slot of the {@link Player}
+	 */
+	private void leave(int slot) {
+		players[slot] = null;
+		worlds[slot] = null;
+		begin(SLOT_RECORD_SIZE);
+		buffer.put(ReplayFormat.RECORD_LEAVE);
+		ReplayFormat.putVarLong(buffer, slot);
+	}
+
+	/**
+	 * Records the movement of a {@link Player} relative to the previous position, if the {@link Player} has moved or
+	 * looked around since then.
+	 *
+	 * @param slot     the slot of the {@link Player}
+	 * @param location the {@link Location} of the {@link Player}
+	 */
+	private void move(int slot, Location location) {
+		var x = ReplayFormat.encodePosition(location.getX());
+		var y = ReplayFormat.encodePosition(location.getY());
+		var z = ReplayFormat.encodePosition(location.getZ());
+		var yaw = ReplayFormat.encodeAngle(location.getYaw());
+		var pitch = ReplayFormat.encodeAngle(location.getPitch());
+		if (x == xs[slot] && y == ys[slot] && z == zs[slot] && yaw == yaws[slot] && pitch == pitches[slot]) {
+			return;
+		}
+
+		begin(MOVE_SIZE);
+		buffer.put(ReplayFormat.RECORD_MOVE);
+		ReplayFormat.putVarLong(buffer, slot);
+		ReplayFormat.putSignedVarLong(buffer, x - xs[slot]);
+		ReplayFormat.putSignedVarLong(buffer, y - ys[slot]);
+		ReplayFormat.putSignedVarLong(buffer, z - zs[slot]);
+		buffer.put(yaw);
+		buffer.put(pitch);
+		xs[slot] = x;
+		ys[slot] = y;
+		zs[slot] = z;
+		yaws[slot] = yaw;
+		pitches[slot] = pitch;
+	}
+
+	/**
+	 * Writes the {@link World} id and the coordinates of a block.
+	 *
+	 * @param worldId  the id of the {@link World}
+	 * @param position the {@link BlockPosition packed position} of the block
+	 */
+	private void putBlock(int worldId, long position) {
+		ReplayFormat.putVarLong(buffer, worldId);
+		ReplayFormat.putSignedVarLong(buffer, BlockPosition.unpackX(position));
+		ReplayFormat.putSignedVarLong(buffer, BlockPosition.unpackY(position));
+		ReplayFormat.putSignedVarLong(buffer, BlockPosition.unpackZ(position));
+	}
+
+	/**
+	 * Records the position of every {@link Player} within the play area.
+	 */
+	private void sample() {
+		var playerRegistry = stickfight.getPlayerRegistry();
+		var slotCount = playerRegistry.getSlotCount();
+		ensureCapacity(slotCount);
+		for (var slot = 0; slot < players.length; slot++) {
+			var player = slot < slotCount ? playerRegistry.getPlayer(slot) : null;
+			Location location = null;
+			if (player != null && player.isOnline()) {
+				location = player.getLocation(scratch);
+				if (!stickfight.isWithinConfinedArea(location)) {
+					location = null;
+				}
+			}
+
+			if (location == null) {
+				if (players[slot] != null) {
+					leave(slot);
+				}
+			} else if (players[slot] != player || worlds[slot] != location.getWorld()) {
+				if (players[slot] != null) {
+					leave(slot);
+				}
+				enter(slot, player, location);
+			} else {
+				move(slot, location);
+			}
+		}
+	}
+
+	/**
+	 * Forgets all players and worlds that have been recorded and writes a {@link ReplayFormat#RECORD_SYNC sync}, so that
+	 * the following records can be read without the previous ones.
+	 */
+	private void sync() {
+		Arrays.fill(players, null);
+		Arrays.fill(worlds, null);
+		worldIds.clear();
+		frameTick = getTick();
+		buffer.put(ReplayFormat.RECORD_SYNC);
+		ReplayFormat.putVarLong(buffer, frameTick);
+	}
+
+	/**
+	 * Writes the header of the replay, see {@link ReplayFormat}.
+	 */
+	private void writeHeader() {
+		buffer.putInt(ReplayFormat.MAGIC);
+		buffer.putLong(System.currentTimeMillis());
+		buffer.put((byte) GlassPanes.COUNT);
+		for (var i = 0; i < GlassPanes.COUNT; i++) {
+			ReplayFormat.putString(buffer, GlassPanes.getMaterial(i).name().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package de.wariashi.stickfight;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams the records of a replay to a file on a dedicated thread.
+ * <p>
+ * Buffers of records are handed to the thread through a bounded queue. {@link #offer(ByteBuffer) Offering} a buffer
+ * never blocks: if the thread falls behind, the buffer is dropped and the caller is supposed to continue with a
+ * {@link ReplayFormat#RECORD_SYNC sync}. Buffers that have been written are kept for {@link #obtain() reuse}, so that
+ * recording does not allocate once it is running.
+ */
+public class ReplayWriter {
+	/**
+	 * The size of every buffer in bytes.
+	 */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int QUEUE_CAPACITY = 64; // buffers
+	private static final ByteBuffer SHUTDOWN = ByteBuffer.allocate(0);
+
+	private final LongAdder bytesWritten;
+	private final File file;
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Logger logger;
+	private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread thread;
+
+	/**
+	 * Creates a new {@link ReplayWriter} and starts its thread.
+	 *
+	 * @param file         the file that the replay is written to, an existing file is replaced
+	 * @param logger       the {@link Logger} that is used to report I/O errors
+	 * @param bytesWritten the counter of bytes that have been written
+	 */
+	public ReplayWriter(File file, Logger logger, LongAdder bytesWritten) {
+		this.file = file;
+		this.logger = logger;
+		this.bytesWritten = bytesWritten;
+		thread = new Thread(this::run, "Stickfight Replay");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Writes all buffers that have been offered so far and waits for the thread to finish.
+	 */
+	public void close() {
+		try {
+			if (!queue.offer(SHUTDOWN, 10, TimeUnit.SECONDS)) {
+				logger.warning("Timed out while closing the replay " + file.getName());
+				thread.interrupt();
+				return;
+			}
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+			if (thread.isAlive()) {
+				logger.warning("Timed out while writing the replay " + file.getName());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the file that the replay is written to
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns an empty buffer of {@link #BUFFER_SIZE} bytes, preferably one that has already been written.
+	 *
+	 * @return the buffer
+	 */
+	public ByteBuffer obtain() {
+		var buffer = free.poll();
+		return buffer != null ? buffer : ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * Hands a buffer of records to the thread without blocking.
+	 *
+	 * @param records the buffer, which must not be used anymore by the caller
+	 * @return <code>true</code> if the buffer will be written, <code>false</code> if it has been dropped because the
+	 * thread has fallen behind
+	 */
+	public boolean offer(ByteBuffer records) {
+		records.flip();
+		return queue.offer(records);
+	}
+
+	/**
+	 * Closes a {@link FileChannel} and logs errors.
+	 *
+	 * @param channel the {@link FileChannel} or <code>null</code>
+	 * @return <code>null</code>
+	 */
+	private FileChannel close(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not close the replay " + file.getName(), e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the buffers from the queue until the writer is {@link #close() closed}.
+	 * If the file cannot be written, the remaining buffers are discarded, so that the queue never blocks the caller.
+	 */
+	private void run() {
+		FileChannel channel = null;
+		try {
+			Files.createDirectories(file.toPath().toAbsolutePath().getParent());
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not create the replay " + file.getName(), e);
+		}
+
+		try {
+			while (true) {
+				var records = queue.take();
+				if (records == SHUTDOWN) {
+					break;
+				}
+				if (channel != null) {
+					try {
+						var size = records.remaining();
+						while (records.hasRemaining()) {
+							channel.write(records);
+						}
+						bytesWritten.add(size);
+					} catch (IOException e) {
+						logger.log(Level.WARNING, "Could not write the replay " + file.getName(), e);
+						channel = close(channel);
+					}
+				}
+				free.offer(records.clear());
+			}
+		} catch (InterruptedException e) {
+			// the server is shutting down, the records that have already been written are kept
+		} finally {
+			close(channel);
+		}
+	}
+}
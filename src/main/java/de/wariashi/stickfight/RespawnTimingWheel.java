@@ -0,0 +1,159 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+
+import org.bukkit.Material;
+
+/**
+ * A hashed timing wheel that keeps track of broken glass panes until they are due to be restored.
+ * <p>
+ * Each pending restoration is stored as a {@link BlockPosition packed position}, the original {@link Material} and the
+ * tick at which it is due. Entries are hashed into slots by their due tick, so advancing the wheel by one tick only
+ * touches the entries of a single slot instead of every pending restoration.
+ * <p>
+ * The wheel is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class RespawnTimingWheel {
+	private static final int INITIAL_SLOT_CAPACITY = 4;
+
+	private long currentTick;
+	private final long[][] dueTicks;
+	private final int mask;
+	private final Material[][] materials;
+	private final long[][] positions;
+	private int size;
+	private final int[] slotSizes;
+
+	/**
+	 * Creates a new {@link RespawnTimingWheel}.
+	 *
+	 * @param slotCount   the minimum number of slots, will be rounded up to the next power of two
+	 * @param currentTick the tick at which the wheel starts
+	 */
+	public RespawnTimingWheel(int slotCount, long currentTick) {
+		var slots = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+		this.currentTick = currentTick;
+		dueTicks = new long[slots][];
+		mask = slots - 1;
+		materials = new Material[slots][];
+		positions = new long[slots][];
+		slotSizes = new int[slots];
+	}
+
+	/**
+	 * Advances the wheel up to the given tick and hands every entry that became due to the given {@link Expiration}.
+	 * If the wheel fell behind by more than one revolution, all slots are visited exactly once.
+	 *
+	 * @param tick       the current tick
+	 * @param expiration the callback that receives the due entries
+	 */
+	public void advance(long tick, Expiration expiration) {
+		if (tick <= currentTick) {
+			return;
+		}
+		var steps = Math.min(tick - currentTick, mask + 1L);
+		for (var step = 1; step <= steps; step++) {
+			expireSlot((int) ((currentTick + step) & mask), tick, expiration);
+		}
+		currentTick = tick;
+	}
+
+	/**
+	 * Removes all entries and hands them to the given {@link Expiration}, regardless of whether they are due.
+	 *
+	 * @param expiration the callback that receives the entries
+	 */
+	public void drain(Expiration expiration) {
+		for (var slot = 0; slot <= mask; slot++) {
+			expireSlot(slot, Long.MAX_VALUE, expiration);
+		}
+	}
+
+	/**
+	 * @return the tick up to which the wheel has been advanced
+	 */
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	/**
+	 * Schedules a restoration.
+	 * Entries that are already overdue will be handed out on the next call to {@link #advance(long, Expiration)}.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 * @param dueTick  the tick at which the glass pane should be restored
+	 */
+	public void schedule(long position, Material material, long dueTick) {
+		var tick = Math.max(dueTick, currentTick + 1);
+		var slot = (int) (tick & mask);
+		var count = slotSizes[slot];
+		if (positions[slot] == null) {
+			materials[slot] = new Material[INITIAL_SLOT_CAPACITY];
+			positions[slot] = new long[INITIAL_SLOT_CAPACITY];
+			dueTicks[slot] = new long[INITIAL_SLOT_CAPACITY];
+		} else if (count == positions[slot].length) {
+			materials[slot] = Arrays.copyOf(materials[slot], count * 2);
+			positions[slot] = Arrays.copyOf(positions[slot], count * 2);
+			dueTicks[slot] = Arrays.copyOf(dueTicks[slot], count * 2);
+		}
+		materials[slot][count] = material;
+		positions[slot][count] = position;
+		dueTicks[slot][count] = tick;
+		slotSizes[slot] = count + 1;
+		size++;
+	}
+
+	/**
+	 * @return the number of pending restorations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Hands all entries of a slot that are due at the given tick to the {@link Expiration} and compacts the remaining ones.
+	 *
+	 * @param slot       the index of the slot
+	 * @param tick       the current tick
+	 * @param expiration the callback that receives the due entries
+	 */
+	private void expireSlot(int slot, long tick, Expiration expiration) {
+		var count = slotSizes[slot];
+		if (count == 0) {
+			return;
+		}
+
+		var slotMaterials = materials[slot];
+		var slotPositions = positions[slot];
+		var slotDueTicks = dueTicks[slot];
+		var kept = 0;
+		for (var i = 0; i < count; i++) {
+			if (slotDueTicks[i] <= tick) {
+				expiration.expire(slotPositions[i], slotMaterials[i]);
+			} else {
+				slotMaterials[kept] = slotMaterials[i];
+				slotPositions[kept] = slotPositions[i];
+				slotDueTicks[kept] = slotDueTicks[i];
+				kept++;
+			}
+		}
+		Arrays.fill(slotMaterials, kept, count, null);
+		slotSizes[slot] = kept;
+		size -= count - kept;
+	}
+
+	/**
+	 * Receives entries of a {@link RespawnTimingWheel} when they are due.
+	 */
+	@FunctionalInterface
+	public interface Expiration {
+		/**
+		 * Called for every entry that is due.
+		 *
+		 * @param position the {@link BlockPosition packed position} of the glass pane
+		 * @param material the {@link Material} of the glass pane
+		 */
+		void expire(long position, Material material);
+	}
+}
@@ -0,0 +1,328 @@
+package de.wariashi.stickfight;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+
+/**
+ * A binary journal of pending glass pane restorations that survives crashes.
+ * <p>
+ * Every broken glass pane is recorded with its {@link BlockPosition packed position}, its material and the tick at
+ * which it is due, every restoration is recorded with its position. Records are appended to an in-memory buffer on the
+ * main thread and written to disk by a background thread whenever the buffer is {@link #flush(boolean) flushed}.
+ * Every write is followed by an fsync, so at most one flush interval is lost if the server crashes.
+ * <p>
+ * The background thread keeps track of the pending restorations. When the journal grows too large, it is compacted into
+ * a new journal that only contains the pending restorations, which replaces the old one atomically.
+ * <p>
+ * A journal that cannot be read completely is never rewritten in place. It is moved aside first, and if that fails,
+ * nothing is written until the server is restarted, so that the pending restorations after the unreadable record are
+ * not lost.
+ */
+public class RestorationJournal {
+	private static final long COMPACTION_THRESHOLD = 1 << 20; // bytes
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+	private static final int MAGIC = 0x53464A31; // "SFJ1"
+	private static final byte RECORD_BREAK = 1;
+	private static final int RECORD_BREAK_SIZE = 1 + Long.BYTES + 1 + Long.BYTES;
+	private static final byte RECORD_RESTORE = 2;
+	private static final int RECORD_RESTORE_SIZE = 1 + Long.BYTES;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private FileChannel channel;
+	private boolean cleared = false;
+	private final File file;
+	private final Logger logger;
+	private final Map<Long, long[]> pending = new HashMap<>();
+	private boolean readOnly = false;
+	private final ExecutorService writer;
+
+	/**
+	 * Creates a new {@link RestorationJournal}.
+	 *
+	 * @param file   the file that the journal is stored in
+	 * @param logger the {@link Logger} that is used to report I/O errors
+	 */
+	public RestorationJournal(File file, Logger logger) {
+		this.file = file;
+		this.logger = logger;
+		writer = Executors.newSingleThreadExecutor(runnable -> {
+			var thread = new Thread(runnable, "Stickfight Journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Records that a glass pane has been broken.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 * @param dueTick  the tick at which the glass pane should be restored
+	 */
+	public void appendBreak(long position, Material material, long dueTick) {
+		cleared = false;
+		ensureCapacity(RECORD_BREAK_SIZE);
+		buffer.put(RECORD_BREAK);
+		buffer.putLong(position);
+		buffer.put((byte) Math.max(0, GlassPanes.indexOf(material)));
+		buffer.putLong(dueTick);
+	}
+
+	/**
+	 * Records that a glass pane has been restored.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 */
+	public void appendRestore(long position) {
+		cleared = false;
+		ensureCapacity(RECORD_RESTORE_SIZE);
+		buffer.put(RECORD_RESTORE);
+		buffer.putLong(position);
+	}
+
+	/**
+	 * Writes all remaining records to disk and waits for the background thread to finish.
+	 *
+	 * @param empty <code>true</code> if no restorations are pending anymore, so the journal can be cleared
+	 */
+	public void close(boolean empty) {
+		flush(empty);
+		writer.execute(this::closeChannel);
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.warning("Timed out while writing the restoration journal " + file.getName());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Hands all buffered records to the background thread, which writes them to disk and forces them to the storage device.
+	 * If no restorations are pending anymore, the journal is cleared instead, unless it has already been cleared since the
+	 * last record was appended.
+	 *
+	 * @param empty <code>true</code> if no restorations are pending anymore, so the journal can be cleared
+	 */
+	public void flush(boolean empty) {
+		if (empty) {
+			if (!cleared) {
+				buffer.clear();
+				cleared = true;
+				writer.execute(() -> write(null));
+			}
+			return;
+		} else if (buffer.position() == 0) {
+			return;
+		}
+
+		var records = buffer.flip();
+		buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		writer.execute(() -> write(empty ? null : records));
+	}
+
+	/**
+	 * Reads all records from disk, hands every pending restoration to the given {@link RespawnTimingWheel} and
+	 * rewrites the journal so that it only contains the pending restorations.
+	 * If a record cannot be read, the restorations before it are still resumed, but the journal is moved aside before it
+	 * is rewritten.
+	 * This method blocks and is supposed to be called once before any records are appended.
+	 *
+	 * @param respawnTimingWheel the {@link RespawnTimingWheel} that pending restorations are scheduled in
+	 * @return the number of pending restorations
+	 */
+	public int replay(RespawnTimingWheel respawnTimingWheel) {
+		var pending = new LinkedHashMap<Long, long[]>();
+		if (file.isFile()) {
+			try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				if (input.readInt() != MAGIC) {
+					throw new IOException("Unknown file format");
+				}
+				while (true) {
+					var type = input.readByte();
+					var position = input.readLong();
+					if (type == RECORD_BREAK) {
+						var index = input.readByte();
+						var dueTick = input.readLong();
+						pending.put(position, new long[] { index, dueTick });
+					} else if (type == RECORD_RESTORE) {
+						pending.remove(position);
+					} else {
+						throw new IOException("Unknown record type " + type);
+					}
+				}
+			} catch (EOFException e) {
+				// end of journal, the last record may be incomplete if the server crashed while writing it
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Could not read the restoration journal " + file.getName() + ", the glass panes after the unreadable record are not restored", e);
+				moveAside();
+			}
+		}
+
+		for (var entry : pending.entrySet()) {
+			var record = entry.getValue();
+			var material = GlassPanes.getMaterial((int) record[0]);
+			if (material != null) {
+				respawnTimingWheel.schedule(entry.getKey(), material, record[1]);
+				appendBreak(entry.getKey(), material, record[1]);
+			}
+		}
+		writer.execute(() -> write(null));
+		flush(false);
+		return pending.size();
+	}
+
+	/**
+	 * Closes the {@link FileChannel} if it is open.
+	 * Must only be called on the background thread.
+	 */
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not close the restoration journal " + file.getName(), e);
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Writes the pending restorations to a new journal and replaces the current one with it.
+	 * Must only be called on the background thread.
+	 *
+	 * @throws IOException if the new journal cannot be written
+	 */
+	private void compact() throws IOException {
+		var records = ByteBuffer.allocate(Integer.BYTES + pending.size() * RECORD_BREAK_SIZE);
+		records.putInt(MAGIC);
+		for (var entry : pending.entrySet()) {
+			records.put(RECORD_BREAK);
+			records.putLong(entry.getKey());
+			records.put((byte) entry.getValue()[0]);
+			records.putLong(entry.getValue()[1]);
+		}
+		records.flip();
+
+		var temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (var output = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (records.hasRemaining()) {
+				output.write(records);
+			}
+			output.force(false);
+		}
+		closeChannel();
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		channel.position(channel.size());
+	}
+
+	/**
+	 * Makes sure that the buffer can hold the given number of additional bytes.
+	 *
+	 * @param bytes the number of bytes that should be appended
+	 */
+	private void ensureCapacity(int bytes) {
+		if (buffer.remaining() < bytes) {
+			var larger = ByteBuffer.allocate(buffer.capacity() * 2);
+			larger.put(buffer.flip());
+			buffer = larger;
+		}
+	}
+
+	/**
+	 * Adds records to the pending restorations.
+	 * Must only be called on the background thread.
+	 *
+	 * @param records the records, which are read from the start of the buffer up to its limit
+	 */
+	private void track(ByteBuffer records) {
+		var offset = 0;
+		while (offset < records.limit()) {
+			var position = records.getLong(offset + 1);
+			if (records.get(offset) == RECORD_BREAK) {
+				pending.put(position, new long[] { records.get(offset + 1 + Long.BYTES), records.getLong(offset + 2 + Long.BYTES) });
+				offset += RECORD_BREAK_SIZE;
+			} else {
+				pending.remove(position);
+				offset += RECORD_RESTORE_SIZE;
+			}
+		}
+	}
+
+	/**
+	 * Moves an unreadable journal aside, so that it can be repaired, and makes the journal read-only if that fails.
+	 */
+	private void moveAside() {
+		var corrupt = new File(file.getParentFile(), file.getName() + ".corrupt");
+		try {
+			Files.move(file.toPath(), corrupt.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			logger.warning("Moved the unreadable restoration journal to " + corrupt.getName());
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not move the restoration journal " + file.getName() + " aside, it is not written until the server is restarted", e);
+			readOnly = true;
+		}
+	}
+
+	/**
+	 * Writes records to the journal and forces them to the storage device.
+	 * If the journal has grown too large and consists mostly of restorations that are no longer pending, it is
+	 * {@link #compact() compacted}.
+	 * Nothing is written if the journal is read-only.
+	 * Must only be called on the background thread.
+	 *
+	 * @param records the records to write or <code>null</code> if the journal should be cleared
+	 */
+	private void write(ByteBuffer records) {
+		if (readOnly) {
+			return;
+		}
+		try {
+			if (channel == null) {
+				channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				channel.position(channel.size());
+			}
+			if (records == null || channel.size() == 0) {
+				channel.truncate(0);
+				channel.position(0);
+				channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip());
+			}
+			if (records == null) {
+				pending.clear();
+			} else {
+				while (records.hasRemaining()) {
+					channel.write(records);
+				}
+				track(records);
+			}
+			channel.force(false);
+
+			var compactedSize = Integer.BYTES + (long) pending.size() * RECORD_BREAK_SIZE;
+			if (channel.size() > COMPACTION_THRESHOLD && channel.size() > 2 * compactedSize) {
+				compact();
+			}
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not write the restoration journal " + file.getName(), e);
+		}
+	}
+}
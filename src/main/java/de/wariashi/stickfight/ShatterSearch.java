@@ -0,0 +1,203 @@
+package de.wariashi.stickfight;
+
+import java.util.BitSet;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+/**
+ * Finds the cluster of connected glass panes around a glass pane that has been hit, so that it can shatter as a whole.
+ * <p>
+ * The search is split in two steps. {@link #capture(World, Arena, int, int, int, Material, int)} runs on the main thread and only
+ * takes a {@link ChunkSnapshot} of every loaded chunk within {@link #MAX_RADIUS} blocks of the glass pane.
+ * {@link #run()} may run on any thread: it walks from the glass pane to all glass panes that touch it on one of their
+ * six faces, breadth first, until the cluster is complete or the maximum size has been reached. Glass panes outside of
+ * the {@link Arena}, outside of the radius or in chunks that are not loaded are not part of the cluster.
+ */
+public class ShatterSearch {
+	/**
+	 * The maximum distance from the glass pane that has been hit along each axis.
+	 */
+	public static final int MAX_RADIUS = 16;
+
+	private static final int[][] DIRECTIONS = { { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 }, { 0, 0, -1 } };
+
+	private final Arena arena;
+	private final int chunkCountZ;
+	private final ChunkSnapshot[] chunks;
+	private Material[] materials = new Material[0];
+	private final int maxPanes;
+	private final int maxX;
+	private final int maxY;
+	private final int maxZ;
+	private final int minChunkX;
+	private final int minChunkZ;
+	private final int minX;
+	private final int minY;
+	private final int minZ;
+	private long[] positions = new long[0];
+	private int size;
+	private final Material startMaterial;
+	private final int startX;
+	private final int startY;
+	private final int startZ;
+
+	/**
+	 * Creates a new {@link ShatterSearch}.
+	 *
+	 * @param arena    the {@link Arena} that contains the cluster
+	 * @param x        the x coordinate of the glass pane that has been hit
+	 * @param y        the y coordinate of the glass pane that has been hit
+	 * @param z        the z coordinate of the glass pane that has been hit
+	 * @param material the {@link Material} of the glass pane that has been hit
+	 * @param maxPanes the maximum number of glass panes in the cluster
+	 * @param minY     the lowest y coordinate that is searched
+	 * @param maxY     the highest y coordinate that is searched
+	 * @param radius   the maximum distance from the glass pane that has been hit along each axis
+	 */
+	private ShatterSearch(Arena arena, int x, int y, int z, Material material, int maxPanes, int minY, int maxY, int radius) {
+		this.arena = arena;
+		this.startMaterial = material;
+		this.startX = x;
+		this.startY = y;
+		this.startZ = z;
+		this.maxPanes = maxPanes;
+		this.minX = x - radius;
+		this.minY = minY;
+		this.minZ = z - radius;
+		this.maxX = x + radius;
+		this.maxY = maxY;
+		this.maxZ = z + radius;
+		minChunkX = minX >> 4;
+		minChunkZ = minZ >> 4;
+		chunkCountZ = (maxZ >> 4) - minChunkZ + 1;
+		chunks = new ChunkSnapshot[((maxX >> 4) - minChunkX + 1) * chunkCountZ];
+	}
+
+	/**
+	 * Prepares a search by taking snapshots of the loaded chunks around a glass pane.
+	 * The glass pane that has been hit is always part of the cluster, even if it has already been broken.
+	 * Must be called on the main thread.
+	 *
+	 * @param world    the {@link World} that contains the glass pane
+	 * @param arena    the {@link Arena} that contains the glass pane
+	 * @param x        the x coordinate of the glass pane that has been hit
+	 * @param y        the y coordinate of the glass pane that has been hit
+	 * @param z        the z coordinate of the glass pane that has been hit
+	 * @param material the {@link Material} of the glass pane that has been hit
+	 * @param maxPanes the maximum number of glass panes in the cluster
+	 * @return the {@link ShatterSearch}, which can be {@link #run() run} on another thread
+	 */
+	public static ShatterSearch capture(World world, Arena arena, int x, int y, int z, Material material, int maxPanes) {
+		var radius = Math.min(MAX_RADIUS, maxPanes);
+		var minY = Math.max(world.getMinHeight(), y - radius);
+		var maxY = Math.min(world.getMaxHeight() - 1, y + radius);
+		var search = new ShatterSearch(arena, x, y, z, material, maxPanes, minY, maxY, radius);
+		var countX = search.chunks.length / search.chunkCountZ;
+		for (var chunkX = 0; chunkX < countX; chunkX++) {
+			for (var chunkZ = 0; chunkZ < search.chunkCountZ; chunkZ++) {
+				if (world.isChunkLoaded(search.minChunkX + chunkX, search.minChunkZ + chunkZ)) {
+					var chunk = world.getChunkAt(search.minChunkX + chunkX, search.minChunkZ + chunkZ);
+					search.chunks[chunkX * search.chunkCountZ + chunkZ] = chunk.getChunkSnapshot(false, false, false);
+				}
+			}
+		}
+		return search;
+	}
+
+	/**
+	 * @return the {@link Arena} that contains the cluster
+	 */
+	public Arena getArena() {
+		return arena;
+	}
+
+	/**
+	 * @return the {@link Material materials} of the glass panes in the cluster, the first {@link #getSize() size} entries are valid
+	 */
+	public Material[] getMaterials() {
+		return materials;
+	}
+
+	/**
+	 * @return the {@link BlockPosition packed positions} of the glass panes in the cluster in the order in which they
+	 * were reached, the first {@link #getSize() size} entries are valid
+	 */
+	public long[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * @return the number of glass panes in the cluster, including the one that has been hit
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Searches the cluster. May be called on any thread, but only once.
+	 */
+	public void run() {
+		var sizeX = maxX - minX + 1;
+		var sizeZ = maxZ - minZ + 1;
+		var visited = new BitSet(sizeX * (maxY - minY + 1) * sizeZ);
+		positions = new long[maxPanes];
+		materials = new Material[maxPanes];
+
+		visited.set(((startY - minY) * sizeZ + (startZ - minZ)) * sizeX + (startX - minX));
+		positions[0] = BlockPosition.pack(startX, startY, startZ);
+		materials[0] = startMaterial;
+		size = 1;
+
+		// the found glass panes double as the queue of the breadth first search
+		for (var head = 0; head < size && size < maxPanes; head++) {
+			var position = positions[head];
+			var x = BlockPosition.unpackX(position);
+			var y = BlockPosition.unpackY(position);
+			var z = BlockPosition.unpackZ(position);
+			for (var direction : DIRECTIONS) {
+				var neighborX = x + direction[0];
+				var neighborY = y + direction[1];
+				var neighborZ = z + direction[2];
+				if (neighborX < minX || neighborX > maxX || neighborY < minY || neighborY > maxY || neighborZ < minZ || neighborZ > maxZ) {
+					continue;
+				}
+				var index = ((neighborY - minY) * sizeZ + (neighborZ - minZ)) * sizeX + (neighborX - minX);
+				if (visited.get(index)) {
+					continue;
+				}
+				visited.set(index);
+				var material = getMaterial(neighborX, neighborY, neighborZ);
+				if (material != null) {
+					positions[size] = BlockPosition.pack(neighborX, neighborY, neighborZ);
+					materials[size] = material;
+					size++;
+					if (size == maxPanes) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Looks up the material of a block if it is a glass pane within the {@link Arena} and a loaded chunk.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the glass pane {@link Material} or <code>null</code> if the block is no such glass pane
+	 */
+	private Material getMaterial(int x, int y, int z) {
+		if (!arena.contains(x, y, z)) {
+			return null;
+		}
+		var chunk = chunks[((x >> 4) - minChunkX) * chunkCountZ + ((z >> 4) - minChunkZ)];
+		if (chunk == null) {
+			return null;
+		}
+		var material = chunk.getBlockType(x & 15, y, z & 15);
+		return GlassPanes.indexOf(material) >= 0 ? material : null;
+	}
+}
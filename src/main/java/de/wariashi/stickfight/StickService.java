@@ -0,0 +1,385 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The {@link StickService} gives a stick with {@link Enchantment#KNOCKBACK Knockback 5 enchantment} to every
+ * {@link Player} in {@link GameMode#ADVENTURE adventure mode} that is within the play area and takes it away
+ * when they leave the play area.
+ * <p>
+ * The service remembers whether each {@link Player} is supposed to hold a stick and only touches the inventory
+ * when that changes. Events that may have changed the inventory mark the {@link Player} as dirty, so that the
+ * inventory is checked on the next tick. A periodic repair pass checks all {@link Player players} as a fallback.
+ * <p>
+ * The state of every {@link Player} is stored in arrays that are indexed by the slot of the {@link Player} in the
+ * {@link PlayerRegistry}.
+ */
+public class StickService implements Listener, MovementSubscriber {
+	private static final byte ARMED = 1;
+	private static final int REPAIR_INTERVAL = 5 * 20; // seconds * ticks per second
+	private static final int SLOT = 0;
+	private static final byte UNARMED = 2;
+	private static final byte UNKNOWN = 0;
+
+	private byte[] armed = new byte[64];
+	private long[] dirty = new long[1];
+	private boolean dirtyAny;
+	private long lastCheck;
+	private TickScheduler.ScheduledTask repairTask;
+	private boolean running = false;
+	private final ItemStack stick;
+	private final Stickfight stickfight;
+	private final LongAdder sticksIssued;
+	private TickScheduler.ScheduledTask task;
+
+	/**
+	 * Creates a new {@link StickService}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public StickService(Stickfight stickfight) {
+		this.stickfight = stickfight;
+
+		// the inventory stores a copy, so the same stick can be handed out to every player
+		stick = new ItemStack(Material.STICK);
+		stick.addUnsafeEnchantment(Enchantment.KNOCKBACK, 5);
+
+		var metrics = stickfight.getMetrics();
+		sticksIssued = metrics.counter("stickfight_sticks_issued_total", "Sticks put into the inventories of players.");
+	}
+
+	/**
+	 * Checks the inventories of all {@link Player players} on the next tick,
+	 * e.g. because the play area has changed.
+	 */
+	public void invalidateAll() {
+		var playerRegistry = stickfight.getPlayerRegistry();
+		Arrays.fill(armed, UNKNOWN);
+		for (var slot = 0; slot < playerRegistry.getSlotCount(); slot++) {
+			if (playerRegistry.getPlayer(slot) != null) {
+				markDirty(slot);
+			}
+		}
+	}
+
+	/**
+	 * Gives or takes the stick when a {@link Player} enters or leaves the play area.
+	 *
+	 * @param movement the {@link Movement} of a {@link Player} to another block
+	 */
+	@Override
+	public void onBlockChange(Movement movement) {
+		update(movement.getSlot(), movement.getPlayer(), movement.getGameMode(), movement.isWithinConfinedArea());
+	}
+
+	/**
+	 * Checks the inventory of a {@link Player} that clicked an inventory slot.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} clicks an inventory slot
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onInventoryClick(InventoryClickEvent event) {
+		markDirty(event.getWhoClicked());
+	}
+
+	/**
+	 * Checks the inventory of a {@link Player} that dragged items across inventory slots.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} drags items across inventory slots
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onInventoryDrag(InventoryDragEvent event) {
+		markDirty(event.getWhoClicked());
+	}
+
+	/**
+	 * Forgets the state of a {@link Player} that died, because the stick may have been dropped.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} dies
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerDeath(PlayerDeathEvent event) {
+		var slot = stickfight.getPlayerRegistry().getSlot(event.getEntity());
+		if (slot >= 0 && slot < armed.length) {
+			armed[slot] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Checks the inventory of a {@link Player} that dropped an item.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} drops an item
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPlayerDropItem(PlayerDropItemEvent event) {
+		markDirty(event.getPlayer());
+	}
+
+	/**
+	 * Checks the inventory of a {@link Player} whose {@link GameMode} changed.
+	 *
+	 * @param event the {@link Event} that is sent when the {@link GameMode} of a {@link Player} changes
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPlayerGameModeChange(PlayerGameModeChangeEvent event) {
+		markDirty(event.getPlayer());
+	}
+
+	/**
+	 * Checks the inventory of {@link Player players} that join the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} joins the server
+	 */
+	@EventHandler
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		markDirty(event.getPlayer());
+	}
+
+	/**
+	 * Forgets the state of {@link Player players} that leave the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} leaves the server
+	 */
+	@EventHandler
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		var slot = stickfight.getPlayerRegistry().getSlot(event.getPlayer());
+		if (slot >= 0) {
+			ensureCapacity(slot);
+			armed[slot] = UNKNOWN;
+			dirty[slot >> 6] &= ~(1L << slot);
+		}
+	}
+
+	/**
+	 * Checks the inventory of a {@link Player} that respawned.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} respawns
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerRespawn(PlayerRespawnEvent event) {
+		markDirty(event.getPlayer());
+	}
+
+	/**
+	 * Checks the inventory of a {@link Player} that swapped the items in their hands.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} swaps the items in their hands
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPlayerSwapHandItems(PlayerSwapHandItemsEvent event) {
+		markDirty(event.getPlayer());
+	}
+
+	/**
+	 * Gives or takes the stick when a {@link Player} teleports into or out of the play area.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} teleports
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPlayerTeleport(PlayerTeleportEvent event) {
+		var to = event.getTo();
+		if (to != null) {
+			var player = event.getPlayer();
+			update(stickfight.getPlayerRegistry().getSlot(player), player, player.getGameMode(), stickfight.isWithinConfinedArea(to));
+		}
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
+			var movementDispatcher = stickfight.getMovementDispatcher();
+			movementDispatcher.subscribe(this);
+
+			var tickScheduler = stickfight.getTickScheduler();
+			task = tickScheduler.schedule("StickService.tick", TickScheduler.Priority.NORMAL, 1, this::tick);
+			repairTask = tickScheduler.schedule("StickService.repair", TickScheduler.Priority.LOW, REPAIR_INTERVAL, this::repair);
+
+			invalidateAll();
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by canceling its task, unregistering it as a {@link Listener} and unsubscribing from movements.
+	 */
+	public void stop() {
+		HandlerList.unregisterAll(this);
+		var movementDispatcher = stickfight.getMovementDispatcher();
+		movementDispatcher.unsubscribe(this);
+		if (task != null) {
+			task.cancel();
+		}
+		if (repairTask != null) {
+			repairTask.cancel();
+		}
+		Arrays.fill(armed, UNKNOWN);
+		Arrays.fill(dirty, 0);
+		dirtyAny = false;
+		running = false;
+	}
+
+	/**
+	 * Grows the arrays, so that they can hold the state of a slot.
+	 *
+	 * @param slot the slot
+	 */
+	private void ensureCapacity(int slot) {
+		if (slot >= armed.length) {
+			var capacity = Math.max(armed.length * 2, slot + 1);
+			armed = Arrays.copyOf(armed, capacity);
+		}
+		if (slot >> 6 >= dirty.length) {
+			dirty = Arrays.copyOf(dirty, Math.max(dirty.length * 2, (slot >> 6) + 1));
+		}
+	}
+
+	/**
+	 * Marks a {@link HumanEntity} as dirty if it is a {@link Player}.
+	 *
+	 * @param entity the {@link HumanEntity} whose inventory should be checked on the next tick
+	 */
+	private void markDirty(HumanEntity entity) {
+		if (entity instanceof Player player) {
+			var slot = stickfight.getPlayerRegistry().getSlot(player);
+			if (slot >= 0) {
+				markDirty(slot);
+			}
+		}
+	}
+
+	/**
+	 * Marks a slot as dirty.
+	 *
+	 * @param slot the slot of the {@link Player} whose inventory should be checked on the next tick
+	 */
+	private void markDirty(int slot) {
+		ensureCapacity(slot);
+		dirty[slot >> 6] |= 1L << slot;
+		dirtyAny = true;
+	}
+
+	/**
+	 * Compares the inventory of a {@link Player} with the expected state and fixes it if necessary.
+	 *
+	 * @param slot   the slot of the {@link Player}
+	 * @param player the {@link Player} to check
+	 */
+	private void reconcile(int slot, Player player) {
+		ensureCapacity(slot);
+		if (player.getGameMode() != GameMode.ADVENTURE) {
+			armed[slot] = UNKNOWN;
+			return;
+		}
+
+		var expected = stickfight.isWithinConfinedArea(player.getLocation());
+		var inventory = player.getInventory();
+		var item = inventory.getItem(SLOT);
+		if (expected && !stick.isSimilar(item)) {
+			inventory.setItem(SLOT, stick);
+			sticksIssued.increment();
+		} else if (!expected && item != null) {
+			inventory.setItem(SLOT, null);
+		}
+		armed[slot] = expected ? ARMED : UNARMED;
+	}
+
+	/**
+	 * Checks the inventories of all online {@link Player players}.
+	 * Runs every {@link StickService#REPAIR_INTERVAL repair interval}, or less often while the server is under load.
+	 */
+	private void repair() {
+		var playerRegistry = stickfight.getPlayerRegistry();
+		for (var slot = 0; slot < playerRegistry.getSlotCount(); slot++) {
+			var player = playerRegistry.getPlayer(slot);
+			if (player != null) {
+				reconcile(slot, player);
+			}
+		}
+	}
+
+	/**
+	 * Checks all dirty {@link Player players}.
+	 * While the server is under load, dirty {@link Player players} are only checked every few ticks, see
+	 * {@link QualityLevel#getStickCheckInterval()}. The interval is measured in elapsed ticks, so that it does not
+	 * multiply with the stretch of the {@link TickScheduler}.
+	 */
+	private void tick() {
+		var tickCount = stickfight.getTickScheduler().getTickCount();
+		if (tickCount - lastCheck < stickfight.getQualityController().getLevel().getStickCheckInterval()) {
+			return;
+		}
+		lastCheck = tickCount;
+
+		var playerRegistry = stickfight.getPlayerRegistry();
+		if (dirtyAny) {
+			for (var word = 0; word < dirty.length; word++) {
+				var bits = dirty[word];
+				dirty[word] = 0;
+				while (bits != 0) {
+					var slot = word << 6 | Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					var player = playerRegistry.getPlayer(slot);
+					if (player != null && player.isOnline()) {
+						reconcile(slot, player);
+					}
+				}
+			}
+			dirtyAny = false;
+		}
+	}
+
+	/**
+	 * Gives or takes the stick if a {@link Player} in {@link GameMode#ADVENTURE adventure mode} entered or left the play area.
+	 *
+	 * @param slot               the slot of the {@link Player} or <code>-1</code> if the {@link Player} has none
+	 * @param player             the {@link Player} that moved
+	 * @param gameMode           the {@link GameMode} of the {@link Player}
+	 * @param withinConfinedArea whether the {@link Player} is within the play area now
+	 */
+	private void update(int slot, Player player, GameMode gameMode, boolean withinConfinedArea) {
+		if (slot < 0 || gameMode != GameMode.ADVENTURE) {
+			return;
+		}
+
+		ensureCapacity(slot);
+		var expected = withinConfinedArea;
+		var state = expected ? ARMED : UNARMED;
+		var previous = armed[slot];
+		armed[slot] = state;
+		if (previous != state) {
+			var inventory = player.getInventory();
+			inventory.setItem(SLOT, expected ? stick : null);
+			if (expected) {
+				sticksIssued.increment();
+			}
+		}
+	}
+}
@@ -1,69 +1,229 @@
 package de.wariashi.stickfight;
 
+import java.io.File;
+
 import org.bukkit.*;
-import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerInteractEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
-public class Stickfight extends JavaPlugin implements Listener {
+public class Stickfight extends JavaPlugin implements Listener, MovementSubscriber {
+	private ArenaResetService arenaResetService;
 	private Configuration configuration;
-	private GlassPaneService glassPaneService;
+	private ConfigurationWatcher configurationWatcher;
+	private EffectDispatcher effectDispatcher;
 	private KillCounterService killCounterService;
+	private LeaderboardService leaderboardService;
+	private Metrics metrics;
+	private MetricsService metricsService;
+	private MovementDispatcher movementDispatcher;
+	private PlayerRegistry playerRegistry;
+	private QualityController qualityController;
+	private ReplayRecorder replayRecorder;
+	private StickService stickService;
+	private TickScheduler tickScheduler;
+	private WorldService worldService;
+
+	/**
+	 * Creates the plugin when it is loaded by the server.
+	 */
+	public Stickfight() {
+	}
+
+	/**
+	 * Creates the plugin outside of a server, e.g. for benchmarks, with the initialization constructor of
+	 * {@link JavaPlugin}. The {@link Configuration} is read from the data folder and the services that the other
+	 * services depend on are created, but none of them is started and the plugin is not enabled.
+	 *
+	 * @param loader      the {@link JavaPluginLoader} of the server
+	 * @param description the {@link PluginDescriptionFile} of the plugin
+	 * @param dataFolder  the folder that contains the configuration and all other files of the plugin
+	 * @param file        the jar file of the plugin
+	 */
+	protected Stickfight(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+		super(loader, description, dataFolder, file);
+		createServices();
+	}
+
+	/**
+	 * Looks up the {@link Arena} that contains a {@link Location}.
+	 *
+	 * @param location the {@link Location}
+	 * @return the {@link Arena} or <code>null</code> if the {@link Location} is not within any arena
+	 */
+	public Arena getArena(Location location) {
+		return configuration.getSnapshot().getArena(location);
+	}
+
+	/**
+	 * @return the {@link ArenaResetService} that captures {@link Arena arenas} and resets them between rounds
+	 */
+	public ArenaResetService getArenaResetService() {
+		return arenaResetService;
+	}
+
+	/**
+	 * @return the {@link Configuration} of the plugin
+	 */
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * @return the {@link EffectDispatcher} that sends particles and sounds to nearby {@link Player players}
+	 */
+	public EffectDispatcher getEffectDispatcher() {
+		return effectDispatcher;
+	}
+
+	/**
+	 * @return the {@link LeaderboardService} that shows the {@link Player players} with the most kills
+	 */
+	public LeaderboardService getLeaderboardService() {
+		return leaderboardService;
+	}
+
+	/**
+	 * @return the {@link Metrics} that event handlers and scheduled tasks report to
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the {@link MovementDispatcher} that hands {@link Movement movements} of {@link Player players} to subscribers
+	 */
+	public MovementDispatcher getMovementDispatcher() {
+		return movementDispatcher;
+	}
+
+	/**
+	 * @return the {@link PlayerRegistry} that assigns a slot to every online {@link Player}
+	 */
+	public PlayerRegistry getPlayerRegistry() {
+		return playerRegistry;
+	}
+
+	/**
+	 * @return the {@link QualityController} that decides on the level of detail depending on the load of the server
+	 */
+	public QualityController getQualityController() {
+		return qualityController;
+	}
 
 	/**
-	 * Tests whether a {@link Location} is within the area that is specified in the {@link Configuration}.
-	 * If the area is unlimited, this method will always return <code>true</code>.
+	 * @return the {@link ReplayRecorder} that records matches if replays are enabled
+	 */
+	public ReplayRecorder getReplayRecorder() {
+		return replayRecorder;
+	}
+
+	/**
+	 * @return the {@link TickScheduler} that runs the periodic work of all services
+	 */
+	public TickScheduler getTickScheduler() {
+		return tickScheduler;
+	}
+
+	/**
+	 * @return the {@link WorldService} that keeps a {@link GlassPaneService} for every {@link World} that contains arenas
+	 */
+	public WorldService getWorldService() {
+		return worldService;
+	}
+
+	/**
+	 * Tests whether a {@link Location} is within any {@link Arena} that is specified in the {@link Configuration}.
 	 *
 	 * @param location the {@link Location} to test
 	 * @return <code>true</code> if the {@link Location} is within the area, <code>false</code> otherwise
 	 */
 	public boolean isWithinConfinedArea(Location location) {
-		var isUnlimited = configuration.isUnlimited();
-		if (isUnlimited) {
-			return true;
-		}
-
-		var maxX = configuration.getMaxX();
-		var maxY = configuration.getMaxY();
-		var maxZ = configuration.getMaxZ();
-		var minX = configuration.getMinX();
-		var minY = configuration.getMinY();
-		var minZ = configuration.getMinZ();
+		var snapshot = configuration.getSnapshot();
+		return snapshot.contains(location);
+	}
 
-		var x = location.getBlockX();
-		var y = location.getBlockY();
-		var z = location.getBlockZ();
+	/**
+	 * Kills {@link Player players} in or below the kill layer if they are in {@link GameMode#ADVENTURE adventure mode}.
+	 * Below an {@link Arena}, the kill layer of the arena applies.
+	 *
+	 * @param movement the {@link Movement} of a {@link Player} to another block
+	 * @see ConfigurationSnapshot#getKillLayer(World, int, int)
+	 */
+	@Override
+	public void onBlockChange(Movement movement) {
+		if (movement.getGameMode() != GameMode.ADVENTURE) {
+			return;
+		}
 
-		return minX <= x && x <= maxX && minY <= y && y <= maxY && minZ <= z && z <= maxZ;
+		var location = movement.getTo();
+		var killLayer = configuration.getSnapshot().getKillLayer(location.getWorld(), movement.getBlockX(), movement.getBlockZ());
+		if (movement.getBlockY() <= killLayer) {
+			effectDispatcher.playParticle(location, Particle.LAVA, 50, null);
+			effectDispatcher.playSound(location, Sound.ENTITY_FIREWORK_ROCKET_LARGE_BLAST, 1.0f, 1.0f);
+			movement.getPlayer().setHealth(0.0);
+			replayRecorder.recordDeath(movement.getSlot());
+		}
 	}
 
 	@Override
 	public void onDisable() {
-		glassPaneService.stop();
+		movementDispatcher.unsubscribe(this);
+		configurationWatcher.stop();
+		arenaResetService.stop();
+		metricsService.stop();
+		worldService.stop();
+		effectDispatcher.stop();
 		killCounterService.stop();
+		leaderboardService.stop();
+		stickService.stop();
+		replayRecorder.stop();
+		movementDispatcher.stop();
+		qualityController.stop();
+		tickScheduler.stop();
+		playerRegistry.stop();
 	}
 
 	@Override
 	public void onEnable() {
-		var worlds = Bukkit.getWorlds();
-		var overworld = worlds.getFirst();
-
-		configuration = new Configuration(this);
-		glassPaneService = new GlassPaneService(this, overworld);
-		glassPaneService.start();
+		createServices();
+		playerRegistry.start();
+		tickScheduler.start();
+		qualityController.start();
+		metricsService = new MetricsService(this);
+		metricsService.start();
+		replayRecorder.start();
+		movementDispatcher.subscribe(this);
+		movementDispatcher.start();
+		configurationWatcher = new ConfigurationWatcher(this);
+		if (configuration.isWatchFile()) {
+			configurationWatcher.start();
+		}
+		effectDispatcher.start();
+		worldService = new WorldService(this);
+		worldService.start();
+		leaderboardService = new LeaderboardService(this);
+		leaderboardService.start();
 		killCounterService = new KillCounterService(this);
 		killCounterService.start();
+		stickService = new StickService(this);
+		stickService.start();
+		arenaResetService = new ArenaResetService(this);
+		arenaResetService.start();
 
 		var pluginManager = Bukkit.getPluginManager();
 		pluginManager.registerEvents(this, this);
 
-		var scheduler = Bukkit.getScheduler();
-		scheduler.runTaskTimer(this, this::giveSticks, 0, 1);
+		var command = getCommand("stickfight");
+		if (command != null) {
+			var executor = new StickfightCommand(this);
+			command.setExecutor(executor);
+			command.setTabCompleter(executor);
+		}
 	}
 
 	/**
@@ -90,52 +250,39 @@ public class Stickfight extends JavaPlugin implements Listener {
 	}
 
 	/**
-	 * Kills all {@link Player players} in or below the kill layer if they are in {@link GameMode#ADVENTURE adventure mode}.
-	 *
-	 * @param event the event that is called when a player moves
-	 * @see Configuration#getKillLayer()
+	 * Reloads the {@link Configuration} from the config file.
+	 * The new values take effect immediately, so the play area can be changed without restarting the server.
 	 */
-	@EventHandler
-	public void onPlayerMove(PlayerMoveEvent event) {
-		var player = event.getPlayer();
-		var gameMode = player.getGameMode();
-		if (gameMode != GameMode.ADVENTURE) {
-			return;
+	public void reloadConfiguration() {
+		configuration.reload();
+		worldService.reload();
+		stickService.invalidateAll();
+		if (configuration.isWatchFile()) {
+			configurationWatcher.start();
+		} else {
+			configurationWatcher.stop();
 		}
-
-		var location = player.getLocation();
-		var y = location.getBlockY();
-		var killLayer = configuration.getKillLayer();
-		if (y <= killLayer) {
-			var onlinePlayers = Bukkit.getOnlinePlayers().toArray(new Player[0]);
-			for (var onlinePlayer : onlinePlayers) {
-				onlinePlayer.spawnParticle(Particle.LAVA, location, 50);
-				onlinePlayer.playSound(location, Sound.ENTITY_FIREWORK_ROCKET_LARGE_BLAST, 1.0f, 1.0f);
-			}
-			player.setHealth(0.0);
+		metricsService.stop();
+		metricsService.start();
+		if (configuration.isReplayEnabled()) {
+			replayRecorder.start();
+		} else {
+			replayRecorder.stop();
 		}
+		getLogger().info("Configuration reloaded");
 	}
 
 	/**
-	 * Gives a stick with {@link Enchantment#KNOCKBACK Knockback 5 enchantment} to every {@link Player} that is online
-	 * and in {@link GameMode#ADVENTURE adventure mode}.
-	 * If the play area is limited, only {@link Player players} within the defined area will receive sticks.
-	 */
-	private void giveSticks() {
-		var players = Bukkit.getOnlinePlayers().toArray(new Player[0]);
-		for (var player : players) {
-			var gameMode = player.getGameMode();
-			var location = player.getLocation();
-			if (gameMode == GameMode.ADVENTURE) {
-				var inventory = player.getInventory();
-				if (isWithinConfinedArea(location)) {
-					var stick = new ItemStack(Material.STICK);
-					stick.addUnsafeEnchantment(Enchantment.KNOCKBACK, 5);
-					inventory.setItem(0, stick);
-				} else {
-					inventory.setItem(0, null);
-				}
-			}
-		}
+	 * Reads the {@link Configuration} and creates the services that the other services depend on, without starting them.
+	 */
+	private void createServices() {
+		configuration = new Configuration(this);
+		metrics = new Metrics();
+		playerRegistry = new PlayerRegistry(this);
+		tickScheduler = new TickScheduler(this);
+		qualityController = new QualityController(this);
+		replayRecorder = new ReplayRecorder(this);
+		movementDispatcher = new MovementDispatcher(this);
+		effectDispatcher = new EffectDispatcher(this);
 	}
 }
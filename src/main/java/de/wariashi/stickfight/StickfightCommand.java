@@ -0,0 +1,142 @@
+package de.wariashi.stickfight;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+/**
+ * The {@link StickfightCommand} handles the <code>/stickfight</code> command that allows server admins to manage the plugin.
+ */
+public class StickfightCommand implements TabExecutor {
+	private static final String RELOAD = "reload";
+	private static final String RESET = "reset";
+	private static final String SNAPSHOT = "snapshot";
+	private static final String STATS = "stats";
+	private static final List<String> SUBCOMMANDS = List.of(RELOAD, RESET, SNAPSHOT, STATS);
+
+	private final Stickfight stickfight;
+
+	/**
+	 * Creates a new {@link StickfightCommand}.
+	 *
+	 * @param stickfight the stickfight plugin that this command is associated with
+	 */
+	public StickfightCommand(Stickfight stickfight) {
+		this.stickfight = stickfight;
+	}
+
+	@Override
+	public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+		if (args.length == 0) {
+			return false;
+		}
+
+		switch (args[0]) {
+			case RELOAD -> {
+				if (args.length != 1) {
+					return false;
+				}
+				stickfight.reloadConfiguration();
+				sender.sendMessage("The Stickfight configuration has been reloaded.");
+			}
+			case RESET, SNAPSHOT -> {
+				if (args.length != 2) {
+					return false;
+				}
+				var arena = findArena(args[1]);
+				if (arena == null) {
+					sender.sendMessage("There is no arena named " + args[1] + ".");
+				} else if (args[0].equals(RESET)) {
+					stickfight.getArenaResetService().reset(arena, sender);
+				} else {
+					stickfight.getArenaResetService().snapshot(arena, sender);
+				}
+			}
+			case STATS -> {
+				if (args.length != 1) {
+					return false;
+				}
+				sendStats(sender);
+			}
+			default -> {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+		if (args.length == 1) {
+			return SUBCOMMANDS.stream().filter(subcommand -> subcommand.startsWith(args[0])).toList();
+		} else if (args.length == 2 && (args[0].equals(RESET) || args[0].equals(SNAPSHOT))) {
+			var arenas = stickfight.getConfiguration().getSnapshot().arenas().getArenas();
+			return arenas.stream().map(Arena::name).filter(name -> name.startsWith(args[1])).toList();
+		}
+		return List.of();
+	}
+
+	/**
+	 * Looks up an {@link Arena} by its name.
+	 *
+	 * @param name the name of the {@link Arena}
+	 * @return the {@link Arena} or <code>null</code> if there is no arena with the given name
+	 */
+	private Arena findArena(String name) {
+		for (var arena : stickfight.getConfiguration().getSnapshot().arenas().getArenas()) {
+			if (arena.name().equals(name)) {
+				return arena;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Formats a duration for the chat.
+	 *
+	 * @param nanos the duration in nanoseconds
+	 * @return the duration in microseconds or milliseconds
+	 */
+	private String formatDuration(long nanos) {
+		if (nanos == Long.MAX_VALUE) {
+			var last = LatencyHistogram.BUCKET_BOUNDS[LatencyHistogram.BUCKET_BOUNDS.length - 1];
+			return ">" + formatDuration(last);
+		} else if (nanos < 1_000_000) {
+			return String.format(Locale.ROOT, "%.1fµs", nanos / 1_000.0);
+		}
+		return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+	}
+
+	/**
+	 * Sends the collected {@link Metrics} to a {@link CommandSender}.
+	 * For every event handler and scheduled task, the number of calls, the mean duration and an upper bound for the
+	 * 99th percentile are shown.
+	 *
+	 * @param sender the {@link CommandSender} that requested the stats
+	 */
+	private void sendStats(CommandSender sender) {
+		var metrics = stickfight.getMetrics();
+		sender.sendMessage("Stickfight handlers (calls, mean, p99):");
+		for (var entry : metrics.getHandlers().entrySet()) {
+			var histogram = entry.getValue();
+			var count = histogram.getCount();
+			if (count > 0) {
+				var mean = formatDuration(histogram.getSum() / count);
+				var p99 = formatDuration(histogram.getPercentile(0.99));
+				sender.sendMessage("  " + entry.getKey() + ": " + count + ", " + mean + ", <=" + p99);
+			}
+		}
+		sender.sendMessage("Stickfight counters:");
+		for (var entry : metrics.getCounters().entrySet()) {
+			sender.sendMessage("  " + entry.getKey() + ": " + entry.getValue().sum());
+		}
+		sender.sendMessage("Stickfight gauges:");
+		for (var entry : metrics.getGauges().entrySet()) {
+			sender.sendMessage("  " + entry.getKey() + ": " + entry.getValue().getAsDouble());
+		}
+		sender.sendMessage("Quality level: " + stickfight.getQualityController().getLevel());
+	}
+}
@@ -0,0 +1,266 @@
+package de.wariashi.stickfight;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * The {@link TickScheduler} runs the periodic work of all services in a single task on the main thread.
+ * <p>
+ * Scheduled tasks run in the order of their {@link Priority} and, within the same priority, in the order in which they
+ * were scheduled. The time spent in each task is recorded in the {@link Metrics}. All tasks share the
+ * {@link ConfigurationSnapshot#tickBudget() tick budget}: once it has been used up, the remaining tasks that are not
+ * {@link Priority#CRITICAL critical} are deferred to the next tick.
+ * <p>
+ * The scheduler also measures how long a tick actually takes. While the server falls behind 20 ticks per second, the
+ * intervals of all tasks that are not critical are stretched, up to {@link #MAX_STRETCH} times, and they are shrunk
+ * back once the server has caught up.
+ * <p>
+ * The scheduler is not thread-safe and is supposed to be used from the main thread only.
+ */
+public class TickScheduler {
+	/**
+	 * The highest factor by which the intervals of tasks that are not critical are stretched.
+	 */
+	public static final int MAX_STRETCH = 8;
+
+	private static final int ADJUST_INTERVAL = 20; // ticks
+	private static final double CATCH_UP_THRESHOLD = 50.5; // milliseconds
+	private static final double LAG_THRESHOLD = 52.5; // milliseconds
+	private static final double SMOOTHING = 0.05;
+	private static final double TICK_DURATION = 50; // milliseconds
+
+	private double averageTickDuration = TICK_DURATION;
+	private final LongAdder deferred;
+	private long lastTickStart;
+	private final LongAdder overruns;
+	private boolean running = false;
+	private ScheduledTask[] scheduledTasks = new ScheduledTask[0];
+	private final Stickfight stickfight;
+	private int stretch = 1;
+	private BukkitTask task;
+	private long tickCount;
+
+	/**
+	 * Creates a new {@link TickScheduler}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public TickScheduler(Stickfight stickfight) {
+		this.stickfight = stickfight;
+		var metrics = stickfight.getMetrics();
+		deferred = metrics.counter("stickfight_tick_tasks_deferred_total", "Scheduled tasks deferred to the next tick because the tick budget was used up.");
+		overruns = metrics.counter("stickfight_tick_budget_overruns_total", "Ticks in which the scheduled tasks took longer than the tick budget.");
+	}
+
+	/**
+	 * Returns how long a tick of the server takes on average, including the time spent by other plugins and the
+	 * server itself. A server that keeps up with 20 ticks per second takes 50 milliseconds per tick.
+	 *
+	 * @return the smoothed duration of a tick in milliseconds
+	 */
+	public double getAverageTickDuration() {
+		return averageTickDuration;
+	}
+
+	/**
+	 * @return the factor by which the intervals of tasks that are not {@link Priority#CRITICAL critical} are currently stretched
+	 */
+	public int getStretch() {
+		return stretch;
+	}
+
+	/**
+	 * @return the number of ticks that have passed since the scheduler has been started
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * Schedules a task that runs periodically on the main thread, starting with the next tick.
+	 *
+	 * @param name     the name under which the time spent in the task is recorded, e.g. <code>GlassPaneService.tick</code>
+	 * @param priority the {@link Priority} of the task
+	 * @param interval the number of ticks between two runs while the server keeps up
+	 * @param runnable the work of the task
+	 * @return the {@link ScheduledTask}, which can be used to cancel the task
+	 */
+	public ScheduledTask schedule(String name, Priority priority, long interval, Runnable runnable) {
+		var scheduledTask = new ScheduledTask(this, priority, Math.max(1, interval), runnable, stickfight.getMetrics().handler(name));
+		scheduledTask.nextRun = tickCount + 1;
+
+		// insert after all tasks with the same or a higher priority
+		var index = 0;
+		while (index < scheduledTasks.length && scheduledTasks[index].priority.compareTo(priority) <= 0) {
+			index++;
+		}
+		var copy = new ScheduledTask[scheduledTasks.length + 1];
+		System.arraycopy(scheduledTasks, 0, copy, 0, index);
+		copy[index] = scheduledTask;
+		System.arraycopy(scheduledTasks, index, copy, index + 1, scheduledTasks.length - index);
+		scheduledTasks = copy;
+		return scheduledTask;
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var scheduler = Bukkit.getScheduler();
+			task = scheduler.runTaskTimer(stickfight, this::tick, 1, 1);
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the service by canceling its task. Scheduled tasks are kept and run again once the service is restarted.
+	 */
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+		}
+		lastTickStart = 0;
+		running = false;
+	}
+
+	/**
+	 * Runs all tasks that are due, as long as the tick budget allows it.
+	 * Once the service has been {@link #start() started}, this is called by the server in every tick. Outside of a server,
+	 * e.g. in benchmarks, ticks can be run by calling it directly instead of starting the service.
+	 */
+	public void tick() {
+		var tickStart = System.nanoTime();
+		tickCount++;
+		measure(tickStart);
+
+		var budget = TimeUnit.MICROSECONDS.toNanos(stickfight.getConfiguration().getSnapshot().tickBudget());
+		var currentTasks = scheduledTasks;
+		var overrun = false;
+		for (var scheduledTask : currentTasks) {
+			if (scheduledTask.cancelled || scheduledTask.nextRun > tickCount) {
+				continue;
+			}
+
+			var critical = scheduledTask.priority == Priority.CRITICAL;
+			var start = System.nanoTime();
+			if (!critical && start - tickStart >= budget) {
+				// stays due, so it runs as soon as there is time left
+				deferred.increment();
+				overrun = true;
+				continue;
+			}
+
+			try {
+				scheduledTask.runnable.run();
+			} finally {
+				scheduledTask.latency.recordSince(start);
+				scheduledTask.nextRun = tickCount + (critical ? scheduledTask.interval : scheduledTask.interval * stretch);
+			}
+		}
+		if (overrun || System.nanoTime() - tickStart > budget) {
+			overruns.increment();
+		}
+	}
+
+	/**
+	 * Removes a task, so that it does not run anymore.
+	 *
+	 * @param scheduledTask the {@link ScheduledTask}
+	 */
+	private void cancel(ScheduledTask scheduledTask) {
+		var remaining = new ScheduledTask[scheduledTasks.length];
+		var count = 0;
+		for (var current : scheduledTasks) {
+			if (current != scheduledTask) {
+				remaining[count++] = current;
+			}
+		}
+		scheduledTasks = Arrays.copyOf(remaining, count);
+	}
+
+	/**
+	 * Measures the duration of the last tick and adjusts the stretch of the intervals once per second.
+	 *
+	 * @param tickStart the time at which the current tick started as returned by {@link System#nanoTime()}
+	 */
+	private void measure(long tickStart) {
+		if (lastTickStart != 0) {
+			var duration = (tickStart - lastTickStart) / 1_000_000.0;
+			averageTickDuration += (duration - averageTickDuration) * SMOOTHING;
+		}
+		lastTickStart = tickStart;
+
+		if (tickCount % ADJUST_INTERVAL == 0) {
+			if (averageTickDuration > LAG_THRESHOLD) {
+				stretch = Math.min(MAX_STRETCH, stretch * 2);
+			} else if (averageTickDuration < CATCH_UP_THRESHOLD) {
+				stretch = Math.max(1, stretch / 2);
+			}
+		}
+	}
+
+	/**
+	 * The priorities of scheduled tasks, from the highest to the lowest.
+	 */
+	public enum Priority {
+		/**
+		 * Tasks that run in every interval, regardless of the tick budget and the load of the server, e.g. sending effects.
+		 */
+		CRITICAL,
+
+		/**
+		 * Tasks that affect the game, e.g. restoring glass panes or repairing sticks.
+		 */
+		NORMAL,
+
+		/**
+		 * Tasks that only do bookkeeping, e.g. updating the leaderboard or flushing statistics.
+		 */
+		LOW
+	}
+
+	/**
+	 * A task that has been scheduled with a {@link TickScheduler}.
+	 */
+	public static final class ScheduledTask {
+		private boolean cancelled = false;
+		private final long interval;
+		private final LatencyHistogram latency;
+		private long nextRun;
+		private final Priority priority;
+		private final Runnable runnable;
+		private final TickScheduler scheduler;
+
+		/**
+		 * Creates a new {@link ScheduledTask}.
+		 *
+		 * @param scheduler the {@link TickScheduler} that runs the task
+		 * @param priority  the {@link Priority} of the task
+		 * @param interval  the number of ticks between two runs while the server keeps up
+		 * @param runnable  the work of the task
+		 * @param latency   the {@link LatencyHistogram} that the time spent in the task is recorded in
+		 */
+		private ScheduledTask(TickScheduler scheduler, Priority priority, long interval, Runnable runnable, LatencyHistogram latency) {
+			this.scheduler = scheduler;
+			this.priority = priority;
+			this.interval = interval;
+			this.runnable = runnable;
+			this.latency = latency;
+		}
+
+		/**
+		 * Cancels the task, so that it does not run anymore.
+		 */
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				scheduler.cancel(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package de.wariashi.stickfight;
+
+/**
+ * Enumerates all blocks that a line segment passes through, in the order in which they are crossed.
+ * This is the 3D DDA algorithm by Amanatides and Woo, it works on primitives only and does not allocate.
+ */
+public final class VoxelTraversal {
+	/**
+	 * The maximum number of blocks that are visited by a single traversal.
+	 * Longer segments are cut off, so that e.g. a glitched movement across the map cannot stall the server.
+	 */
+	public static final int MAX_BLOCKS = 64;
+
+	private VoxelTraversal() {
+	}
+
+	/**
+	 * Visits every block that the segment from the start to the end point passes through, including the blocks
+	 * that contain the start and the end point.
+	 *
+	 * @param startX  the x coordinate of the start point
+	 * @param startY  the y coordinate of the start point
+	 * @param startZ  the z coordinate of the start point
+	 * @param endX    the x coordinate of the end point
+	 * @param endY    the y coordinate of the end point
+	 * @param endZ    the z coordinate of the end point
+	 * @param visitor the {@link Visitor} that is called for every block
+	 * @return the number of visited blocks
+	 */
+	public static int traverse(double startX, double startY, double startZ, double endX, double endY, double endZ, Visitor visitor) {
+		var x = (int) Math.floor(startX);
+		var y = (int) Math.floor(startY);
+		var z = (int) Math.floor(startZ);
+		var lastX = (int) Math.floor(endX);
+		var lastY = (int) Math.floor(endY);
+		var lastZ = (int) Math.floor(endZ);
+
+		var deltaX = endX - startX;
+		var deltaY = endY - startY;
+		var deltaZ = endZ - startZ;
+		var stepX = (int) Math.signum(deltaX);
+		var stepY = (int) Math.signum(deltaY);
+		var stepZ = (int) Math.signum(deltaZ);
+
+		// the fraction of the segment that is needed to cross one block along each axis
+		var tDeltaX = stepX == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / deltaX);
+		var tDeltaY = stepY == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / deltaY);
+		var tDeltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / deltaZ);
+
+		// the fraction of the segment at which the next block boundary is crossed along each axis
+		var tMaxX = boundary(startX, x, stepX, tDeltaX);
+		var tMaxY = boundary(startY, y, stepY, tDeltaY);
+		var tMaxZ = boundary(startZ, z, stepZ, tDeltaZ);
+
+		var visited = 0;
+		while (true) {
+			visitor.visit(x, y, z);
+			visited++;
+			if (x == lastX && y == lastY && z == lastZ || visited == MAX_BLOCKS) {
+				return visited;
+			}
+
+			if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+				if (1 < tMaxX) {
+					return visited;
+				}
+				x += stepX;
+				tMaxX += tDeltaX;
+			} else if (tMaxY <= tMaxZ) {
+				if (1 < tMaxY) {
+					return visited;
+				}
+				y += stepY;
+				tMaxY += tDeltaY;
+			} else {
+				if (1 < tMaxZ) {
+					return visited;
+				}
+				z += stepZ;
+				tMaxZ += tDeltaZ;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the fraction of the segment at which the first block boundary is crossed along one axis.
+	 *
+	 * @param start  the start coordinate along the axis
+	 * @param block  the block coordinate that contains the start coordinate
+	 * @param step   the direction of the segment along the axis
+	 * @param tDelta the fraction of the segment that is needed to cross one block along the axis
+	 * @return the fraction of the segment at which the first block boundary is crossed
+	 */
+	private static double boundary(double start, int block, int step, double tDelta) {
+		if (step > 0) {
+			return (block + 1 - start) * tDelta;
+		} else if (step < 0) {
+			return (start - block) * tDelta;
+		} else {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Receives the blocks of a {@link VoxelTraversal}.
+	 */
+	@FunctionalInterface
+	public interface Visitor {
+		/**
+		 * Called for every block that the segment passes through.
+		 *
+		 * @param x the x coordinate of the block
+		 * @param y the y coordinate of the block
+		 * @param z the z coordinate of the block
+		 */
+		void visit(int x, int y, int z);
+	}
+}
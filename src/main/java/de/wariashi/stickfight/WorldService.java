@@ -0,0 +1,252 @@
+package de.wariashi.stickfight;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * The {@link WorldService} keeps one {@link GlassPaneService} for every loaded {@link World} that contains at least one
+ * {@link Arena}, so stickfight is enabled in a world by configuring an arena in it.
+ * <p>
+ * A world is only {@link GlassPaneService#activate() activated} while there are {@link Player players} in
+ * {@link GameMode#ADVENTURE adventure mode} in it, and it is {@link GlassPaneService#park() parked} as soon as the last
+ * of them has left. Players are only counted when one of them joins, quits, changes the world or the game mode, at
+ * most once per tick, so idle worlds do not cost anything.
+ */
+public class WorldService implements Listener {
+	private final Map<String, GlassPaneService> glassPaneServices = new HashMap<>();
+	private boolean running = false;
+	private final Stickfight stickfight;
+	private boolean updatePending;
+
+	/**
+	 * Creates a new {@link WorldService}.
+	 *
+	 * @param stickfight the stickfight plugin that this service is associated with
+	 */
+	public WorldService(Stickfight stickfight) {
+		this.stickfight = stickfight;
+	}
+
+	/**
+	 * Returns the {@link GlassPaneService} of a {@link World}.
+	 *
+	 * @param world the {@link World}
+	 * @return the {@link GlassPaneService} or <code>null</code> if the world does not contain any {@link Arena}
+	 */
+	public GlassPaneService getGlassPaneService(World world) {
+		return glassPaneServices.get(world.getName());
+	}
+
+	/**
+	 * @return the {@link GlassPaneService glass pane services} of all worlds that contain arenas
+	 */
+	public Collection<GlassPaneService> getGlassPaneServices() {
+		return glassPaneServices.values();
+	}
+
+	/**
+	 * Hands a loaded chunk to the {@link GlassPaneService} of its {@link World}, so that its glass panes are indexed and
+	 * restorations that were deferred until the chunk is loaded are applied.
+	 *
+	 * @param event the {@link Event} that is sent when a chunk has been loaded
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onChunkLoad(ChunkLoadEvent event) {
+		var glassPaneService = glassPaneServices.get(event.getWorld().getName());
+		if (glassPaneService != null) {
+			glassPaneService.onChunkLoad(event.getChunk());
+		}
+	}
+
+	/**
+	 * Counts the players again when a {@link Player} changes the {@link World}.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} has changed the {@link World}
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+		requestUpdate();
+	}
+
+	/**
+	 * Counts the players again when a {@link Player} changes the {@link GameMode}.
+	 *
+	 * @param event the {@link Event} that is sent before a {@link Player} changes the {@link GameMode}
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPlayerGameModeChange(PlayerGameModeChangeEvent event) {
+		requestUpdate();
+	}
+
+	/**
+	 * Counts the players again when a {@link Player} joins the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} joins the server
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		requestUpdate();
+	}
+
+	/**
+	 * Counts the players again when a {@link Player} leaves the server.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link Player} leaves the server
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		requestUpdate();
+	}
+
+	/**
+	 * Creates the {@link GlassPaneService} of a {@link World} that has been loaded if it contains arenas.
+	 *
+	 * @param event the {@link Event} that is sent when a {@link World} has been loaded
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onWorldLoad(WorldLoadEvent event) {
+		refresh();
+	}
+
+	/**
+	 * Stops the {@link GlassPaneService} of a {@link World} that is unloaded.
+	 *
+	 * @param event the {@link Event} that is sent before a {@link World} is unloaded
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onWorldUnload(WorldUnloadEvent event) {
+		var glassPaneService = glassPaneServices.remove(event.getWorld().getName());
+		if (glassPaneService != null) {
+			glassPaneService.stop();
+		}
+	}
+
+	/**
+	 * Adapts the services to changed {@link Arena arenas}: worlds that contain arenas for the first time get a
+	 * {@link GlassPaneService}, worlds without arenas lose theirs and the glass panes of all other worlds are indexed again.
+	 */
+	public void reload() {
+		var existing = Map.copyOf(glassPaneServices);
+		refresh();
+		for (var entry : existing.entrySet()) {
+			if (glassPaneServices.get(entry.getKey()) == entry.getValue()) {
+				entry.getValue().reindex();
+			}
+		}
+	}
+
+	/**
+	 * Starts the service if it has not already been started.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			var pluginManager = Bukkit.getPluginManager();
+			pluginManager.registerEvents(this, stickfight);
+			running = true;
+			refresh();
+		}
+	}
+
+	/**
+	 * Stops the service and the {@link GlassPaneService glass pane services} of all worlds.
+	 */
+	public void stop() {
+		HandlerList.unregisterAll(this);
+		for (var glassPaneService : glassPaneServices.values()) {
+			glassPaneService.stop();
+		}
+		glassPaneServices.clear();
+		running = false;
+	}
+
+	/**
+	 * Tests whether there is at least one {@link Player} in {@link GameMode#ADVENTURE adventure mode} in a {@link World}.
+	 *
+	 * @param world the {@link World}
+	 * @return <code>true</code> if there is such a player, <code>false</code> otherwise
+	 */
+	private boolean hasAdventurePlayers(World world) {
+		for (var player : world.getPlayers()) {
+			if (player.getGameMode() == GameMode.ADVENTURE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates and starts the {@link GlassPaneService glass pane services} of loaded worlds that contain arenas and stops
+	 * the ones of worlds that do not contain arenas anymore. Then activates or parks all of them.
+	 */
+	private void refresh() {
+		if (!running) {
+			return;
+		}
+
+		var worlds = stickfight.getConfiguration().getSnapshot().arenas().getWorlds();
+		var iterator = glassPaneServices.entrySet().iterator();
+		while (iterator.hasNext()) {
+			var entry = iterator.next();
+			if (!worlds.contains(entry.getKey())) {
+				entry.getValue().stop();
+				iterator.remove();
+			}
+		}
+		for (var name : worlds) {
+			var world = Bukkit.getWorld(name);
+			if (world != null && !glassPaneServices.containsKey(name)) {
+				var glassPaneService = new GlassPaneService(stickfight, world);
+				glassPaneService.start();
+				glassPaneServices.put(name, glassPaneService);
+			}
+		}
+		update();
+	}
+
+	/**
+	 * Schedules an {@link #update() update} for the next tick, when the event that caused it has taken effect.
+	 * Several requests within the same tick cause a single update.
+	 */
+	private void requestUpdate() {
+		if (!updatePending) {
+			updatePending = true;
+			Bukkit.getScheduler().runTask(stickfight, this::update);
+		}
+	}
+
+	/**
+	 * Activates the {@link GlassPaneService glass pane services} of worlds with players in
+	 * {@link GameMode#ADVENTURE adventure mode} and parks all others.
+	 */
+	private void update() {
+		updatePending = false;
+		if (!running) {
+			return;
+		}
+		for (var glassPaneService : glassPaneServices.values()) {
+			if (hasAdventurePlayers(glassPaneService.getWorld())) {
+				glassPaneService.activate();
+			} else {
+				glassPaneService.park();
+			}
+		}
+	}
+}
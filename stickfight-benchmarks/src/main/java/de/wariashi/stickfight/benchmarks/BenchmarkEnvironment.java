@@ -0,0 +1,376 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Registry;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.MultipleFacing;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.mockito.Mockito;
+
+import de.wariashi.stickfight.BlockPosition;
+import de.wariashi.stickfight.Configuration;
+import de.wariashi.stickfight.Stickfight;
+
+/**
+ * A stubbed server with one {@link World}, a configurable number of {@link Player players} and an instance of the
+ * {@link Stickfight} plugin that has not been enabled. Blocks are kept in a map, so that glass panes can be placed,
+ * broken and restored.
+ * <p>
+ * The plugin is created with the constructor that {@link Stickfight} provides for running outside of a server and reads
+ * its {@link Configuration} from a config file in a temporary data folder, just like on a server.
+ */
+public class BenchmarkEnvironment {
+	/**
+	 * The size of the limited play area in each direction from the origin.
+	 */
+	public static final int AREA_RADIUS = 32;
+
+	private static final List<Player> ONLINE_PLAYERS = new ArrayList<>();
+	private static final Map<Class<?>, Object> REGISTRY_ENTRIES = new HashMap<>();
+	private static final List<World> WORLDS = new ArrayList<>();
+
+	private final Map<Long, Material> blocks = new HashMap<>();
+	private long gameTime;
+	private final List<Player> players = new ArrayList<>();
+	private final Stickfight stickfight;
+	private final World world;
+
+	static {
+		if (Bukkit.getServer() == null) {
+			Bukkit.setServer(createServer());
+		}
+	}
+
+	/**
+	 * Creates a new {@link BenchmarkEnvironment} with a single arena.
+	 *
+	 * @param playerCount the number of {@link Player players} in {@link GameMode#ADVENTURE adventure mode} within the play area
+	 * @param unlimited   <code>true</code> if the play area should be unlimited, <code>false</code> otherwise
+	 */
+	public BenchmarkEnvironment(int playerCount, boolean unlimited) {
+		this(playerCount, unlimited, 1);
+	}
+
+	/**
+	 * Creates a new {@link BenchmarkEnvironment}.
+	 *
+	 * @param playerCount the number of {@link Player players} in {@link GameMode#ADVENTURE adventure mode} within the play area
+	 * @param unlimited   <code>true</code> if the play area should be unlimited, <code>false</code> otherwise
+	 * @param arenaCount  the number of arenas, see {@link #writeConfiguration(File, boolean, int)}
+	 */
+	public BenchmarkEnvironment(int playerCount, boolean unlimited, int arenaCount) {
+		world = createWorld();
+		WORLDS.clear();
+		WORLDS.add(world);
+
+		try {
+			var dataFolder = Files.createTempDirectory("stickfight-benchmark").toFile();
+			dataFolder.deleteOnExit();
+			writeConfiguration(dataFolder, unlimited, arenaCount);
+			var loader = new JavaPluginLoader(Bukkit.getServer());
+			var description = new PluginDescriptionFile("Stickfight", "benchmark", Stickfight.class.getName());
+			stickfight = new Stickfight(loader, description, dataFolder, new File(dataFolder, "stickfight.jar")) {
+			};
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		ONLINE_PLAYERS.clear();
+		for (var i = 0; i < playerCount; i++) {
+			var x = (i % 16) * 2 - 16 + 0.5;
+			var z = (i / 16) * 2 - 16 + 0.5;
+			var player = createPlayer(new Location(world, x, 0, z));
+			players.add(player);
+			ONLINE_PLAYERS.add(player);
+		}
+
+		stickfight.getPlayerRegistry().start();
+	}
+
+	/**
+	 * Writes the config file that is used by the benchmarks.
+	 * The play area around the origin is the first arena, the other arenas are placed next to each other along the x axis.
+	 * An unlimited play area is the only arena.
+	 *
+	 * @param dataFolder the data folder of the plugin
+	 * @param unlimited  <code>true</code> if the play area should be unlimited, <code>false</code> otherwise
+	 * @param arenaCount the number of arenas
+	 * @throws IOException if the config file cannot be written
+	 */
+	public static void writeConfiguration(File dataFolder, boolean unlimited, int arenaCount) throws IOException {
+		var configuration = new YamlConfiguration();
+		configuration.set("adaptive-quality", false);
+		configuration.set("kill-layer", -20);
+		configuration.set("restoration-budget", 2000);
+		configuration.set("effect-radius", 64);
+		configuration.set("tick-budget", 10000);
+		if (unlimited) {
+			configuration.set("play-area.min.x", -AREA_RADIUS);
+			configuration.set("play-area.min.y", -AREA_RADIUS);
+			configuration.set("play-area.min.z", -AREA_RADIUS);
+			configuration.set("play-area.max.x", AREA_RADIUS);
+			configuration.set("play-area.max.y", AREA_RADIUS);
+			configuration.set("play-area.max.z", AREA_RADIUS);
+			configuration.set("play-area.unlimited", true);
+		} else {
+			for (var i = 0; i < arenaCount; i++) {
+				var minX = i == 0 ? -AREA_RADIUS : AREA_RADIUS * 4 * i;
+				var maxX = i == 0 ? AREA_RADIUS : minX + AREA_RADIUS * 2;
+				var arena = "arenas.arena" + i + ".";
+				configuration.set(arena + "world", "world");
+				configuration.set(arena + "min.x", minX);
+				configuration.set(arena + "min.y", -AREA_RADIUS);
+				configuration.set(arena + "min.z", -AREA_RADIUS);
+				configuration.set(arena + "max.x", maxX);
+				configuration.set(arena + "max.y", AREA_RADIUS);
+				configuration.set(arena + "max.z", AREA_RADIUS);
+				configuration.set(arena + "respawn-time", 60);
+			}
+		}
+		configuration.save(new File(dataFolder, "config.yml"));
+	}
+
+	/**
+	 * Advances the game time of the {@link World} by one tick.
+	 *
+	 * @return the new game time
+	 */
+	public long advanceGameTime() {
+		return ++gameTime;
+	}
+
+	/**
+	 * Places a wall of glass panes along the z axis.
+	 *
+	 * @param x      the x coordinate of the wall
+	 * @param width  the width of the wall
+	 * @param height the height of the wall
+	 */
+	public void buildWall(int x, int width, int height) {
+		for (var z = -width / 2; z < width - width / 2; z++) {
+			for (var y = 0; y < height; y++) {
+				blocks.put(BlockPosition.pack(x, y, z), Material.LIGHT_BLUE_STAINED_GLASS_PANE);
+			}
+		}
+	}
+
+	/**
+	 * @return the {@link Player players} of this environment
+	 */
+	public List<Player> getPlayers() {
+		return players;
+	}
+
+	/**
+	 * @return the {@link Stickfight} plugin, which has not been enabled
+	 */
+	public Stickfight getStickfight() {
+		return stickfight;
+	}
+
+	/**
+	 * @return the {@link World} of this environment
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Creates a {@link BlockData} stub that supports the connections of glass panes.
+	 *
+	 * @param material the {@link Material} of the block
+	 * @return the {@link BlockData}
+	 */
+	private static BlockData createBlockData(Material material) {
+		var faces = Set.of(BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST);
+		return Stubs.stub(MultipleFacing.class, Map.of(
+			"getMaterial", args -> material,
+			"getAllowedFaces", args -> faces
+		));
+	}
+
+	/**
+	 * Creates a {@link Player} stub in {@link GameMode#ADVENTURE adventure mode} with an inventory.
+	 *
+	 * @param location the {@link Location} of the {@link Player}
+	 * @return the {@link Player}
+	 */
+	private Player createPlayer(Location location) {
+		var items = new ItemStack[41];
+		var inventory = Stubs.stub(PlayerInventory.class, Map.of(
+			"getItem", args -> items[(int) args[0]],
+			"setItem", args -> {
+				items[(int) args[0]] = (ItemStack) args[1];
+				return null;
+			}
+		));
+		var uuid = UUID.randomUUID();
+		var entityId = players.size() + 1;
+		var name = "player" + players.size();
+		return Stubs.stub(Player.class, Map.of(
+			"getEntityId", args -> entityId,
+			"getGameMode", args -> GameMode.ADVENTURE,
+			"getInventory", args -> inventory,
+			"getLocation", args -> location,
+			"getName", args -> name,
+			"getUniqueId", args -> uuid,
+			"getWorld", args -> world,
+			"isOnline", args -> true
+		));
+	}
+
+	/**
+	 * Creates the {@link Server} stub that answers the static {@link Bukkit} methods.
+	 *
+	 * @return the {@link Server}
+	 */
+	private static Server createServer() {
+		var logger = Logger.getLogger("Benchmark");
+		var itemFactory = Stubs.stub(ItemFactory.class, Map.of(
+			"getItemMeta", args -> null
+		));
+		return Stubs.stub(Server.class, Map.of(
+			"createBlockData", args -> createBlockData((Material) args[0]),
+			"getBukkitVersion", args -> "benchmark",
+			"getItemFactory", args -> itemFactory,
+			"getLogger", args -> logger,
+			"getName", args -> "Benchmark",
+			"getOnlinePlayers", args -> ONLINE_PLAYERS,
+			"getRegistry", args -> createRegistry((Class<?>) args[0]),
+			"getVersion", args -> "benchmark",
+			"getWorlds", args -> WORLDS
+		));
+	}
+
+	/**
+	 * Creates a {@link Registry} stub that returns the same entry for every key.
+	 * Classes like enchantments cannot be stubbed with dynamic proxies, so they are mocked.
+	 *
+	 * @param type the type of the entries
+	 * @return the {@link Registry}
+	 */
+	private static Registry<?> createRegistry(Class<?> type) {
+		var entry = REGISTRY_ENTRIES.computeIfAbsent(type, key -> key.isInterface() ? Stubs.stub(key) : Mockito.mock(key));
+		Function<Object[], Object> answer = args -> entry;
+		return Stubs.stub(Registry.class, Map.of(
+			"get", answer,
+			"getOrThrow", answer,
+			"match", answer
+		));
+	}
+
+	/**
+	 * Creates a {@link Block} stub that reads from and writes to the block map.
+	 *
+	 * @param x the x coordinate of the block
+	 * @param y the y coordinate of the block
+	 * @param z the z coordinate of the block
+	 * @return the {@link Block}
+	 */
+	private Block createBlock(int x, int y, int z) {
+		var position = BlockPosition.pack(x, y, z);
+		Function<Object[], Object> setType = args -> {
+			blocks.put(position, (Material) args[0]);
+			return null;
+		};
+		Function<Object[], Object> setBlockData = args -> {
+			blocks.put(position, ((BlockData) args[0]).getMaterial());
+			return null;
+		};
+		return Stubs.stub(Block.class, Map.ofEntries(
+			Map.entry("breakNaturally", args -> blocks.remove(position) != null),
+			Map.entry("getBlockData", args -> createBlockData(blocks.getOrDefault(position, Material.AIR))),
+			Map.entry("getLocation", args -> new Location(world, x, y, z)),
+			Map.entry("getRelative", args -> {
+				var face = (BlockFace) args[0];
+				return createBlock(x + face.getModX(), y + face.getModY(), z + face.getModZ());
+			}),
+			Map.entry("getType", args -> blocks.getOrDefault(position, Material.AIR)),
+			Map.entry("getWorld", args -> world),
+			Map.entry("getX", args -> x),
+			Map.entry("getY", args -> y),
+			Map.entry("getZ", args -> z),
+			Map.entry("setBlockData", setBlockData),
+			Map.entry("setType", setType)
+		));
+	}
+
+	/**
+	 * Creates a {@link Chunk} stub whose snapshots read from the block map.
+	 *
+	 * @param chunkX the x coordinate of the chunk
+	 * @param chunkZ the z coordinate of the chunk
+	 * @return the {@link Chunk}
+	 */
+	private Chunk createChunk(int chunkX, int chunkZ) {
+		var chunkSnapshot = Stubs.stub(ChunkSnapshot.class, Map.of(
+			"getBlockType", args -> {
+				var x = (chunkX << 4) + (int) args[0];
+				var z = (chunkZ << 4) + (int) args[2];
+				return blocks.getOrDefault(BlockPosition.pack(x, (int) args[1], z), Material.AIR);
+			},
+			"getX", args -> chunkX,
+			"getZ", args -> chunkZ
+		));
+		return Stubs.stub(Chunk.class, Map.of(
+			"getChunkSnapshot", args -> chunkSnapshot,
+			"getEntities", args -> new Entity[0],
+			"getX", args -> chunkX,
+			"getZ", args -> chunkZ,
+			"isLoaded", args -> true
+		));
+	}
+
+	/**
+	 * Creates the {@link World} stub.
+	 *
+	 * @return the {@link World}
+	 */
+	private World createWorld() {
+		return Stubs.stub(World.class, Map.of(
+			"getBlockAt", args -> {
+				if (args.length == 1) {
+					var location = (Location) args[0];
+					return createBlock(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+				}
+				return createBlock((int) args[0], (int) args[1], (int) args[2]);
+			},
+			"getChunkAt", args -> createChunk((int) args[0], (int) args[1]),
+			"getGameTime", args -> gameTime,
+			"getMaxHeight", args -> 320,
+			"getMinHeight", args -> -64,
+			"getName", args -> "world",
+			"getPlayers", args -> players,
+			"isChunkLoaded", args -> true
+		));
+	}
+}
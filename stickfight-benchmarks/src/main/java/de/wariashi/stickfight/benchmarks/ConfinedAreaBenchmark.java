@@ -0,0 +1,66 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.wariashi.stickfight.Stickfight;
+
+/**
+ * Measures {@link Stickfight#isWithinConfinedArea(Location)}, which is called for every movement and every broken glass pane.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class ConfinedAreaBenchmark {
+	@Param({ "1", "100" })
+	private int arenaCount;
+
+	@Param({ "false", "true" })
+	private boolean unlimited;
+
+	private Location inside;
+	private Location outside;
+	private Stickfight stickfight;
+
+	/**
+	 * Creates the {@link BenchmarkEnvironment}.
+	 */
+	@Setup
+	public void setup() {
+		var environment = new BenchmarkEnvironment(0, unlimited, arenaCount);
+		stickfight = environment.getStickfight();
+		inside = new Location(environment.getWorld(), 1.5, 2, -3.5);
+		outside = new Location(environment.getWorld(), 1.5, 2, 100.5);
+	}
+
+	/**
+	 * @return whether a {@link Location} within the play area is within the play area
+	 */
+	@Benchmark
+	public boolean inside() {
+		return stickfight.isWithinConfinedArea(inside);
+	}
+
+	/**
+	 * @return whether a {@link Location} outside the play area is within the play area
+	 */
+	@Benchmark
+	public boolean outside() {
+		return stickfight.isWithinConfinedArea(outside);
+	}
+}
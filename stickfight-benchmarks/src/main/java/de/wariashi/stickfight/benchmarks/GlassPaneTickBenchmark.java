@@ -0,0 +1,83 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.wariashi.stickfight.BlockPosition;
+import de.wariashi.stickfight.PaneRestorer;
+import de.wariashi.stickfight.RespawnTimingWheel;
+
+/**
+ * Measures the per-tick work of the glass pane service: advancing the {@link RespawnTimingWheel} and restoring the
+ * glass panes that are due with the {@link PaneRestorer}.
+ * <p>
+ * Every restored glass pane is scheduled again right away, so that the number of pending restorations stays the same
+ * during the whole benchmark. The number of entities in the world does not matter anymore, since the tick no longer
+ * scans them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class GlassPaneTickBenchmark {
+	private static final int RESPAWN_TIME = 60 * 20;
+
+	@Param({ "0", "1000", "24000" })
+	private int pending;
+
+	private BenchmarkEnvironment environment;
+	private long now;
+	private PaneRestorer paneRestorer;
+	private RespawnTimingWheel respawnTimingWheel;
+	private final RespawnTimingWheel.Expiration expiration = this::expire;
+
+	/**
+	 * Schedules the pending restorations evenly across the respawn time.
+	 */
+	@Setup
+	public void setup() {
+		environment = new BenchmarkEnvironment(0, true);
+		paneRestorer = new PaneRestorer(environment.getWorld(), (position, material) -> {
+		});
+		respawnTimingWheel = new RespawnTimingWheel(RESPAWN_TIME, 0);
+		for (var i = 0; i < pending; i++) {
+			var position = BlockPosition.pack(i % 128, i / (128 * 128), (i / 128) % 128);
+			respawnTimingWheel.schedule(position, Material.GLASS_PANE, 1 + i % RESPAWN_TIME);
+		}
+	}
+
+	/**
+	 * Runs a single tick.
+	 */
+	@Benchmark
+	public void tick() {
+		now = environment.advanceGameTime();
+		respawnTimingWheel.advance(now, expiration);
+		paneRestorer.run(TimeUnit.MILLISECONDS.toNanos(2));
+	}
+
+	/**
+	 * Restores a glass pane and breaks it again.
+	 *
+	 * @param position the {@link BlockPosition packed position} of the glass pane
+	 * @param material the {@link Material} of the glass pane
+	 */
+	private void expire(long position, Material material) {
+		paneRestorer.add(position, material);
+		respawnTimingWheel.schedule(position, material, now + RESPAWN_TIME);
+	}
+}
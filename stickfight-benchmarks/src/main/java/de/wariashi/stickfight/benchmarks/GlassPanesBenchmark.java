@@ -0,0 +1,89 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.wariashi.stickfight.GlassPaneIndex;
+import de.wariashi.stickfight.GlassPanes;
+
+/**
+ * Measures the lookups between glass pane {@link Material materials} and their indices, which replaced the color tags
+ * of the placeholder entities, as well as lookups in the {@link GlassPaneIndex}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class GlassPanesBenchmark {
+	private GlassPaneIndex glassPaneIndex;
+	private Material[] materials;
+
+	/**
+	 * Creates a {@link GlassPaneIndex} with a single wall of glass panes.
+	 */
+	@Setup
+	public void setup() {
+		materials = Material.values();
+		var radius = BenchmarkEnvironment.AREA_RADIUS;
+		glassPaneIndex = new GlassPaneIndex(-radius, -radius, -radius, radius, radius, radius);
+		for (var z = -radius; z <= radius; z++) {
+			for (var y = 0; y < 8; y++) {
+				glassPaneIndex.put(5, y, z, Material.LIGHT_BLUE_STAINED_GLASS_PANE);
+			}
+		}
+	}
+
+	/**
+	 * Looks up the {@link Material} for every glass pane index.
+	 *
+	 * @param blackhole the {@link Blackhole} that consumes the results
+	 */
+	@Benchmark
+	public void getMaterial(Blackhole blackhole) {
+		for (var i = 0; i < GlassPanes.COUNT; i++) {
+			blackhole.consume(GlassPanes.getMaterial(i));
+		}
+	}
+
+	/**
+	 * @return the glass pane in a wall
+	 */
+	@Benchmark
+	public Material indexHit() {
+		return glassPaneIndex.get(5, 3, 7);
+	}
+
+	/**
+	 * @return the glass pane next to a wall
+	 */
+	@Benchmark
+	public Material indexMiss() {
+		return glassPaneIndex.get(6, 3, 7);
+	}
+
+	/**
+	 * Looks up the glass pane index for every {@link Material}.
+	 *
+	 * @param blackhole the {@link Blackhole} that consumes the results
+	 */
+	@Benchmark
+	public void indexOf(Blackhole blackhole) {
+		for (var material : materials) {
+			blackhole.consume(GlassPanes.indexOf(material));
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.bukkit.Location;
+import org.bukkit.damage.DamageSource;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent.DamageCause;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+import de.wariashi.stickfight.GlassPaneService;
+import de.wariashi.stickfight.KillCounterService;
+import de.wariashi.stickfight.MovementDispatcher;
+import de.wariashi.stickfight.StickService;
+import de.wariashi.stickfight.TickScheduler;
+
+/**
+ * Runs the plugin against the stubbed server of the {@link BenchmarkEnvironment} with many simulated players and fails
+ * if the time or the memory that a tick takes has regressed past a stored baseline.
+ * <p>
+ * Every player runs back and forth through several glass pane walls, gets knocked back every
+ * {@link #KNOCKBACK_INTERVAL} ticks, hits another player every {@link #HIT_INTERVAL} ticks, and every
+ * {@link #DEATH_INTERVAL} ticks one of them dies. The movements are handed to the {@link MovementDispatcher}, the hits
+ * and deaths to the {@link KillCounterService}, and the {@link TickScheduler} runs the ticks of the
+ * {@link GlassPaneService}, the {@link StickService} and all other services. Events are created before each tick, so
+ * only the work of the plugin on the main thread is measured: the duration of every tick and the bytes it allocates.
+ * <p>
+ * The baseline is a properties file. If <code>--update-baseline</code> is given or there is no baseline yet, the results
+ * are written to it instead. Tick times depend on the machine, so the baseline should be recorded on the machine that runs
+ * the load test. The exit code is <code>1</code> if a value exceeds its baseline by more than the tolerance.
+ */
+public final class LoadTest {
+	private static final String ALLOCATION = "allocation.bytes-per-tick";
+	private static final int DEATH_INTERVAL = 100; // ticks
+	private static final int HIT_INTERVAL = 10; // ticks
+	private static final double KNOCKBACK_DISTANCE = 3; // blocks
+	private static final int KNOCKBACK_INTERVAL = 40; // ticks
+	private static final String MAX = "tick.max-micros";
+	private static final String MEAN = "tick.mean-micros";
+	private static final String P99 = "tick.p99-micros";
+	private static final String PLAYERS = "players";
+	private static final double RUN_LENGTH = 56; // blocks
+	private static final double SPEED = 0.3; // blocks per tick
+	private static final String TICKS = "ticks";
+	private static final int[] WALLS = { -20, -8, 8, 20 };
+	private static final int WALL_HEIGHT = 4;
+	private static final int WALL_WIDTH = 48;
+
+	private final DamageSource damageSource = Stubs.stub(DamageSource.class);
+	private final BenchmarkEnvironment environment;
+	private final GlassPaneService glassPaneService;
+	private final List<EntityDamageByEntityEvent> hits = new ArrayList<>();
+	private final KillCounterService killCounterService;
+	private final Location[] locations;
+	private final MovementDispatcher movementDispatcher;
+	private final PlayerMoveEvent[] moves;
+	private final List<Player> players;
+	private final TickScheduler tickScheduler;
+
+	/**
+	 * Creates the arena and starts the services.
+	 *
+	 * @param playerCount the number of simulated players
+	 */
+	private LoadTest(int playerCount) {
+		environment = new BenchmarkEnvironment(playerCount, false);
+		for (var x : WALLS) {
+			environment.buildWall(x, WALL_WIDTH, WALL_HEIGHT);
+		}
+		var stickfight = environment.getStickfight();
+		players = environment.getPlayers();
+		locations = new Location[players.size()];
+		for (var i = 0; i < locations.length; i++) {
+			locations[i] = players.get(i).getLocation();
+		}
+		moves = new PlayerMoveEvent[players.size()];
+
+		tickScheduler = stickfight.getTickScheduler();
+		movementDispatcher = stickfight.getMovementDispatcher();
+		movementDispatcher.subscribe(stickfight);
+		stickfight.getEffectDispatcher().start();
+		glassPaneService = new GlassPaneService(stickfight, environment.getWorld());
+		glassPaneService.start();
+		glassPaneService.activate();
+		new StickService(stickfight).start();
+		killCounterService = new KillCounterService(stickfight);
+		killCounterService.start();
+	}
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args the options, see {@link #printUsage()}
+	 * @throws IOException if the baseline cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		var playerCount = 200;
+		var ticks = 6000;
+		var warmup = 2000;
+		var baselineFile = Path.of("load-test-baseline.properties");
+		var tolerance = 0.25;
+		var updateBaseline = false;
+		for (var arg : args) {
+			if (arg.isBlank()) {
+				continue;
+			}
+			var separator = arg.indexOf('=');
+			var name = separator < 0 ? arg : arg.substring(0, separator);
+			var value = separator < 0 ? "true" : arg.substring(separator + 1);
+			switch (name) {
+				case "--baseline" -> baselineFile = Path.of(value);
+				case "--players" -> playerCount = Integer.parseInt(value);
+				case "--ticks" -> ticks = Integer.parseInt(value);
+				case "--tolerance" -> tolerance = Double.parseDouble(value);
+				case "--update-baseline" -> updateBaseline = Boolean.parseBoolean(value);
+				case "--warmup" -> warmup = Integer.parseInt(value);
+				default -> {
+					printUsage();
+					System.exit(2);
+				}
+			}
+		}
+
+		var loadTest = new LoadTest(playerCount);
+		var result = loadTest.run(warmup, ticks);
+		loadTest.stop();
+		System.out.println(String.format(Locale.ROOT, "%d players, %d ticks: mean %s us, p99 %s us, max %s us, %s bytes allocated per tick",
+			playerCount, ticks, result.getProperty(MEAN), result.getProperty(P99), result.getProperty(MAX), result.getProperty(ALLOCATION)));
+
+		if (updateBaseline || !Files.exists(baselineFile)) {
+			// without a baseline, there is nothing to compare with, so the first run records it
+			try (var output = new FileOutputStream(baselineFile.toFile())) {
+				result.store(output, "Baseline of the Stickfight load test, update with --update-baseline");
+			}
+			System.out.println("Wrote the baseline to " + baselineFile);
+			System.exit(0);
+		}
+
+		var baseline = new Properties();
+		try (var input = new FileInputStream(baselineFile.toFile())) {
+			baseline.load(input);
+		}
+		var regressions = compare(result, baseline, tolerance);
+		for (var regression : regressions) {
+			System.out.println("REGRESSION: " + regression);
+		}
+		System.exit(regressions.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * Compares the results with the baseline.
+	 *
+	 * @param result    the results
+	 * @param baseline  the baseline
+	 * @param tolerance the relative amount by which a value may exceed its baseline
+	 * @return a description of every value that exceeds its baseline by more than the tolerance
+	 */
+	private static List<String> compare(Properties result, Properties baseline, double tolerance) {
+		var regressions = new ArrayList<String>();
+		for (var key : List.of(PLAYERS, TICKS)) {
+			if (!result.getProperty(key).equals(baseline.getProperty(key))) {
+				regressions.add("the baseline has been recorded with " + key + "=" + baseline.getProperty(key) + ", record it again with --update-baseline");
+				return regressions;
+			}
+		}
+		for (var key : List.of(MEAN, P99, ALLOCATION)) {
+			var value = Double.parseDouble(result.getProperty(key));
+			var limit = Double.parseDouble(baseline.getProperty(key, "0")) * (1 + tolerance);
+			if (value > limit) {
+				regressions.add(String.format(Locale.ROOT, "%s is %.1f, the limit is %.1f", key, value, limit));
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Formats a value for the baseline.
+	 *
+	 * @param value the value
+	 * @return the value with one decimal place
+	 */
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	/**
+	 * Prints the supported options.
+	 */
+	private static void printUsage() {
+		System.err.println("Usage: " + LoadTest.class.getName() + " [--players=200] [--ticks=6000] [--warmup=2000]"
+			+ " [--baseline=load-test-baseline.properties] [--tolerance=0.25] [--update-baseline]");
+	}
+
+	/**
+	 * Runs all events of a tick and the tick of the {@link TickScheduler}.
+	 *
+	 * @param death the death of the tick or <code>null</code> if nobody dies
+	 */
+	private void dispatch(PlayerDeathEvent death) {
+		for (var move : moves) {
+			movementDispatcher.onPlayerMove(move);
+		}
+		for (var hit : hits) {
+			killCounterService.onEntityDamageByEntity(hit);
+		}
+		if (death != null) {
+			killCounterService.onPlayerDeath(death);
+		}
+		tickScheduler.tick();
+	}
+
+	/**
+	 * Computes where a player is in a tick: on a run back and forth through the walls, knocked back every few ticks.
+	 *
+	 * @param player the index of the player
+	 * @param tick   the tick
+	 * @return the {@link Location} of the player
+	 */
+	private Location locate(int player, int tick) {
+		var start = locations[player];
+		var distance = (tick * SPEED + player * 7) % (RUN_LENGTH * 2);
+		var x = -RUN_LENGTH / 2 + (distance < RUN_LENGTH ? distance : RUN_LENGTH * 2 - distance);
+		var y = 0.0;
+		if ((tick + player) % KNOCKBACK_INTERVAL == 0) {
+			x += distance < RUN_LENGTH ? KNOCKBACK_DISTANCE : -KNOCKBACK_DISTANCE;
+			y = 1.5;
+		}
+		var yaw = (tick * 9 + player * 31) % 360 - 180;
+		return new Location(start.getWorld(), x, y, start.getZ(), yaw, 0);
+	}
+
+	/**
+	 * Creates the events of a tick.
+	 *
+	 * @param tick the tick
+	 * @return the death of the tick or <code>null</code> if nobody dies
+	 */
+	private PlayerDeathEvent prepare(int tick) {
+		hits.clear();
+		for (var i = 0; i < moves.length; i++) {
+			var from = moves[i] != null ? moves[i].getTo() : locations[i];
+			moves[i] = new PlayerMoveEvent(players.get(i), from, locate(i, tick));
+			if ((tick + i) % HIT_INTERVAL == 0 && players.size() > 1) {
+				var victim = players.get((i + 1) % players.size());
+				hits.add(new EntityDamageByEntityEvent(players.get(i), victim, DamageCause.ENTITY_ATTACK, damageSource, 1));
+			}
+		}
+		if (tick % DEATH_INTERVAL != 0 || players.isEmpty()) {
+			return null;
+		}
+		var victim = players.get(tick / DEATH_INTERVAL % players.size());
+		return new PlayerDeathEvent(victim, damageSource, new ArrayList<>(), 0, null);
+	}
+
+	/**
+	 * Runs the warmup ticks and then the measured ticks.
+	 *
+	 * @param warmup the number of ticks that are not measured
+	 * @param ticks  the number of ticks that are measured
+	 * @return the results
+	 */
+	private Properties run(int warmup, int ticks) {
+		var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for (var i = 0; i < warmup; i++) {
+			environment.advanceGameTime();
+			dispatch(prepare(i));
+		}
+
+		var durations = new long[ticks];
+		var allocated = 0L;
+		for (var i = 0; i < ticks; i++) {
+			environment.advanceGameTime();
+			var death = prepare(warmup + i);
+			var allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+			var start = System.nanoTime();
+			dispatch(death);
+			durations[i] = System.nanoTime() - start;
+			allocated += threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+		}
+
+		Arrays.sort(durations);
+		var result = new Properties();
+		result.setProperty(PLAYERS, Integer.toString(players.size()));
+		result.setProperty(TICKS, Integer.toString(ticks));
+		result.setProperty(MEAN, format(Arrays.stream(durations).average().orElse(0) / 1000));
+		result.setProperty(P99, format(durations[Math.max(0, (int) Math.ceil(ticks * 0.99) - 1)] / 1000.0));
+		result.setProperty(MAX, format(durations[ticks - 1] / 1000.0));
+		result.setProperty(ALLOCATION, format((double) allocated / ticks));
+		return result;
+	}
+
+	/**
+	 * Stops the services, so that their files are closed.
+	 */
+	private void stop() {
+		killCounterService.stop();
+		glassPaneService.stop();
+	}
+}
@@ -0,0 +1,92 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.wariashi.stickfight.GlassPaneService;
+import de.wariashi.stickfight.MovementDispatcher;
+import de.wariashi.stickfight.StickService;
+
+/**
+ * Measures the handling of a {@link PlayerMoveEvent} by the {@link MovementDispatcher} and all of its subscribers:
+ * the kill layer, the {@link GlassPaneService} and the {@link StickService}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class MovementBenchmark {
+	private PlayerMoveEvent back;
+	private PlayerMoveEvent forth;
+	private PlayerMoveEvent knockback;
+	private MovementDispatcher movementDispatcher;
+	private PlayerMoveEvent rotation;
+
+	/**
+	 * Creates the {@link MovementDispatcher} with all subscribers and a play area with a glass pane wall
+	 * that the movements do not cross.
+	 */
+	@Setup
+	public void setup() {
+		var environment = new BenchmarkEnvironment(1, false);
+		environment.buildWall(20, 16, 4);
+		var stickfight = environment.getStickfight();
+		var world = environment.getWorld();
+
+		var glassPaneService = new GlassPaneService(stickfight, world);
+		glassPaneService.reindex();
+		movementDispatcher = stickfight.getMovementDispatcher();
+		movementDispatcher.subscribe(stickfight);
+		movementDispatcher.subscribe(glassPaneService);
+		movementDispatcher.subscribe(new StickService(stickfight));
+
+		var player = environment.getPlayers().getFirst();
+		var a = new Location(world, 0.5, 0, 0.5, 0, 0);
+		var b = new Location(world, 1.5, 0, 0.5, 0, 0);
+		var c = new Location(world, 0.5, 0, 0.5, 90, 0);
+		var d = new Location(world, 7.5, 1.5, 3.5, 0, 0);
+		back = new PlayerMoveEvent(player, b, a);
+		forth = new PlayerMoveEvent(player, a, b);
+		knockback = new PlayerMoveEvent(player, a, d);
+		rotation = new PlayerMoveEvent(player, a, c);
+	}
+
+	/**
+	 * Moves a player to the next block and back.
+	 */
+	@Benchmark
+	public void blockChange() {
+		movementDispatcher.onPlayerMove(forth);
+		movementDispatcher.onPlayerMove(back);
+	}
+
+	/**
+	 * Moves a player across several blocks at once, like after being hit with the stick.
+	 */
+	@Benchmark
+	public void knockback() {
+		movementDispatcher.onPlayerMove(knockback);
+	}
+
+	/**
+	 * Rotates the head of a player without changing the block.
+	 */
+	@Benchmark
+	public void rotation() {
+		movementDispatcher.onPlayerMove(rotation);
+	}
+}
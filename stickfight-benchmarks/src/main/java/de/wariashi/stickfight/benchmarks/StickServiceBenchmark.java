@@ -0,0 +1,66 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.wariashi.stickfight.StickService;
+import de.wariashi.stickfight.TickScheduler;
+
+/**
+ * Measures the tick of the {@link StickService}, which replaced handing out a new stick to every player on every tick.
+ * The service is started, so its tick is run by the {@link TickScheduler} like on a server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class StickServiceBenchmark {
+	@Param({ "10", "50", "150" })
+	private int players;
+
+	private StickService stickService;
+	private TickScheduler tickScheduler;
+
+	/**
+	 * Starts the {@link StickService} and hands out the sticks once.
+	 */
+	@Setup
+	public void setup() {
+		var environment = new BenchmarkEnvironment(players, false);
+		var stickfight = environment.getStickfight();
+		tickScheduler = stickfight.getTickScheduler();
+		stickService = new StickService(stickfight);
+		stickService.start();
+		tickScheduler.tick();
+	}
+
+	/**
+	 * Checks the inventories of all players, like after a configuration reload.
+	 */
+	@Benchmark
+	public void repair() {
+		stickService.invalidateAll();
+		tickScheduler.tick();
+	}
+
+	/**
+	 * Runs a tick in which no player changed.
+	 */
+	@Benchmark
+	public void steadyState() {
+		tickScheduler.tick();
+	}
+}
@@ -0,0 +1,97 @@
+package de.wariashi.stickfight.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Creates stubs of Bukkit interfaces with {@link Proxy dynamic proxies}, so that benchmarks can run without a server.
+ * <p>
+ * Methods are answered by name. Methods without an answer return a default value: <code>0</code>, <code>false</code>,
+ * empty collections, another stub for Bukkit interfaces and <code>null</code> for everything else.
+ */
+public final class Stubs {
+	private Stubs() {
+	}
+
+	/**
+	 * Creates a stub that answers all methods with default values.
+	 *
+	 * @param type the interface to implement
+	 * @param <T>  the type of the interface
+	 * @return the stub
+	 */
+	public static <T> T stub(Class<T> type) {
+		return stub(type, Map.of());
+	}
+
+	/**
+	 * Creates a stub that answers methods by name.
+	 *
+	 * @param type    the interface to implement
+	 * @param answers the answers for each method name, receiving the arguments of the call
+	 * @param <T>     the type of the interface
+	 * @return the stub
+	 */
+	public static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+		var nested = new HashMap<Method, Object>();
+		InvocationHandler handler = (proxy, method, args) -> {
+			var answer = answers.get(method.getName());
+			if (answer != null) {
+				return answer.apply(args == null ? new Object[0] : args);
+			}
+			return switch (method.getName()) {
+				case "equals" -> proxy == args[0];
+				case "hashCode" -> System.identityHashCode(proxy);
+				case "toString" -> "Stub<" + type.getSimpleName() + ">";
+				default -> nested.computeIfAbsent(method, Stubs::defaultValue);
+			};
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	/**
+	 * Creates the default value that a method without an answer returns.
+	 *
+	 * @param method the method
+	 * @return the default value
+	 */
+	private static Object defaultValue(Method method) {
+		var type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else if (type == short.class) {
+			return (short) 0;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == char.class) {
+			return (char) 0;
+		} else if (type == List.class || type == Collection.class) {
+			return List.of();
+		} else if (type == Set.class) {
+			return Set.of();
+		} else if (type == Map.class) {
+			return Map.of();
+		} else if (type == Optional.class) {
+			return Optional.empty();
+		} else if (type.isInterface() && type.getName().startsWith("org.bukkit.")) {
+			return stub(type);
+		}
+		return null;
+	}
+}